@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.astnn;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.uni_passau.fim.se2.embedded_kittens.astnn.model.StatementTreeSequence;
+import de.uni_passau.fim.se2.embedded_kittens.benchmark.ProgramState;
+import de.uni_passau.fim.se2.embedded_kittens.shared.ActorNameNormalizer;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatementTreeSequenceBuilderBenchmark {
+
+    private final StatementTreeSequenceBuilder builder = new StatementTreeSequenceBuilder(
+        ActorNameNormalizer.getDefault(), false
+    );
+
+    @Benchmark
+    public StatementTreeSequence buildWholeProgram(final ProgramState state) {
+        return builder.build(state.program, true, true);
+    }
+}
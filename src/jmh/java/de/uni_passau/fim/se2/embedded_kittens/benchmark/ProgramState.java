@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.uni_passau.fim.se2.litterbox.ast.ParsingException;
+import de.uni_passau.fim.se2.litterbox.ast.model.Program;
+import de.uni_passau.fim.se2.litterbox.ast.parser.Scratch3Parser;
+
+/**
+ * A parsed synthetic program for the benchmarks of the preprocessing steps after parsing.
+ */
+@State(Scope.Benchmark)
+public class ProgramState {
+
+    @Param
+    public ProjectSize size;
+
+    public Program program;
+
+    @Setup(Level.Trial)
+    public void parseProgram() throws ParsingException {
+        program = new Scratch3Parser().parseJsonNode(size.name(), size.generateProject());
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * The sizes of the synthetic projects the benchmarks are parameterised with.
+ */
+public enum ProjectSize {
+    SMALL(2, 2, 8),
+    MEDIUM(8, 5, 20),
+    LARGE(20, 10, 40);
+
+    private final int sprites;
+    private final int scriptsPerSprite;
+    private final int statementsPerScript;
+
+    ProjectSize(final int sprites, final int scriptsPerSprite, final int statementsPerScript) {
+        this.sprites = sprites;
+        this.scriptsPerSprite = scriptsPerSprite;
+        this.statementsPerScript = statementsPerScript;
+    }
+
+    /**
+     * Generates a synthetic project of this size.
+     *
+     * @return The {@code project.json} of the project.
+     */
+    public JsonNode generateProject() {
+        return SyntheticProjectGenerator.generate(sprites, scriptsPerSprite, statementsPerScript);
+    }
+}
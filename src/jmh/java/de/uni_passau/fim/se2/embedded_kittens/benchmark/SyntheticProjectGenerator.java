@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Generates Scratch 3 projects of configurable size, so that the benchmarks do not depend on downloaded projects.
+ *
+ * <p>
+ * Each sprite consists of scripts started by the green flag or a broadcast. The statements of the scripts cycle
+ * through motion, looks, variable, broadcast and control blocks, including nested expressions and substacks. The
+ * generated project is deterministic for the same sizes.
+ */
+public final class SyntheticProjectGenerator {
+
+    private static final JsonNodeFactory JSON = JsonNodeFactory.instance;
+
+    private static final String VARIABLE_ID = "var-score";
+    private static final String VARIABLE_NAME = "score";
+    private static final String BROADCAST_ID = "broadcast-update";
+    private static final String BROADCAST_NAME = "update";
+
+    private static final String INPUTS = "inputs";
+    private static final String FIELDS = "fields";
+    private static final String SUBSTACK = "SUBSTACK";
+
+    private static final int STATEMENT_KINDS = 7;
+
+    /**
+     * Scratch input type of a number literal.
+     */
+    private static final int NUMBER = 4;
+
+    /**
+     * Scratch input type of a text literal.
+     */
+    private static final int TEXT = 10;
+
+    private final int sprites;
+    private final int scriptsPerSprite;
+    private final int statementsPerScript;
+
+    private int nextBlockId;
+
+    private SyntheticProjectGenerator(final int sprites, final int scriptsPerSprite, final int statementsPerScript) {
+        this.sprites = sprites;
+        this.scriptsPerSprite = scriptsPerSprite;
+        this.statementsPerScript = statementsPerScript;
+    }
+
+    /**
+     * Generates the {@code project.json} of a new project.
+     *
+     * @param sprites             The number of sprites besides the stage.
+     * @param scriptsPerSprite    The number of scripts of each sprite.
+     * @param statementsPerScript The number of top-level statements in each script.
+     * @return The project in the Scratch 3 JSON format.
+     */
+    public static JsonNode generate(final int sprites, final int scriptsPerSprite, final int statementsPerScript) {
+        return new SyntheticProjectGenerator(sprites, scriptsPerSprite, statementsPerScript).generateProject();
+    }
+
+    private JsonNode generateProject() {
+        final ObjectNode project = JSON.objectNode();
+        final ArrayNode targets = project.putArray("targets");
+        targets.add(generateStage());
+        for (int i = 0; i < sprites; i++) {
+            targets.add(generateSprite(i));
+        }
+
+        project.putArray("monitors");
+        project.putArray("extensions");
+        project.putObject("meta").put("semver", "3.0.0").put("vm", "0.2.0").put("agent", "benchmark");
+        return project;
+    }
+
+    private ObjectNode generateStage() {
+        final ObjectNode stage = generateTarget("Stage", true, 0);
+        stage.putObject("variables").putArray(VARIABLE_ID).add(VARIABLE_NAME).add(0);
+        stage.putObject("broadcasts").put(BROADCAST_ID, BROADCAST_NAME);
+        stage.put("tempo", 60);
+        stage.put("videoTransparency", 50);
+        stage.put("videoState", "on");
+        stage.putNull("textToSpeechLanguage");
+        return stage;
+    }
+
+    private ObjectNode generateSprite(final int spriteIndex) {
+        final ObjectNode sprite = generateTarget("Sprite" + spriteIndex, false, spriteIndex + 1);
+        sprite.putObject("variables");
+        sprite.putObject("broadcasts");
+        sprite.put("visible", true);
+        sprite.put("x", 0);
+        sprite.put("y", 0);
+        sprite.put("size", 100);
+        sprite.put("direction", 90);
+        sprite.put("draggable", false);
+        sprite.put("rotationStyle", "all around");
+
+        final ObjectNode blocks = sprite.putObject("blocks");
+        for (int i = 0; i < scriptsPerSprite; i++) {
+            generateScript(blocks, i);
+        }
+
+        return sprite;
+    }
+
+    private static ObjectNode generateTarget(final String name, final boolean isStage, final int layerOrder) {
+        final ObjectNode target = JSON.objectNode();
+        target.put("isStage", isStage);
+        target.put("name", name);
+        target.putObject("lists");
+        target.putObject("blocks");
+        target.putObject("comments");
+        target.put("currentCostume", 0);
+        target.putArray("costumes").addObject()
+            .put("assetId", "cd21514d0531fdffb22204e0ec5ed84a")
+            .put("name", "costume1")
+            .put("md5ext", "cd21514d0531fdffb22204e0ec5ed84a.svg")
+            .put("dataFormat", "svg")
+            .put("rotationCenterX", 240)
+            .put("rotationCenterY", 180);
+        target.putArray("sounds");
+        target.put("volume", 100);
+        target.put("layerOrder", layerOrder);
+        return target;
+    }
+
+    private void generateScript(final ObjectNode blocks, final int scriptIndex) {
+        final String hatId;
+        if (scriptIndex % 2 == 0) {
+            hatId = addBlock(blocks, "event_whenflagclicked", null);
+        }
+        else {
+            hatId = addBlock(blocks, "event_whenbroadcastreceived", null);
+            fields(blocks, hatId).putArray("BROADCAST_OPTION").add(BROADCAST_NAME).add(BROADCAST_ID);
+        }
+
+        final ObjectNode hat = (ObjectNode) blocks.get(hatId);
+        hat.put("topLevel", true);
+        hat.put("x", 0);
+        hat.put("y", scriptIndex * 100);
+
+        String previousId = hatId;
+        for (int i = 0; i < statementsPerScript; i++) {
+            final String statementId = addStatement(blocks, previousId, i);
+            ((ObjectNode) blocks.get(previousId)).put("next", statementId);
+            previousId = statementId;
+        }
+    }
+
+    private String addStatement(final ObjectNode blocks, final String parentId, final int index) {
+        return switch (index % STATEMENT_KINDS) {
+            case 0 -> {
+                final String id = addBlock(blocks, "motion_movesteps", parentId);
+                literalInput(blocks, id, "STEPS", NUMBER, String.valueOf(index));
+                yield id;
+            }
+            case 1 -> {
+                final String id = addBlock(blocks, "looks_say", parentId);
+                inputs(blocks, id).putArray("MESSAGE").add(3)
+                    .add(JSON.arrayNode().add(12).add(VARIABLE_NAME).add(VARIABLE_ID))
+                    .add(JSON.arrayNode().add(TEXT).add(""));
+                yield id;
+            }
+            case 2 -> addVariableStatement(blocks, "data_setvariableto", parentId, TEXT, "Hello world " + index);
+            case 3 -> addVariableStatement(blocks, "data_changevariableby", parentId, NUMBER, "1");
+            case 4 -> {
+                final String id = addBlock(blocks, "event_broadcast", parentId);
+                inputs(blocks, id).putArray("BROADCAST_INPUT").add(1)
+                    .add(JSON.arrayNode().add(11).add(BROADCAST_NAME).add(BROADCAST_ID));
+                yield id;
+            }
+            case 5 -> addIf(blocks, parentId, index);
+            default -> addRepeat(blocks, parentId, index);
+        };
+    }
+
+    private String addVariableStatement(
+        final ObjectNode blocks, final String opcode, final String parentId, final int valueType, final String value
+    ) {
+        final String id = addBlock(blocks, opcode, parentId);
+        literalInput(blocks, id, "VALUE", valueType, value);
+        fields(blocks, id).putArray("VARIABLE").add(VARIABLE_NAME).add(VARIABLE_ID);
+        return id;
+    }
+
+    private String addIf(final ObjectNode blocks, final String parentId, final int index) {
+        final String id = addBlock(blocks, "control_if", parentId);
+
+        final String conditionId = addBlock(blocks, "operator_gt", id);
+        final String sumId = addBlock(blocks, "operator_add", conditionId);
+        inputs(blocks, sumId).putArray("NUM1").add(3)
+            .add(JSON.arrayNode().add(12).add(VARIABLE_NAME).add(VARIABLE_ID))
+            .add(JSON.arrayNode().add(NUMBER).add(""));
+        literalInput(blocks, sumId, "NUM2", NUMBER, String.valueOf(index));
+        inputs(blocks, conditionId).putArray("OPERAND1").add(3).add(sumId).add(JSON.arrayNode().add(TEXT).add(""));
+        literalInput(blocks, conditionId, "OPERAND2", TEXT, "50");
+        inputs(blocks, id).putArray("CONDITION").add(2).add(conditionId);
+
+        final String bodyId = addBlock(blocks, "motion_turnright", id);
+        literalInput(blocks, bodyId, "DEGREES", NUMBER, "15");
+        inputs(blocks, id).putArray(SUBSTACK).add(2).add(bodyId);
+
+        return id;
+    }
+
+    private String addRepeat(final ObjectNode blocks, final String parentId, final int index) {
+        final String id = addBlock(blocks, "control_repeat", parentId);
+        literalInput(blocks, id, "TIMES", 6, "10");
+
+        final String bodyId = addBlock(blocks, "looks_say", id);
+        literalInput(blocks, bodyId, "MESSAGE", TEXT, "Repeat number " + index + "!");
+        inputs(blocks, id).putArray(SUBSTACK).add(2).add(bodyId);
+
+        return id;
+    }
+
+    private String addBlock(final ObjectNode blocks, final String opcode, final String parentId) {
+        final String id = "block-" + nextBlockId++;
+
+        final ObjectNode block = blocks.putObject(id);
+        block.put("opcode", opcode);
+        block.putNull("next");
+        block.put("parent", parentId);
+        block.putObject(INPUTS);
+        block.putObject(FIELDS);
+        block.put("shadow", false);
+        block.put("topLevel", false);
+
+        return id;
+    }
+
+    private static void literalInput(
+        final ObjectNode blocks, final String blockId, final String name, final int type, final String value
+    ) {
+        inputs(blocks, blockId).putArray(name).add(1).add(JSON.arrayNode().add(type).add(value));
+    }
+
+    private static ObjectNode inputs(final ObjectNode blocks, final String blockId) {
+        return (ObjectNode) blocks.get(blockId).get(INPUTS);
+    }
+
+    private static ObjectNode fields(final ObjectNode blocks, final String blockId) {
+        return (ObjectNode) blocks.get(blockId).get(FIELDS);
+    }
+}
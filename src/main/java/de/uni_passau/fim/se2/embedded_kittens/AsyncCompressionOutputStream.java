@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moves the work of a compressing stream off the writing thread.
+ *
+ * <p>
+ * The written data is collected in chunks. Each full chunk is handed over to a compressor thread that writes it to the
+ * wrapped compressing stream, while the writing thread continues with the next chunk. The chunks of one stream are
+ * compressed strictly in order. The writing thread only blocks if the compression falls behind by more than a few
+ * chunks, which bounds the memory used for pending data, and on {@link #close()} until the last chunk has been
+ * compressed.
+ *
+ * <p>
+ * Not thread-safe: a stream has to be written by a single thread.
+ */
+final class AsyncCompressionOutputStream extends OutputStream {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final int MAX_PENDING_CHUNKS = 4;
+
+    /**
+     * Shared by all streams. The threads are only kept while there is something to compress.
+     */
+    private static final ExecutorService COMPRESSORS = Executors.newCachedThreadPool(new CompressorThreadFactory());
+
+    private final OutputStream compressor;
+    // the chunk currently written to is not part of the queue, but all chunks are returned to it eventually
+    private final BlockingQueue<byte[]> freeChunks = new ArrayBlockingQueue<>(MAX_PENDING_CHUNKS + 1);
+
+    /**
+     * Completes once all chunks handed over so far have been compressed.
+     */
+    private CompletableFuture<Void> pending = CompletableFuture.completedFuture(null);
+
+    private volatile Throwable failure;
+
+    private byte[] chunk = new byte[CHUNK_SIZE];
+    private int chunkLength;
+    private boolean closed;
+
+    /**
+     * Wraps a compressing stream.
+     *
+     * @param compressor The stream that compresses the data. Is only accessed from the compressor threads.
+     */
+    AsyncCompressionOutputStream(final OutputStream compressor) {
+        this.compressor = compressor;
+
+        for (int i = 0; i < MAX_PENDING_CHUNKS; i++) {
+            freeChunks.add(new byte[CHUNK_SIZE]);
+        }
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        if (chunkLength == CHUNK_SIZE) {
+            handOverChunk();
+        }
+        chunk[chunkLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        int written = 0;
+        while (written < len) {
+            if (chunkLength == CHUNK_SIZE) {
+                handOverChunk();
+            }
+
+            final int length = Math.min(len - written, CHUNK_SIZE - chunkLength);
+            System.arraycopy(b, off + written, chunk, chunkLength, length);
+            chunkLength += length;
+            written += length;
+        }
+    }
+
+    /**
+     * Hands over the data written so far to the compressor without waiting for it to be compressed.
+     *
+     * @throws IOException Thrown if the compression of previous data failed.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (chunkLength > 0) {
+            handOverChunk();
+        }
+    }
+
+    /**
+     * Finishes the compression and closes the wrapped stream.
+     *
+     * <p>
+     * Blocks until all data has been compressed.
+     *
+     * @throws IOException Thrown if the compression of some data failed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            throwIfFailed();
+            return;
+        }
+        closed = true;
+
+        flush();
+        // the compressor is closed even if a previous chunk failed, so the wrapped stream is released
+        pending = pending.whenCompleteAsync((ignored, error) -> closeCompressor(), COMPRESSORS);
+        try {
+            pending.join();
+        }
+        catch (CompletionException | CancellationException e) {
+            recordFailure(e);
+        }
+        throwIfFailed();
+    }
+
+    private void handOverChunk() throws IOException {
+        throwIfFailed();
+
+        final byte[] data = chunk;
+        final int length = chunkLength;
+        // the chunk has to be returned even if the stage is skipped because a previous one failed, otherwise the
+        // writing thread waits forever for a free chunk
+        pending = pending.thenRunAsync(() -> compressChunk(data, length), COMPRESSORS)
+            .whenComplete((ignored, error) -> returnChunk(data, error));
+
+        try {
+            chunk = freeChunks.take();
+            chunkLength = 0;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the compression.");
+        }
+    }
+
+    private void compressChunk(final byte[] data, final int length) {
+        try {
+            if (failure == null) {
+                compressor.write(data, 0, length);
+            }
+        }
+        catch (IOException | RuntimeException e) {
+            recordFailure(e);
+        }
+    }
+
+    private void returnChunk(final byte[] data, final Throwable error) {
+        if (error != null) {
+            recordFailure(error);
+        }
+        freeChunks.add(data);
+    }
+
+    private void closeCompressor() {
+        try {
+            compressor.close();
+        }
+        catch (IOException | RuntimeException e) {
+            recordFailure(e);
+        }
+    }
+
+    /**
+     * Keeps the first failure, unwrapped from the completion exception of the stage it occurred in.
+     *
+     * @param error The failure of a compressor stage.
+     */
+    private void recordFailure(final Throwable error) {
+        Throwable cause = error;
+        if (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+
+        if (failure == null) {
+            failure = cause;
+        }
+    }
+
+    private void throwIfFailed() throws IOException {
+        final Throwable cause = failure;
+        if (cause instanceof IOException ioException) {
+            throw ioException;
+        }
+        else if (cause != null) {
+            throw new IOException("Could not compress the output.", cause);
+        }
+    }
+
+    private static final class CompressorThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "output-compressor-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
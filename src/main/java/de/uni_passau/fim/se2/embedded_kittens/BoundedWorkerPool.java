@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * A fixed number of worker threads that consume items from a bounded queue.
+ *
+ * <p>
+ * The producer blocks as soon as the queue is full. Therefore, a lazily evaluated input (e.g., a directory walk) is
+ * never materialised completely in memory. Each worker owns a state object (e.g., a parser) that is created once per
+ * worker and reused for all items processed by that worker.
+ *
+ * @param <W> The type of the per-worker state.
+ */
+final class BoundedWorkerPool<W> {
+
+    private static final Logger log = Logger.getLogger(BoundedWorkerPool.class.getName());
+
+    /**
+     * Number of queued items per worker. Large enough that workers do not starve while the producer is busy, small
+     * enough to keep the memory footprint of the queue negligible.
+     */
+    private static final int QUEUE_SLOTS_PER_WORKER = 4;
+
+    private static final long PRODUCER_POLL_INTERVAL_MS = 500;
+
+    private final int threads;
+    private final Supplier<W> workerStateFactory;
+
+    private volatile BlockingQueue<?> currentQueue;
+
+    /**
+     * Creates a new worker pool.
+     *
+     * @param threads            The number of worker threads.
+     * @param workerStateFactory Creates the state of a single worker. Called once on each worker thread.
+     */
+    BoundedWorkerPool(final int threads, final Supplier<W> workerStateFactory) {
+        this.threads = threads;
+        this.workerStateFactory = workerStateFactory;
+    }
+
+    /**
+     * Processes all items with the given task and blocks until all of them have been processed.
+     *
+     * <p>
+     * Exceptions thrown by the task for a single item are logged and do not stop the processing of the remaining
+     * items. The same holds for a stack overflow caused by a deeply nested item. Any other error stops the pool.
+     *
+     * @param items The items to process. Consumed sequentially on the calling thread.
+     * @param task  The action that is applied to each item on one of the worker threads.
+     * @param <T>   The type of the items.
+     * @throws InterruptedException  Thrown if the calling thread is interrupted while waiting for the workers.
+     * @throws IllegalStateException Thrown if a worker thread failed with an error.
+     */
+    <T> void processAll(final Stream<T> items, final BiConsumer<W, T> task) throws InterruptedException {
+        final BlockingQueue<Optional<T>> queue = new ArrayBlockingQueue<>(threads * QUEUE_SLOTS_PER_WORKER);
+        currentQueue = queue;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads, new WorkerThreadFactory());
+
+        try {
+            final List<Future<?>> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                workers.add(executor.submit(() -> runWorker(queue, task)));
+            }
+
+            final Iterator<T> iterator = items.iterator();
+            while (iterator.hasNext()) {
+                enqueue(queue, Optional.of(iterator.next()), workers);
+            }
+
+            // one end marker per worker
+            for (int i = 0; i < threads; i++) {
+                enqueue(queue, Optional.empty(), workers);
+            }
+
+            for (final Future<?> worker : workers) {
+                awaitWorker(worker);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+            currentQueue = null;
+        }
+    }
+
+    /**
+     * The number of items that currently wait for a free worker.
+     *
+     * @return The current length of the queue. Zero, if no items are being processed.
+     */
+    int queueDepth() {
+        final BlockingQueue<?> queue = currentQueue;
+        if (queue == null) {
+            return 0;
+        }
+        return queue.size();
+    }
+
+    private <T> void enqueue(
+        final BlockingQueue<Optional<T>> queue, final Optional<T> item, final List<Future<?>> workers
+    ) throws InterruptedException {
+        while (!queue.offer(item, PRODUCER_POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            // a worker that died would otherwise leave the producer blocked forever
+            for (final Future<?> worker : workers) {
+                if (worker.isDone()) {
+                    awaitWorker(worker);
+                    throw new IllegalStateException("A worker thread stopped unexpectedly.");
+                }
+            }
+        }
+    }
+
+    private static void awaitWorker(final Future<?> worker) throws InterruptedException {
+        try {
+            worker.get();
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException("A worker thread failed.", e.getCause());
+        }
+    }
+
+    private <T> void runWorker(final BlockingQueue<Optional<T>> queue, final BiConsumer<W, T> task) {
+        final W workerState = workerStateFactory.get();
+
+        try {
+            Optional<T> item = queue.take();
+            while (item.isPresent()) {
+                processItem(workerState, item.get(), task);
+                item = queue.take();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static <W, T> void processItem(final W workerState, final T item, final BiConsumer<W, T> task) {
+        try {
+            task.accept(workerState, item);
+        }
+        catch (RuntimeException | StackOverflowError e) {
+            log.log(Level.WARNING, "Failed to process '" + item + "'!", e);
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(runnable, "ml-preprocessor-worker-" + counter.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.util.zip.Deflater;
+
+/**
+ * The compression algorithms that can be applied to the generated output files.
+ */
+public enum CompressionCodec {
+
+    NONE("", 0, 0, 0),
+    GZIP(".gz", Deflater.NO_COMPRESSION, Deflater.BEST_COMPRESSION, 6);
+
+    private final String fileSuffix;
+    private final int minLevel;
+    private final int maxLevel;
+    private final int defaultLevel;
+
+    CompressionCodec(final String fileSuffix, final int minLevel, final int maxLevel, final int defaultLevel) {
+        this.fileSuffix = fileSuffix;
+        this.minLevel = minLevel;
+        this.maxLevel = maxLevel;
+        this.defaultLevel = defaultLevel;
+    }
+
+    /**
+     * The suffix that is appended to the names of compressed files.
+     *
+     * @return The file name suffix including the leading dot. Empty, if no compression is used.
+     */
+    public String fileSuffix() {
+        return fileSuffix;
+    }
+
+    public int defaultLevel() {
+        return defaultLevel;
+    }
+
+    public boolean enabled() {
+        return !NONE.equals(this);
+    }
+
+    public boolean isValidLevel(final int level) {
+        return minLevel <= level && level <= maxLevel;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import de.uni_passau.fim.se2.litterbox.ast.model.Program;
+import de.uni_passau.fim.se2.litterbox.utils.Preconditions;
+
+/**
+ * Generates the outputs of multiple preprocessors while parsing each input program only once.
+ *
+ * <p>
+ * Each of the preprocessors writes its results to its own {@link MLOutputPath}.
+ */
+public class FanOutFilePreprocessor {
+
+    private final List<MLFilePreprocessor<?>> preprocessors;
+
+    private MLFileProcessingOptions processingOptions = MLFileProcessingOptions.defaults();
+
+    /**
+     * Combines the preprocessors so that they all receive the same parsed programs.
+     *
+     * @param preprocessors The preprocessors whose outputs should be generated. Should not share an output directory.
+     */
+    public FanOutFilePreprocessor(final List<MLFilePreprocessor<?>> preprocessors) {
+        Preconditions.checkArgument(!preprocessors.isEmpty(), "At least one preprocessor is required.");
+
+        this.preprocessors = List.copyOf(preprocessors);
+    }
+
+    /**
+     * Replaces the {@link MLFileProcessingOptions#defaults()} for this and all combined preprocessors.
+     *
+     * @param processingOptions The options that should be used from now on.
+     */
+    public void setProcessingOptions(final MLFileProcessingOptions processingOptions) {
+        this.processingOptions = processingOptions;
+        preprocessors.forEach(preprocessor -> preprocessor.setProcessingOptions(processingOptions));
+    }
+
+    /**
+     * Processes either a single file, or the input as directory recursively.
+     *
+     * @param input A file or directory.
+     * @see MLFilePreprocessor#processProgram(Path)
+     */
+    public void processProgram(final Path input) {
+        process(input, true);
+    }
+
+    /**
+     * Processes either a single file, or the input as directory recursively.
+     *
+     * @param input A file or directory.
+     * @see MLFilePreprocessor#processPerSprite(Path)
+     */
+    public void processPerSprite(final Path input) {
+        process(input, false);
+    }
+
+    private void process(final Path input, final boolean wholeProgram) {
+        final List<MLOutputPath> outputPaths = preprocessors.stream().map(MLFilePreprocessor::getOutputPath).toList();
+        final PipelineMetrics metrics = PipelineMetrics.start(
+            processingOptions.metricsInterval(), MLFilePreprocessor.metricsOutputDirs(outputPaths)
+        );
+        preprocessors.forEach(preprocessor -> preprocessor.startRun(metrics));
+        try {
+            new ProgramFileWalker(processingOptions, metrics).walk(input, new ProgramFileWalker.ProgramConsumer() {
+                @Override
+                public boolean wants(final InputFile inputFile) {
+                    return preprocessors.stream().anyMatch(preprocessor -> preprocessor.needsProcessing(inputFile));
+                }
+
+                @Override
+                public void accept(final InputFile inputFile, final Optional<Program> program) {
+                    for (final MLFilePreprocessor<?> preprocessor : preprocessors) {
+                        preprocessor.processParsedProgram(inputFile, program, wholeProgram);
+                    }
+                }
+            });
+        }
+        finally {
+            try {
+                finishRun();
+            }
+            finally {
+                metrics.close();
+            }
+        }
+    }
+
+    /**
+     * Finishes the run of all preprocessors, even if some of them fail.
+     *
+     * @throws UncheckedIOException The first failure, with the later ones as suppressed exceptions.
+     */
+    private void finishRun() {
+        UncheckedIOException failure = null;
+        for (final MLFilePreprocessor<?> preprocessor : preprocessors) {
+            try {
+                preprocessor.finishRun();
+            }
+            catch (UncheckedIOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+                else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.MoreFiles;
+
+/**
+ * A single program file found in the input.
+ *
+ * <p>
+ * Not thread-safe. Each input file is only handled by a single worker thread.
+ */
+final class InputFile {
+
+    private final Path baseDir;
+    private final Path file;
+
+    private String contentHash;
+
+    /**
+     * Creates a new input file.
+     *
+     * @param baseDir The input base directory.
+     * @param file    The path of the file. Has to be located in the base directory.
+     */
+    InputFile(final Path baseDir, final Path file) {
+        this.baseDir = baseDir;
+        this.file = file;
+    }
+
+    /**
+     * The path of the input file relative to the input base directory.
+     *
+     * @return The relative path.
+     */
+    Path relativePath() {
+        return baseDir.relativize(file);
+    }
+
+    Path path() {
+        return file;
+    }
+
+    /**
+     * The SHA-256 hash of the file content.
+     *
+     * <p>
+     * Computed on first use, the file content is not read again afterwards.
+     *
+     * @return The hash in hexadecimal representation.
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    String contentHash() throws IOException {
+        if (contentHash == null) {
+            contentHash = MoreFiles.asByteSource(file).hash(Hashing.sha256()).toString();
+        }
+        return contentHash;
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations with exponentially growing buckets.
+ *
+ * <p>
+ * Bucket {@code i} counts the durations up to {@code 2^(i + MIN_EXPONENT)} nanoseconds, i.e., the buckets range from
+ * about one microsecond to about 18 minutes. Longer durations are only counted in the total.
+ */
+final class LatencyHistogram {
+
+    private static final int MIN_EXPONENT = 10;
+
+    private static final int BUCKETS = 31;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(final long nanos) {
+        count.increment();
+        sumNanos.add(nanos);
+
+        final int exponent = Long.SIZE - Long.numberOfLeadingZeros(Math.max(0, nanos - 1));
+        final int bucket = Math.max(0, exponent - MIN_EXPONENT);
+        if (bucket < BUCKETS) {
+            buckets[bucket].increment();
+        }
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    long sumNanos() {
+        return sumNanos.sum();
+    }
+
+    int bucketCount() {
+        return BUCKETS;
+    }
+
+    /**
+     * The inclusive upper bound of a bucket.
+     *
+     * @param bucket The index of the bucket.
+     * @return The upper bound in nanoseconds.
+     */
+    static long upperBoundNanos(final int bucket) {
+        return 1L << (bucket + MIN_EXPONENT);
+    }
+
+    /**
+     * The number of recorded durations up to the upper bound of a bucket.
+     *
+     * @param bucket The index of the bucket.
+     * @return The number of durations in this and all smaller buckets.
+     */
+    long cumulativeCount(final int bucket) {
+        long sum = 0;
+        for (int i = 0; i <= bucket; i++) {
+            sum += buckets[i].sum();
+        }
+        return sum;
+    }
+
+    /**
+     * Estimates a quantile of the recorded durations.
+     *
+     * @param quantile A value between zero and one.
+     * @return The upper bound of the bucket containing the quantile in nanoseconds. Zero, if nothing was recorded.
+     */
+    long quantileNanos(final double quantile) {
+        final long total = count();
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank) {
+                return upperBoundNanos(i);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
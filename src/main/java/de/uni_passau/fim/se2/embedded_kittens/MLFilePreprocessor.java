@@ -21,30 +21,58 @@
  */
 package de.uni_passau.fim.se2.embedded_kittens;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
-import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 
+import com.google.common.io.CountingOutputStream;
+
 import de.uni_passau.fim.se2.litterbox.ast.model.Program;
-import de.uni_passau.fim.se2.litterbox.ast.parser.Scratch3Parser;
+import de.uni_passau.fim.se2.litterbox.utils.Preconditions;
 
 public abstract class MLFilePreprocessor<R> {
 
     private static final Logger log = Logger.getLogger(MLFilePreprocessor.class.getName());
 
-    private static final Scratch3Parser PARSER = new Scratch3Parser();
-
     protected final MLProgramPreprocessor<R> programPreprocessor;
     private final MLOutputPath outputPath;
 
+    private MLFileProcessingOptions processingOptions = MLFileProcessingOptions.defaults();
+
+    /**
+     * Only present while processing an input with {@link MLFileProcessingOptions#resume()} enabled.
+     */
+    private ProcessingJournal journal;
+
+    /**
+     * Only present while processing an input with {@link MLFileProcessingOptions#sharding()} enabled.
+     */
+    private ShardedOutputWriter shardWriter;
+
+    /**
+     * Only present while processing an input with an output directory.
+     */
+    private SkipReport skipReport;
+
+    private PipelineMetrics metrics = PipelineMetrics.disabled();
+
     protected MLFilePreprocessor(final MLProgramPreprocessor<R> programPreprocessor, final MLOutputPath outputPath) {
         this.programPreprocessor = programPreprocessor;
         this.outputPath = outputPath;
@@ -54,6 +82,19 @@ public abstract class MLFilePreprocessor<R> {
         return programPreprocessor;
     }
 
+    public MLOutputPath getOutputPath() {
+        return outputPath;
+    }
+
+    /**
+     * Replaces the {@link MLFileProcessingOptions#defaults()} used to process the inputs.
+     *
+     * @param processingOptions The options that should be used from now on.
+     */
+    public void setProcessingOptions(final MLFileProcessingOptions processingOptions) {
+        this.processingOptions = processingOptions;
+    }
+
     /**
      * Determines the output file name based on the input file name.
      *
@@ -65,6 +106,13 @@ public abstract class MLFilePreprocessor<R> {
      */
     protected abstract Path outputFileName(Path inputFile);
 
+    /**
+     * A short name of the output format, e.g., used as file name prefix for output shards.
+     *
+     * @return The name of the output format.
+     */
+    protected abstract String formatName();
+
     /**
      * Processes either a single file, or the input as directory recursively.
      *
@@ -84,112 +132,532 @@ public abstract class MLFilePreprocessor<R> {
     }
 
     private void process(final Path input, final boolean wholeProgram) {
-        final File inputFile = input.toFile();
-        if (!inputFile.exists()) {
-            log.warning("Input file '" + input + "' does not exist!");
+        final PipelineMetrics runMetrics = PipelineMetrics.start(
+            processingOptions.metricsInterval(), metricsOutputDirs(List.of(outputPath))
+        );
+        startRun(runMetrics);
+        try {
+            new ProgramFileWalker(processingOptions, runMetrics).walk(input, new ProgramFileWalker.ProgramConsumer() {
+                @Override
+                public boolean wants(final InputFile inputFile) {
+                    return needsProcessing(inputFile);
+                }
+
+                @Override
+                public void accept(final InputFile inputFile, final Optional<Program> program) {
+                    processParsedProgram(inputFile, program, wholeProgram);
+                }
+            });
+        }
+        finally {
+            try {
+                finishRun();
+            }
+            finally {
+                runMetrics.close();
+            }
+        }
+    }
+
+    /**
+     * Determines where the metrics of a run are written to.
+     *
+     * @param outputPaths The output paths of all preprocessors of a run.
+     * @return The output directories. The console output has no directory.
+     */
+    static List<Path> metricsOutputDirs(final List<MLOutputPath> outputPaths) {
+        return outputPaths.stream().filter(path -> !path.isConsoleOutput()).map(MLOutputPath::getPath).toList();
+    }
+
+    /**
+     * Prepares the processing of a new input.
+     *
+     * <p>
+     * Opens the journal in the output directory if the run should be resumable, and sets up the shards if the
+     * outputs should be aggregated. The program preprocessor is started last, once the outputs could be opened.
+     *
+     * @param runMetrics Records the processing times and output sizes of this run.
+     */
+    void startRun(final PipelineMetrics runMetrics) {
+        this.metrics = runMetrics;
+
+        if (!outputPath.isConsoleOutput()) {
+            openOutputs();
+        }
+        programPreprocessor.startRun();
+    }
+
+    private void openOutputs() {
+        skipReport = new SkipReport(outputPath.getPath());
+
+        if (processingOptions.sharding().enabled()) {
+            Preconditions.checkState(programPreprocessor.binaryOutput().isEmpty(), "Binary outputs cannot be sharded.");
+            shardWriter = new ShardedOutputWriter(
+                outputPath.getPath(), this::shardFileName, processingOptions.sharding(), processingOptions.compression()
+            );
+        }
+
+        if (!processingOptions.resume()) {
             return;
         }
 
-        if (input.toFile().isFile()) {
-            processFile(input.getParent(), input, wholeProgram);
+        try {
+            journal = ProcessingJournal.open(outputPath.getPath());
         }
-        else if (input.toFile().isDirectory()) {
-            processDirectory(input, wholeProgram);
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not open the journal in '" + outputPath + "'!", e);
         }
     }
 
-    private void processFile(final Path inputBaseDir, final Path programPath, final boolean wholeProgram) {
+    /**
+     * Cleans up after all inputs of a run have been processed.
+     *
+     * <p>
+     * The outputs of the run are closed even if its summary could not be written.
+     *
+     * @throws UncheckedIOException Thrown if the summary of the run could not be written.
+     */
+    void finishRun() {
         try {
-            final Stream<R> results = readProgram(programPath).stream().flatMap(program -> {
-                if (wholeProgram) {
-                    return programPreprocessor.processWholeProgram(program);
-                }
-                else {
-                    return programPreprocessor.processSprites(program);
-                }
-            });
-            writeResultToOutput(inputBaseDir.relativize(programPath), results);
+            programPreprocessor.finishRun(outputPath);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not write the summary of the run to '" + outputPath + "'!", e);
+        }
+        finally {
+            closeOutput(shardWriter);
+            closeOutput(journal);
+            closeOutput(skipReport);
+            shardWriter = null;
+            journal = null;
+            skipReport = null;
+            metrics = PipelineMetrics.disabled();
+        }
+    }
+
+    private void closeOutput(final Closeable output) {
+        if (output == null) {
+            return;
+        }
+
+        try {
+            output.close();
+        }
+        catch (IOException e) {
+            log.log(Level.WARNING, "Could not close all outputs in '" + outputPath + "'!", e);
+        }
+    }
+
+    private Path shardFileName(final int shardIndex) {
+        final Path shardName = outputFileName(Path.of(String.format("%s-%05d", formatName(), shardIndex)));
+        return processingOptions.compression().withFileSuffix(shardName);
+    }
+
+    /**
+     * Checks if the input still has to be processed.
+     *
+     * @param inputFile Some input file.
+     * @return False, if a previous run already generated the output for the unchanged input with the same options and
+     *         the output file still exists.
+     */
+    boolean needsProcessing(final InputFile inputFile) {
+        if (journal == null) {
+            return true;
+        }
+
+        try {
+            return !journal.isCompleted(inputFile.relativePath(), journalKey(inputFile))
+                || !Files.exists(getOutputFilePath(inputFile.relativePath()));
         }
         catch (IOException e) {
-            log.warning("Could not process file '" + programPath + "'!");
+            log.warning("Could not read file '" + inputFile + "'!");
+            return true;
         }
     }
 
-    private void processDirectory(final Path path, final boolean wholeProgram) {
-        try (var files = Files.walk(path)) {
-            files
-                .filter(f -> f.toFile().isFile())
-                .parallel()
-                .forEach(f -> processFile(path, f, wholeProgram));
+    /**
+     * Preprocesses an already parsed program and writes the result to the output.
+     *
+     * @param inputFile    The input file the program was read from.
+     * @param program      The parsed program. Empty, if the input could not be parsed.
+     * @param wholeProgram True, if the program should be processed as a whole instead of per sprite.
+     */
+    void processParsedProgram(
+        final InputFile inputFile, final Optional<Program> program, final boolean wholeProgram
+    ) {
+        if (!needsProcessing(inputFile)) {
+            return;
+        }
+
+        recordStatus(inputFile, ProcessingJournal.Status.STARTED);
+        final long startNanos = metrics.startTimer();
+        final ProcessingGuard guard = ProcessingGuard.activate(processingOptions.limits());
+        try {
+            final ResultOutput results = resultOutput(program, wholeProgram);
+            writeResultToOutput(inputFile.relativePath(), results);
+            results.recordStageTimes(inputFile, metrics.elapsedSince(startNanos));
         }
         catch (IOException e) {
-            log.warning("Failed to walk over all files in directory '" + path + "'!");
-            e.printStackTrace();
+            log.warning("Could not process file '" + inputFile.relativePath() + "'!");
+            metrics.recordFailure(PipelineMetrics.IO_ERROR);
+            recordStatus(inputFile, ProcessingJournal.Status.FAILED);
+            return;
+        }
+        catch (ProcessingTimeoutException e) {
+            metrics.recordFailure(PipelineMetrics.TIMEOUT);
+            reportSkipped(inputFile, e.getMessage());
+            recordStatus(inputFile, ProcessingJournal.Status.FAILED);
+            return;
+        }
+        finally {
+            guard.deactivate();
+        }
+
+        guard.skippedParts().forEach(reason -> {
+            metrics.recordFailure(PipelineMetrics.LEAF_LIMIT);
+            reportSkipped(inputFile, reason);
+        });
+        if (program.isPresent()) {
+            recordStatus(inputFile, ProcessingJournal.Status.DONE);
+        }
+        else {
+            recordStatus(inputFile, ProcessingJournal.Status.FAILED);
+        }
+    }
+
+    private ResultOutput resultOutput(final Optional<Program> program, final boolean wholeProgram) {
+        final Optional<BinaryResultWriter<R>> binaryOutput = programPreprocessor.binaryOutput();
+        if (binaryOutput.isEmpty() && programPreprocessor instanceof StreamingPreprocessor streaming) {
+            return new StreamedResults(streaming, program, wholeProgram);
+        }
+
+        final Stream<R> results = program.stream().flatMap(p -> {
+            if (wholeProgram) {
+                return programPreprocessor.processWholeProgram(p);
+            }
+            else {
+                return programPreprocessor.processSprites(p);
+            }
+        });
+        if (binaryOutput.isPresent()) {
+            return new BinaryRecords(results.iterator(), binaryOutput.get());
+        }
+        else {
+            return new OutputLines(results.iterator());
         }
     }
 
-    private Optional<Program> readProgram(final Path programPath) throws IOException {
+    private void reportSkipped(final InputFile inputFile, final String reason) {
+        if (skipReport == null) {
+            log.warning("Processing " + inputFile.relativePath() + " was limited: " + reason);
+        }
+        else {
+            skipReport.record(inputFile.relativePath(), reason);
+        }
+    }
+
+    /**
+     * Identifies the combination of the input content and the options that influence the output.
+     *
+     * @param inputFile Some input file.
+     * @return The key of the input in the journal.
+     * @throws IOException Thrown if the input file cannot be read.
+     */
+    private String journalKey(final InputFile inputFile) throws IOException {
+        return inputFile.contentHash() + ":" + processingOptions.optionsFingerprint();
+    }
+
+    private void recordStatus(final InputFile inputFile, final ProcessingJournal.Status status) {
+        if (journal == null) {
+            return;
+        }
+
         try {
-            return Optional.of(PARSER.parseFile(programPath.toFile()));
+            journal.record(inputFile.relativePath(), journalKey(inputFile), status);
         }
-        catch (Exception e) {
-            log.warning("Could not parse file '" + programPath + "' as Scratch project!");
-            e.printStackTrace();
-            return Optional.empty();
+        catch (IOException e) {
+            log.warning("Could not record the status of file '" + inputFile + "' in the journal!");
         }
     }
 
-    private void writeResultToOutput(final Path inputFile, final Stream<R> result) throws IOException {
+    private void writeResultToOutput(final Path inputFile, final ResultOutput results) throws IOException {
         if (outputPath.isConsoleOutput()) {
-            writeResultToConsole(inputFile, result);
+            writeResultToConsole(inputFile, results);
+        }
+        else if (shardWriter != null) {
+            writeResultToShard(inputFile, results);
         }
         else {
-            writeResultToFile(inputFile, result);
+            writeResultToFile(inputFile, results);
         }
     }
 
-    private void writeResultToConsole(final Path inputFile, final Stream<R> result) {
-        // intentionally not in try-with-resources, as we do not want to close System.out
-        final PrintWriter pw = new PrintWriter(System.out, true);
-        writeResult(inputFile, pw, result);
+    private void writeResultToConsole(final Path inputFile, final ResultOutput results) throws IOException {
+        // the output of each input is buffered completely, its lines, compressed frames, or binary records must not
+        // be interleaved with the ones of other threads
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (OutputStream out = processingOptions.compression().compress(buffer)) {
+            writeResult(inputFile, out, results);
+        }
+
+        synchronized (System.out) {
+            System.out.write(buffer.toByteArray(), 0, buffer.size());
+            System.out.flush();
+        }
     }
 
-    private void writeResultToFile(final Path inputFile, final Stream<R> result) throws IOException {
+    /**
+     * Writes the result to the output file.
+     *
+     * <p>
+     * The result is first written to a temporary file next to the output file that is only renamed to the actual
+     * output file once it has been written completely. Therefore, an aborted run never leaves behind incomplete output
+     * files.
+     *
+     * @param inputFile The path of the input file relative to the input base directory.
+     * @param results   The results that should be written.
+     * @throws IOException Thrown if the output file cannot be written.
+     */
+    private void writeResultToFile(final Path inputFile, final ResultOutput results) throws IOException {
         final Path outputFile = getOutputFilePath(inputFile);
+        final Path partialFile = outputFile.resolveSibling("." + outputFile.getFileName() + ".partial");
 
         Files.createDirectories(outputFile.getParent());
 
-        try (
-            BufferedWriter bw = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8);
-            PrintWriter pw = new PrintWriter(bw);
-        ) {
-            writeResult(inputFile, pw, result);
+        final CountingOutputStream out = new CountingOutputStream(
+            processingOptions.compression().compress(new BufferedOutputStream(Files.newOutputStream(partialFile)))
+        );
+        try (out) {
+            writeResult(inputFile, out, results);
         }
+        catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partialFile);
+            throw e;
+        }
+
+        moveReplacing(partialFile, outputFile);
+        metrics.recordOutputBytes(out.getCount());
 
         log.info("Wrote processing result of " + inputFile + " to file " + outputFile);
     }
 
+    static void moveReplacing(final Path source, final Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void writeResultToShard(final Path inputFile, final ResultOutput results) throws IOException {
+        final Optional<ShardedOutputWriter.WrittenOutput> written = shardWriter.write(inputFile, results::writeTo);
+
+        if (written.isPresent()) {
+            metrics.recordOutputBytes(written.get().bytes());
+            log.info("Wrote processing result of " + inputFile + " to shard " + written.get().shard());
+        }
+        else {
+            log.warning("Processing " + inputFile + " resulted in no output!");
+        }
+    }
+
     private Path getOutputFilePath(final Path inputFile) {
         Path outputFile = outputPath.getPath();
         if (inputFile.getParent() != null) {
             outputFile = outputFile.resolve(inputFile.getParent());
         }
 
-        final Path outName = outputFileName(inputFile.getFileName());
+        final Path outName = processingOptions.compression().withFileSuffix(outputFileName(inputFile.getFileName()));
         outputFile = outputFile.resolve(outName);
         return outputFile;
     }
 
-    private void writeResult(final Path inputFile, final PrintWriter printWriter, final Stream<R> result) {
-        final Iterator<R> lines = result.iterator();
-        if (!lines.hasNext()) {
+    private void writeResult(final Path inputFile, final OutputStream out, final ResultOutput results)
+        throws IOException {
+        if (results.writeTo(out) == 0) {
             log.warning("Processing " + inputFile + " resulted in no output!");
-            return;
         }
+    }
+
+    /**
+     * Writes the results of an input to the output.
+     *
+     * <p>
+     * The time spent generating the results and serialising them is measured separately, the remaining processing
+     * time is spent writing the output.
+     */
+    private abstract class ResultOutput {
+
+        protected long transformNanos;
+        protected long serializeNanos;
+
+        /**
+         * Writes the results.
+         *
+         * @param out The output the results are written to.
+         * @return The number of written results.
+         * @throws IOException Thrown if the output cannot be written.
+         */
+        abstract long writeTo(OutputStream out) throws IOException;
+
+        /**
+         * Checks if another result can be generated, as part of the transformation time.
+         *
+         * @param results The lazily generated results.
+         * @return True, if there is another result.
+         */
+        protected final boolean hasNext(final Iterator<R> results) {
+            final long startNanos = metrics.startTimer();
+            final boolean hasNext = results.hasNext();
+            transformNanos += metrics.elapsedSince(startNanos);
+            return hasNext;
+        }
+
+        /**
+         * Generates the next result, as part of the transformation time.
+         *
+         * @param results The lazily generated results.
+         * @return The next result.
+         */
+        protected final R nextResult(final Iterator<R> results) {
+            final long transformStart = metrics.startTimer();
+            final R result = results.next();
+            transformNanos += metrics.elapsedSince(transformStart);
+
+            ProcessingGuard.checkDeadline();
+            return result;
+        }
+
+        void recordStageTimes(final InputFile inputFile, final long totalNanos) {
+            if (!metrics.enabled()) {
+                return;
+            }
+
+            metrics.recordStage(formatName(), PipelineMetrics.Stage.TRANSFORM, transformNanos);
+            metrics.recordStage(formatName(), PipelineMetrics.Stage.SERIALIZE, serializeNanos);
+            metrics.recordStage(
+                formatName(), PipelineMetrics.Stage.WRITE, Math.max(0, totalNanos - transformNanos - serializeNanos)
+            );
+            metrics.recordProcessingTime(formatName(), inputFile.relativePath(), totalNanos);
+        }
+    }
+
+    /**
+     * Writes the results as UTF-8 encoded text lines.
+     */
+    private abstract class TextOutput extends ResultOutput {
+
+        @Override
+        final long writeTo(final OutputStream out) throws IOException {
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            final long lines = writeLines(writer);
+            writer.flush();
+            return lines;
+        }
+
+        /**
+         * Writes each result as a text line.
+         *
+         * @param out The output the lines are appended to, each followed by the line separator.
+         * @return The number of written lines.
+         * @throws IOException Thrown if the output cannot be written.
+         */
+        abstract long writeLines(Appendable out) throws IOException;
+    }
+
+    /**
+     * Lazily converts the results into output lines.
+     *
+     * <p>
+     * The results are generated on demand while the output is written. Each result is streamed to the output via
+     * {@link MLProgramPreprocessor#writeResult(Object, Appendable)} without building the complete line first.
+     */
+    private final class OutputLines extends TextOutput {
+
+        private final Iterator<R> results;
+
+        OutputLines(final Iterator<R> results) {
+            this.results = results;
+        }
+
+        @Override
+        long writeLines(final Appendable out) throws IOException {
+            long lines = 0;
+            while (hasNext(results)) {
+                final R result = nextResult(results);
+
+                final long serializeStart = metrics.startTimer();
+                programPreprocessor.writeResult(result, out);
+                out.append(System.lineSeparator());
+                serializeNanos += metrics.elapsedSince(serializeStart);
+                lines++;
+            }
+            return lines;
+        }
+    }
+
+    /**
+     * Lazily converts the results into binary records.
+     */
+    private final class BinaryRecords extends ResultOutput {
+
+        private final Iterator<R> results;
+        private final BinaryResultWriter<R> binaryWriter;
+
+        BinaryRecords(final Iterator<R> results, final BinaryResultWriter<R> binaryWriter) {
+            this.results = results;
+            this.binaryWriter = binaryWriter;
+        }
+
+        @Override
+        long writeTo(final OutputStream out) throws IOException {
+            long records = 0;
+            while (hasNext(results)) {
+                final R result = nextResult(results);
+
+                final long serializeStart = metrics.startTimer();
+                binaryWriter.writeBinaryResult(result, out);
+                serializeNanos += metrics.elapsedSince(serializeStart);
+                records++;
+            }
+            return records;
+        }
+    }
+
+    /**
+     * Writes the results while the preprocessor generates them, without ever holding a complete result.
+     *
+     * <p>
+     * Generating and serialising the results are interleaved, so their time is measured together as transformation.
+     */
+    private final class StreamedResults extends TextOutput {
+
+        private final StreamingPreprocessor streaming;
+        private final Optional<Program> program;
+        private final boolean wholeProgram;
+
+        StreamedResults(
+            final StreamingPreprocessor streaming, final Optional<Program> program, final boolean wholeProgram
+        ) {
+            this.streaming = streaming;
+            this.program = program;
+            this.wholeProgram = wholeProgram;
+        }
+
+        @Override
+        long writeLines(final Appendable out) throws IOException {
+            if (program.isEmpty()) {
+                return 0;
+            }
 
-        while (lines.hasNext()) {
-            final String output = programPreprocessor.resultToString(lines.next());
-            printWriter.println(output);
+            final long startNanos = metrics.startTimer();
+            try {
+                return streaming.writeResults(program.get(), wholeProgram, out);
+            }
+            finally {
+                transformNanos += metrics.elapsedSince(startNanos);
+            }
         }
     }
 }
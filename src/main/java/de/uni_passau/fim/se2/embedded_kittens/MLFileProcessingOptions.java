@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.time.Duration;
+
+import de.uni_passau.fim.se2.litterbox.utils.Preconditions;
+
+/**
+ * Options that control how a {@link MLFilePreprocessor} reads its inputs and writes its outputs.
+ *
+ * <p>
+ * In contrast to the {@link MLPreprocessorCommonOptions}, these options are independent of the output format and
+ * mostly do not influence the content of the generated output. Only the {@link ProcessingLimits} may cause parts of
+ * the output to be skipped.
+ *
+ * @param threads            The number of worker threads used when processing a directory of programs.
+ * @param resume             Record the progress in a journal in the output directory and skip inputs that have
+ *                           already been processed completely by a previous run.
+ * @param optionsFingerprint Identifies all options that influence the content of the generated output. When
+ *                           resuming, outputs that were generated with a different fingerprint are generated again.
+ * @param sharding           Aggregate the outputs into shard files of limited size instead of writing one output file
+ *                           per input.
+ * @param compression        If and how the output files should be compressed.
+ * @param limits             Limits the time and memory spent on a single input.
+ * @param metricsInterval    The interval in which a summary of the {@link PipelineMetrics} is logged and written to
+ *                           the output directory. Zero disables the collection of metrics.
+ */
+public record MLFileProcessingOptions(
+    int threads,
+    boolean resume,
+    String optionsFingerprint,
+    ShardLimits sharding,
+    OutputCompression compression,
+    ProcessingLimits limits,
+    Duration metricsInterval
+) {
+
+    public MLFileProcessingOptions {
+        Preconditions.checkArgument(threads > 0, "At least one worker thread is required.");
+        Preconditions.checkNotNull(optionsFingerprint);
+        Preconditions.checkNotNull(sharding);
+        Preconditions.checkNotNull(compression);
+        Preconditions.checkNotNull(limits);
+        Preconditions.checkNotNull(metricsInterval);
+        Preconditions.checkArgument(!metricsInterval.isNegative(), "The metrics interval must not be negative.");
+        Preconditions.checkArgument(
+            !resume || !sharding.enabled(), "Sharded outputs cannot be resumed."
+        );
+    }
+
+    /**
+     * The default options: one worker thread per available processor, always processing all inputs completely, one
+     * uncompressed output file per input, no metrics.
+     *
+     * @return The default file processing options.
+     */
+    public static MLFileProcessingOptions defaults() {
+        return new MLFileProcessingOptions(
+            Runtime.getRuntime().availableProcessors(), false, "", ShardLimits.disabled(), OutputCompression.none(),
+            ProcessingLimits.none(), Duration.ZERO
+        );
+    }
+}
@@ -21,6 +21,8 @@
  */
 package de.uni_passau.fim.se2.embedded_kittens;
 
+import java.io.IOException;
+import java.util.Optional;
 import java.util.stream.Stream;
 
 import de.uni_passau.fim.se2.litterbox.ast.model.Program;
@@ -41,6 +43,54 @@ public abstract class MLProgramPreprocessor<R> {
      */
     public abstract String resultToString(R result);
 
+    /**
+     * Writes the result in the same format as {@link #resultToString(Object)}.
+     *
+     * <p>
+     * Preprocessors with large results override this to stream the result to the output instead of building its
+     * complete string representation first.
+     *
+     * @param result The preprocessing result.
+     * @param out    The output the result is appended to.
+     * @throws IOException Thrown if the output cannot be written.
+     */
+    public void writeResult(final R result, final Appendable out) throws IOException {
+        out.append(resultToString(result));
+    }
+
+    /**
+     * The writer of the results if they are written as binary records instead of text lines.
+     *
+     * @return The binary writer. Empty, if the results are written as text lines.
+     */
+    public Optional<BinaryResultWriter<R>> binaryOutput() {
+        return Optional.empty();
+    }
+
+    /**
+     * Called once before the first input of a run is processed.
+     *
+     * <p>
+     * Preprocessors that need resources for the duration of a run override this to acquire them, and release them
+     * again in {@link #finishRun(MLOutputPath)}.
+     */
+    public void startRun() {
+        // intentionally empty here, to be implemented by subclasses when needed
+    }
+
+    /**
+     * Called once after all inputs of a run have been processed.
+     *
+     * <p>
+     * Preprocessors that collect information across all inputs override this to write it to the output.
+     *
+     * @param outputPath The output of the run.
+     * @throws IOException Thrown if the output cannot be written.
+     */
+    public void finishRun(final MLOutputPath outputPath) throws IOException {
+        // intentionally empty here, to be implemented by subclasses when needed
+    }
+
     public abstract Stream<R> processSprites(Program program);
 
     public abstract Stream<R> processWholeProgram(Program program);
@@ -22,12 +22,32 @@
 package de.uni_passau.fim.se2.embedded_kittens;
 
 import java.io.File;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.AnnotatedElement;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
 import java.util.concurrent.Callable;
 
+import com.google.common.hash.Hashing;
+
 import de.uni_passau.fim.se2.embedded_kittens.astnn.AstnnPreprocessor;
 import de.uni_passau.fim.se2.embedded_kittens.code2.Code2SeqPreprocessor;
 import de.uni_passau.fim.se2.embedded_kittens.code2.Code2VecPreprocessor;
+import de.uni_passau.fim.se2.embedded_kittens.code2.Code2Vocabulary;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.ContextDeduplication;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.ContextSampling;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathFormatOptions;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathGenerationOptions;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.PathHashCollisions;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelationFactory;
 import de.uni_passau.fim.se2.embedded_kittens.ggnn.GgnnGraphPreprocessor;
 import de.uni_passau.fim.se2.embedded_kittens.ggnn.GgnnOutputFormat;
 import de.uni_passau.fim.se2.embedded_kittens.shared.ActorNameNormalizer;
@@ -36,6 +56,8 @@ import de.uni_passau.fim.se2.embedded_kittens.shared.WholeProgramJsonProcessor;
 import de.uni_passau.fim.se2.embedded_kittens.tokenizer.TokenizingPreprocessor;
 import de.uni_passau.fim.se2.embedded_kittens.util.MaskingStrategy;
 import de.uni_passau.fim.se2.embedded_kittens.util.NodeNameUtil;
+import de.uni_passau.fim.se2.embedded_kittens.util.NormalisationCache;
+import de.uni_passau.fim.se2.embedded_kittens.util.StringUtil;
 import de.uni_passau.fim.se2.litterbox.utils.IssueTranslator;
 import picocli.CommandLine;
 
@@ -48,7 +70,8 @@ import picocli.CommandLine;
         Main.Code2SeqSubcommand.class,
         Main.Code2vecSubcommand.class,
         Main.GgnnSubcommand.class,
-        Main.TokenizerSubcommand.class
+        Main.TokenizerSubcommand.class,
+        Main.MultiSubcommand.class
     },
     footerHeading = "%nExamples:%n",
     footer = {
@@ -75,6 +98,19 @@ public class Main implements Callable<Integer> {
         System.exit(exitCode);
     }
 
+    /**
+     * Marks an option that does not influence the content of the generated output, but only controls which files are
+     * read and written, and how.
+     *
+     * <p>
+     * Such options are not part of the options fingerprint, i.e., changing them does not cause a resumed run to
+     * process all inputs again.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.FIELD)
+    @interface OutputNeutral {
+    }
+
     @CommandLine.Command(mixinStandardHelpOptions = true)
     abstract static class MLPreprocessorSubcommand implements Callable<Integer> {
 
@@ -87,6 +123,7 @@ public class Main implements Callable<Integer> {
         )
         String language = "en";
 
+        @OutputNeutral
         @CommandLine.Option(
             names = { "-p", "--path" },
             description = "Path to the folder or file that should be analysed, "
@@ -94,6 +131,7 @@ public class Main implements Callable<Integer> {
         )
         Path projectPath;
 
+        @OutputNeutral
         @CommandLine.Option(
             names = { "-o", "--output" },
             description = "Path to the file or folder for the analyser results. "
@@ -144,7 +182,102 @@ public class Main implements Callable<Integer> {
         )
         boolean latinOnlyActorNames;
 
-        protected abstract MLFilePreprocessor<?> getAnalyzer() throws Exception;
+        @OutputNeutral
+        @CommandLine.Option(
+            names = { "--threads" },
+            description = "The number of worker threads used when processing a directory. "
+                + "Default: the number of available processors."
+        )
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        @OutputNeutral
+        @CommandLine.Option(
+            names = { "--resume", "--incremental" },
+            description = "Record the progress in a journal in the output folder. "
+                + "Inputs that a previous run with this option already processed completely are skipped, "
+                + "failed or interrupted ones are processed again. "
+                + "Changed inputs, and all inputs after changing an option that influences the output, "
+                + "are processed again as well."
+        )
+        boolean resume;
+
+        @OutputNeutral
+        @CommandLine.Option(
+            names = { "--shard-max-bytes" },
+            description = "Aggregate the outputs into shard files with an index instead of writing one file per "
+                + "input. Starts a new shard once the current one reaches this size in bytes. "
+                + "Default: 0, i.e. no size limit."
+        )
+        long shardMaxBytes;
+
+        @OutputNeutral
+        @CommandLine.Option(
+            names = { "--shard-max-lines" },
+            description = "Aggregate the outputs into shard files with an index instead of writing one file per "
+                + "input. Starts a new shard once the current one reaches this number of lines. "
+                + "Default: 0, i.e. no line limit."
+        )
+        long shardMaxLines;
+
+        @OutputNeutral
+        @CommandLine.Option(
+            names = { "--compress" },
+            converter = CompressionCodecConverter.class,
+            description = "Compress the output files. Valid values: none, gzip. Default: none."
+        )
+        CompressionCodec compressionCodec = CompressionCodec.NONE;
+
+        @OutputNeutral
+        @CommandLine.Option(
+            names = { "--compression-level" },
+            description = "The compression level from 0 to 9. Default: 6 for gzip."
+        )
+        Integer compressionLevel;
+
+        @OutputNeutral
+        @CommandLine.Option(
+            names = { "--timeout" },
+            description = "The time budget in seconds for processing a single project. "
+                + "Projects that exceed it are skipped and listed in the skip report in the output folder. "
+                + "Default: 0, i.e. no time limit."
+        )
+        long timeoutSeconds;
+
+        @CommandLine.Option(
+            names = { "--max-leaves" },
+            description = "Skip sprites, scripts or programs with more AST leaves than this limit when generating "
+                + "code2vec and code2seq paths. They are listed in the skip report in the output folder. "
+                + "Default: 0, i.e. no limit."
+        )
+        int maxLeaves;
+
+        @OutputNeutral
+        @CommandLine.Option(
+            names = { "--metrics-interval" },
+            description = "Collect processing times and throughput metrics, log a summary every this many seconds "
+                + "and write them to metrics.json and metrics.prom in the output folder. "
+                + "Default: 0, i.e. no metrics."
+        )
+        long metricsIntervalSeconds;
+
+        @OutputNeutral
+        @CommandLine.Option(
+            names = { "--normalisation-cache" },
+            description = "Cache up to this many normalised identifiers and literals, shared by all worker threads. "
+                + "The hit rate is part of the metrics. Default: 0, i.e. no cache."
+        )
+        int normalisationCacheCapacity;
+
+        /**
+         * Builds the preprocessors whose outputs should be generated.
+         *
+         * <p>
+         * All of them receive the same parsed programs, i.e., each input is only parsed once.
+         *
+         * @return The preprocessors that should process the input.
+         * @throws Exception Thrown when an invalid parameter configuration was passed.
+         */
+        protected abstract List<MLFilePreprocessor<?>> getAnalyzers() throws Exception;
 
         /**
          * Override to implement custom parameter validation before the analyzer is run.
@@ -160,35 +293,33 @@ public class Main implements Callable<Integer> {
             IssueTranslator.getInstance().setLanguage(language);
 
             validateParams();
+            StringUtil.setNormalisationCache(getNormalisationCache());
 
-            final MLFilePreprocessor<?> analyzer = getAnalyzer();
+            final List<MLFilePreprocessor<?>> analyzers = getAnalyzers();
             if (wholeProgram.wholeProgramJson) {
-                return runWholeProgramJsonAnalysis(analyzer.getProgramPreprocessor());
+                return runAnalysis(analyzers.stream().map(this::toWholeProgramJsonAnalyzer).toList(), true);
             }
             else {
-                return runAnalysis(analyzer);
+                return runAnalysis(analyzers, wholeProgram.wholeProgram);
             }
         }
 
-        private int runWholeProgramJsonAnalysis(final MLProgramPreprocessor<?> baseProcessor) {
+        private MLFilePreprocessor<?> toWholeProgramJsonAnalyzer(final MLFilePreprocessor<?> analyzer) {
             final WholeProgramJsonProcessor<?> wholeProgramJsonProcessor = new WholeProgramJsonProcessor<>(
-                getCommonOptions(), baseProcessor
+                getCommonOptions(), analyzer.getProgramPreprocessor()
             );
-            final WholeProgramFileProcessor<?> wholeProgramFileProcessor = new WholeProgramFileProcessor<>(
-                wholeProgramJsonProcessor, getOutputPath()
-            );
-
-            wholeProgramFileProcessor.processProgram(projectPath);
-
-            return 0;
+            return new WholeProgramFileProcessor<>(wholeProgramJsonProcessor, analyzer.getOutputPath());
         }
 
-        private int runAnalysis(final MLFilePreprocessor<?> analyzer) {
-            if (wholeProgram.wholeProgram) {
-                analyzer.processProgram(projectPath);
+        private int runAnalysis(final List<MLFilePreprocessor<?>> analyzers, final boolean processWholeProgram) {
+            final FanOutFilePreprocessor preprocessor = new FanOutFilePreprocessor(analyzers);
+            preprocessor.setProcessingOptions(getProcessingOptions());
+
+            if (processWholeProgram) {
+                preprocessor.processProgram(projectPath);
             }
             else {
-                analyzer.processPerSprite(projectPath);
+                preprocessor.processPerSprite(projectPath);
             }
             return 0;
         }
@@ -216,13 +347,134 @@ public class Main implements Callable<Integer> {
         }
 
         protected final MLPreprocessorCommonOptions getCommonOptions() {
+            return getCommonOptions(getOutputPath());
+        }
+
+        protected final MLPreprocessorCommonOptions getCommonOptions(final MLOutputPath output) {
             requireProjectPath();
 
             return new MLPreprocessorCommonOptions(
-                getOutputPath(), includeStage, includeDefaultSprites, abstractTokens, buildActorNameNormalizer()
+                output, includeStage, includeDefaultSprites, abstractTokens, buildActorNameNormalizer()
             );
         }
 
+        protected final MLFileProcessingOptions getProcessingOptions() throws CommandLine.ParameterException {
+            if (threads < 1) {
+                throw new CommandLine.ParameterException(spec.commandLine(), "At least one thread is required.");
+            }
+
+            if (resume && outputPath == null) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "An output folder is required to resume a previous run."
+                );
+            }
+
+            return new MLFileProcessingOptions(
+                threads, resume, getOptionsFingerprint(), getShardLimits(), getOutputCompression(),
+                getProcessingLimits(), getMetricsInterval()
+            );
+        }
+
+        private ShardLimits getShardLimits() throws CommandLine.ParameterException {
+            if (shardMaxBytes < 0 || shardMaxLines < 0) {
+                throw new CommandLine.ParameterException(spec.commandLine(), "The shard limits can’t be negative.");
+            }
+
+            final ShardLimits limits = new ShardLimits(shardMaxBytes, shardMaxLines);
+            if (limits.enabled() && outputPath == null) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "An output folder is required to write sharded outputs."
+                );
+            }
+            if (limits.enabled() && resume) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "Sharded outputs cannot be resumed."
+                );
+            }
+
+            return limits;
+        }
+
+        private OutputCompression getOutputCompression() throws CommandLine.ParameterException {
+            final int level = Objects.requireNonNullElse(compressionLevel, compressionCodec.defaultLevel());
+            if (compressionLevel != null && !compressionCodec.enabled()) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "A compression level requires a compression algorithm."
+                );
+            }
+            if (!compressionCodec.isValidLevel(level)) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "Invalid compression level " + level + " for " + compressionCodec + "."
+                );
+            }
+
+            return new OutputCompression(compressionCodec, level);
+        }
+
+        private ProcessingLimits getProcessingLimits() throws CommandLine.ParameterException {
+            if (timeoutSeconds < 0 || maxLeaves < 0) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "The processing limits can’t be negative."
+                );
+            }
+
+            return new ProcessingLimits(Duration.ofSeconds(timeoutSeconds), maxLeaves);
+        }
+
+        private Duration getMetricsInterval() throws CommandLine.ParameterException {
+            if (metricsIntervalSeconds < 0) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "The metrics interval can’t be negative."
+                );
+            }
+
+            return Duration.ofSeconds(metricsIntervalSeconds);
+        }
+
+        private NormalisationCache getNormalisationCache() throws CommandLine.ParameterException {
+            if (normalisationCacheCapacity < 0) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "The normalisation cache capacity can’t be negative."
+                );
+            }
+
+            return NormalisationCache.withCapacity(normalisationCacheCapacity);
+        }
+
+        /**
+         * Identifies the values of all options that influence the content of the generated output.
+         *
+         * <p>
+         * Includes the subcommand-specific options and the program version, but excludes options that only control
+         * which files are read and written, and how.
+         *
+         * @return A hash of the option values.
+         */
+        private String getOptionsFingerprint() {
+            final StringBuilder options = new StringBuilder(String.join(" ", spec.root().version()));
+            options.append('\n').append(spec.qualifiedName());
+
+            spec.options().stream()
+                .filter(option -> !isOutputNeutral(option))
+                .sorted(Comparator.comparing(CommandLine.Model.OptionSpec::longestName))
+                .forEach(
+                    option -> options.append('\n').append(option.longestName()).append('=')
+                        .append(Objects.toString(option.getValue()))
+                );
+
+            return Hashing.sha256().hashString(options, StandardCharsets.UTF_8).toString();
+        }
+
+        private static boolean isOutputNeutral(final CommandLine.Model.OptionSpec option) {
+            if (option.usageHelp() || option.versionHelp()) {
+                return true;
+            }
+
+            // the user object of an annotated option is the field it is declared on
+            return option.userObject() instanceof AnnotatedElement element
+                && element.isAnnotationPresent(OutputNeutral.class);
+        }
+
         private ActorNameNormalizer buildActorNameNormalizer() {
             if (latinOnlyActorNames) {
                 return NodeNameUtil::normalizeSpriteNameLatinOnly;
@@ -233,11 +485,21 @@ public class Main implements Callable<Integer> {
         }
     }
 
+    abstract static class SingleFormatSubcommand extends MLPreprocessorSubcommand {
+
+        protected abstract MLFilePreprocessor<?> getAnalyzer() throws Exception;
+
+        @Override
+        protected final List<MLFilePreprocessor<?>> getAnalyzers() throws Exception {
+            return List.of(getAnalyzer());
+        }
+    }
+
     @CommandLine.Command(
         name = "astnn",
         description = "Transform Scratch projects into the ASTNN input format."
     )
-    static class AstnnSubcommand extends MLPreprocessorSubcommand {
+    static class AstnnSubcommand extends SingleFormatSubcommand {
 
         @Override
         protected AstnnPreprocessor getAnalyzer() {
@@ -245,7 +507,7 @@ public class Main implements Callable<Integer> {
         }
     }
 
-    private abstract static class Code2Subcommand extends MLPreprocessorSubcommand {
+    private abstract static class Code2Subcommand extends SingleFormatSubcommand {
 
         @CommandLine.Option(
             names = { "--max-path-length" },
@@ -261,18 +523,176 @@ public class Main implements Callable<Integer> {
         )
         boolean isPerScript = false;
 
+        @OutputNeutral
+        @CommandLine.Option(
+            names = { "--path-threads" },
+            description = "The number of threads that generate the paths of the sprites or scripts of a single "
+                + "project concurrently. Does not change the output. "
+                + "Default: 1."
+        )
+        int pathThreads = 1;
+
+        @CommandLine.Option(
+            names = { "--max-contexts" },
+            description = "Randomly sample at most this many path contexts per sprite, script or program. "
+                + "Default: 0, i.e. all contexts."
+        )
+        int maxContexts;
+
+        @CommandLine.Option(
+            names = { "--sample-leaf-pairs" },
+            description = "Sample random pairs of leaves instead of enumerating all of them when limiting the "
+                + "number of contexts. Bounds the time by the number of leaves and the maximum number of contexts, "
+                + "but may find fewer contexts if many leaves have no token."
+        )
+        boolean sampleLeafPairs;
+
+        @CommandLine.Option(
+            names = { "--seed" },
+            description = "The seed for sampling the path contexts. Default: 0."
+        )
+        long seed;
+
+        @CommandLine.Option(
+            names = { "--deduplicate-contexts" },
+            converter = ContextDeduplicationConverter.class,
+            description = "Remove duplicate path contexts within a sprite, script or program. "
+                + "Valid values: none, drop (keep only the first occurrence), "
+                + "count (keep the first occurrence and append the number of occurrences). Default: none."
+        )
+        ContextDeduplication contextDeduplication = ContextDeduplication.NONE;
+
+        @CommandLine.Option(
+            names = { "--vocabulary" },
+            description = "Count the terminals, paths and labels of all projects and write them with their counts "
+                + "to vocabulary files in the output folder."
+        )
+        boolean vocabulary;
+
+        @CommandLine.Option(
+            names = { "--id-output" },
+            description = "Replace the terminals, paths and labels in the output by their ids from the vocabulary "
+                + "files. Implies --vocabulary."
+        )
+        boolean idOutput;
+
+        @CommandLine.Option(
+            names = { "--binary" },
+            description = "Write the ids from the vocabulary files as length-prefixed binary records that can be "
+                + "memory-mapped instead of text. Implies --vocabulary."
+        )
+        boolean binaryOutput;
+
         @Override
         protected void validateParams() throws CommandLine.ParameterException {
             if (maxPathLength < 0) {
                 throw new CommandLine.ParameterException(spec.commandLine(), "The path length can’t be negative.");
             }
 
+            if (pathThreads < 1) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "At least one path generation thread is required."
+                );
+            }
+
+            if (maxContexts < 0) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "The maximum number of contexts can’t be negative."
+                );
+            }
+
+            if (sampleLeafPairs && maxContexts == 0) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "Sampling leaf pairs requires a maximum number of contexts."
+                );
+            }
+
             if (wholeProgram.wholeProgram && isPerScript) {
                 throw new CommandLine.ParameterException(
                     spec.commandLine(),
                     "The analysis must be done either per script or for whole program"
                 );
             }
+
+            validateVocabularyParams();
+        }
+
+        private void validateVocabularyParams() throws CommandLine.ParameterException {
+            final boolean buildsVocabulary = vocabulary || idOutput || binaryOutput;
+            if (buildsVocabulary && outputPath == null) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "An output folder is required to write the vocabulary."
+                );
+            }
+
+            if (buildsVocabulary && resume) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(),
+                    "The vocabulary cannot be built when resuming, the skipped projects would be missing."
+                );
+            }
+
+            if (binaryOutput && contextDeduplication == ContextDeduplication.COUNT) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "The binary output can’t contain the counts of duplicate contexts."
+                );
+            }
+
+            if (idOutput && binaryOutput) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "The output can either contain ids as text or as binary records."
+                );
+            }
+
+            if ((idOutput || binaryOutput) && wholeProgram.wholeProgramJson) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "The id output cannot be combined with the whole program JSON output."
+                );
+            }
+
+            if (binaryOutput && compressionCodec.enabled()) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "The binary output can’t be compressed, it has to be memory-mapped."
+                );
+            }
+
+            // the shards, their limits and their index consist of text lines
+            if (binaryOutput && (shardMaxBytes > 0 || shardMaxLines > 0)) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "The binary output can’t be sharded, the shards consist of text lines."
+                );
+            }
+        }
+
+        protected final Code2Vocabulary getVocabulary() {
+            if (binaryOutput) {
+                return Code2Vocabulary.withBinaryOutput();
+            }
+            else if (idOutput) {
+                return Code2Vocabulary.withIdOutput();
+            }
+            else if (vocabulary) {
+                return Code2Vocabulary.counting();
+            }
+            else {
+                return Code2Vocabulary.disabled();
+            }
+        }
+
+        protected final PathGenerationOptions getPathGenerationOptions() {
+            return new PathGenerationOptions(
+                maxPathLength, includeStage, includeDefaultSprites, new PathFormatOptions(), getContextSampling(),
+                contextDeduplication, pathThreads
+            );
+        }
+
+        private ContextSampling getContextSampling() {
+            if (sampleLeafPairs) {
+                return new ContextSampling(maxContexts, ContextSampling.Mode.LEAF_PAIRS, seed);
+            }
+            else {
+                return new ContextSampling(maxContexts, ContextSampling.Mode.CONTEXTS, seed);
+            }
         }
     }
 
@@ -282,9 +702,49 @@ public class Main implements Callable<Integer> {
     )
     static class Code2vecSubcommand extends Code2Subcommand {
 
+        @CommandLine.Option(
+            names = { "--hash-paths" },
+            description = "Represent each path by a 64-bit hash that is computed directly from the AST nodes instead "
+                + "of the hash code of the path string. Avoids building the path strings."
+        )
+        boolean hashPaths;
+
+        @CommandLine.Option(
+            names = { "--track-path-hash-collisions" },
+            description = "Count the collisions of the 64-bit path hashes. "
+                + "Requires memory proportional to the number of distinct paths."
+        )
+        boolean trackPathHashCollisions;
+
+        @Override
+        protected void validateParams() throws CommandLine.ParameterException {
+            super.validateParams();
+
+            if (trackPathHashCollisions && !hashPaths) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "Tracking path hash collisions requires --hash-paths."
+                );
+            }
+        }
+
         @Override
         protected Code2VecPreprocessor getAnalyzer() {
-            return new Code2VecPreprocessor(getCommonOptions(), maxPathLength, isPerScript);
+            return new Code2VecPreprocessor(
+                getCommonOptions(), isPerScript, getPathGenerationOptions(), getProgramRelationFactory(),
+                getVocabulary()
+            );
+        }
+
+        private ProgramRelationFactory getProgramRelationFactory() {
+            if (trackPathHashCollisions) {
+                return ProgramRelationFactory.withPathHash64(new PathHashCollisions());
+            }
+            else if (hashPaths) {
+                return ProgramRelationFactory.withPathHash64();
+            }
+            else {
+                return ProgramRelationFactory.withHashCodeFactory();
+            }
         }
     }
 
@@ -296,7 +756,9 @@ public class Main implements Callable<Integer> {
 
         @Override
         protected Code2SeqPreprocessor getAnalyzer() {
-            return new Code2SeqPreprocessor(getCommonOptions(), maxPathLength, isPerScript);
+            return new Code2SeqPreprocessor(
+                getCommonOptions(), isPerScript, getPathGenerationOptions(), getVocabulary()
+            );
         }
     }
 
@@ -304,7 +766,7 @@ public class Main implements Callable<Integer> {
         name = "ggnn",
         description = "Transform Scratch projects into the Gated Graph Neural Network input format."
     )
-    static class GgnnSubcommand extends MLPreprocessorSubcommand {
+    static class GgnnSubcommand extends SingleFormatSubcommand {
 
         @CommandLine.Option(
             names = { "--label" },
@@ -336,7 +798,7 @@ public class Main implements Callable<Integer> {
         name = "tokenizer",
         description = "Transforms each Scratch project into a token sequence."
     )
-    static class TokenizerSubcommand extends MLPreprocessorSubcommand {
+    static class TokenizerSubcommand extends SingleFormatSubcommand {
 
         private static final String MASKED_BLOCK_ID = "--masked-block-id";
         private static final String MASKED_INPUT_KEY = "--masked-input-key";
@@ -436,4 +898,94 @@ public class Main implements Callable<Integer> {
             );
         }
     }
+
+    @CommandLine.Command(
+        name = "multi",
+        description = "Transform Scratch projects into multiple input formats at once. "
+            + "Each project is parsed only once and the output of each format is placed in its own sub-folder "
+            + "of the output folder. The format-specific options use their default values."
+    )
+    static class MultiSubcommand extends MLPreprocessorSubcommand {
+
+        private static final String ASTNN = "astnn";
+        private static final String CODE2SEQ = "code2seq";
+        private static final String CODE2VEC = "code2vec";
+        private static final String GGNN = "ggnn";
+        private static final String TOKENIZER = "tokenizer";
+
+        @CommandLine.Option(
+            names = { "--formats" },
+            split = ",",
+            description = "The output formats that should be generated. "
+                + "Valid values: astnn, code2seq, code2vec, ggnn, tokenizer. Default: all."
+        )
+        List<String> formats = List.of(ASTNN, CODE2SEQ, CODE2VEC, GGNN, TOKENIZER);
+
+        @CommandLine.Option(
+            names = { "--max-path-length" },
+            description = "The maximum length for connecting two AST leaves in the code2vec and code2seq formats. "
+                + "Zero means there is no max path length. "
+                + "Default: 8."
+        )
+        int maxPathLength = 8;
+
+        @Override
+        protected void validateParams() throws CommandLine.ParameterException {
+            if (outputPath == null) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "An output folder is required when generating multiple formats."
+                );
+            }
+
+            if (maxPathLength < 0) {
+                throw new CommandLine.ParameterException(spec.commandLine(), "The path length can’t be negative.");
+            }
+
+            if (formats.size() != formats.stream().distinct().count()) {
+                throw new CommandLine.ParameterException(
+                    spec.commandLine(), "Each output format has to be specified at most once."
+                );
+            }
+        }
+
+        @Override
+        protected List<MLFilePreprocessor<?>> getAnalyzers() throws CommandLine.ParameterException {
+            return formats.stream().<MLFilePreprocessor<?>>map(this::buildAnalyzer).toList();
+        }
+
+        private MLFilePreprocessor<?> buildAnalyzer(final String format) throws CommandLine.ParameterException {
+            final MLPreprocessorCommonOptions commonOptions = getCommonOptions(
+                MLOutputPath.directory(getOutputPath().getPath().resolve(format))
+            );
+
+            return switch (format) {
+                case ASTNN -> new AstnnPreprocessor(commonOptions);
+                case CODE2SEQ -> new Code2SeqPreprocessor(commonOptions, maxPathLength, false);
+                case CODE2VEC -> new Code2VecPreprocessor(commonOptions, maxPathLength, false);
+                case GGNN -> new GgnnGraphPreprocessor(commonOptions, GgnnOutputFormat.JSON_GRAPH, null);
+                case TOKENIZER -> new TokenizingPreprocessor(
+                    commonOptions, false, false, false, MaskingStrategy.none()
+                );
+                default -> throw new CommandLine.ParameterException(
+                    spec.commandLine(), "Unknown output format: " + format
+                );
+            };
+        }
+    }
+
+    static class CompressionCodecConverter implements CommandLine.ITypeConverter<CompressionCodec> {
+
+        @Override
+        public CompressionCodec convert(final String value) {
+            return CompressionCodec.valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    static class ContextDeduplicationConverter implements CommandLine.ITypeConverter<ContextDeduplication> {
+
+        @Override
+        public ContextDeduplication convert(final String value) {
+            return ContextDeduplication.valueOf(value.toUpperCase(Locale.ROOT));
+        }
+    }
 }
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+import de.uni_passau.fim.se2.litterbox.utils.Preconditions;
+
+/**
+ * Specifies if and how the generated outputs should be compressed.
+ *
+ * <p>
+ * The compression itself runs on separate threads, the writing thread only hands over the uncompressed data.
+ *
+ * @param codec The compression algorithm.
+ * @param level The compression level. Its valid range depends on the codec.
+ */
+public record OutputCompression(CompressionCodec codec, int level) {
+
+    public OutputCompression {
+        Preconditions.checkNotNull(codec);
+        Preconditions.checkArgument(
+            codec.isValidLevel(level), "Invalid compression level " + level + " for " + codec + "."
+        );
+    }
+
+    /**
+     * The outputs are written as plain text.
+     *
+     * @return No compression.
+     */
+    public static OutputCompression none() {
+        return new OutputCompression(CompressionCodec.NONE, 0);
+    }
+
+    public boolean enabled() {
+        return codec.enabled();
+    }
+
+    /**
+     * Appends the codec-specific suffix to the file name.
+     *
+     * @param fileName Some file name.
+     * @return The file name of the compressed file.
+     */
+    Path withFileSuffix(final Path fileName) {
+        return Path.of(fileName + codec.fileSuffix());
+    }
+
+    /**
+     * Wraps the stream so that all data written to the returned stream is compressed before it is written to the
+     * given one.
+     *
+     * <p>
+     * Closing the returned stream finishes the compression and closes the given stream.
+     *
+     * @param out The stream the compressed data should be written to. Should be buffered.
+     * @return A stream accepting the uncompressed data.
+     * @throws IOException Thrown if the compression cannot be set up.
+     */
+    OutputStream compress(final OutputStream out) throws IOException {
+        return switch (codec) {
+            case NONE -> out;
+            case GZIP -> new AsyncCompressionOutputStream(new LeveledGzipOutputStream(out, level));
+        };
+    }
+
+    /**
+     * The {@link GZIPOutputStream} does not allow choosing a compression level directly.
+     */
+    private static final class LeveledGzipOutputStream extends GZIPOutputStream {
+
+        LeveledGzipOutputStream(final OutputStream out, final int level) throws IOException {
+            super(out);
+            def.setLevel(level);
+        }
+    }
+}
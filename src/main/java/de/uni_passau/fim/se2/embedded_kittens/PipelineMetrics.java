@@ -0,0 +1,431 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import de.uni_passau.fim.se2.embedded_kittens.util.NormalisationCache;
+import de.uni_passau.fim.se2.embedded_kittens.util.StringUtil;
+
+/**
+ * Collects timing and throughput metrics of a preprocessing run.
+ *
+ * <p>
+ * Records per-stage latency histograms, the number of processed inputs and written output bytes, failures by reason,
+ * and the largest and slowest inputs. A summary is logged periodically and the metrics are written to the output
+ * directories as {@code metrics.json} and in the Prometheus text format as {@code metrics.prom}. When the
+ * {@link NormalisationCache} of {@link StringUtil} is enabled, its hit rate is reported as well.
+ *
+ * <p>
+ * All recording methods are thread-safe and lock-free, apart from the rarely updated lists of the largest and slowest
+ * inputs. When the metrics are {@link #disabled() disabled}, all methods return immediately without taking any
+ * timestamps.
+ */
+final class PipelineMetrics implements Closeable {
+
+    private static final Logger log = Logger.getLogger(PipelineMetrics.class.getName());
+
+    static final String JSON_FILE_NAME = "metrics.json";
+    static final String PROMETHEUS_FILE_NAME = "metrics.prom";
+
+    /**
+     * Used as format for the stages that are shared by all output formats.
+     */
+    static final String ALL_FORMATS = "all";
+
+    static final String PARSE_ERROR = "parse_error";
+    static final String IO_ERROR = "io_error";
+    static final String TIMEOUT = "timeout";
+    static final String LEAF_LIMIT = "leaf_limit";
+
+    private static final int TOP_INPUTS = 10;
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final boolean enabled;
+    private final List<Path> outputDirs;
+    private final long startNanos = System.nanoTime();
+
+    private final Map<String, LatencyHistogram> stageLatencies = new ConcurrentHashMap<>();
+    private final LongAdder inputs = new LongAdder();
+    private final LongAdder outputBytes = new LongAdder();
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private final PriorityQueue<InputMeasurement> largestInputs = new PriorityQueue<>(
+        Comparator.comparingLong(InputMeasurement::value)
+    );
+    private final PriorityQueue<InputMeasurement> slowestInputs = new PriorityQueue<>(
+        Comparator.comparingLong(InputMeasurement::value)
+    );
+
+    private volatile IntSupplier queueDepth = () -> 0;
+
+    private ScheduledExecutorService reporter;
+
+    private PipelineMetrics(final boolean enabled, final List<Path> outputDirs) {
+        this.enabled = enabled;
+        this.outputDirs = List.copyOf(outputDirs);
+    }
+
+    /**
+     * Metrics that record nothing.
+     *
+     * @return Disabled metrics.
+     */
+    static PipelineMetrics disabled() {
+        return new PipelineMetrics(false, List.of());
+    }
+
+    /**
+     * Starts collecting metrics.
+     *
+     * @param reportInterval The interval in which a summary is logged and the metrics files are updated. Zero disables
+     *                       the metrics.
+     * @param outputDirs     The directories the metrics files are written to.
+     * @return The metrics of a new run.
+     */
+    static PipelineMetrics start(final Duration reportInterval, final List<Path> outputDirs) {
+        if (reportInterval.isZero()) {
+            return disabled();
+        }
+
+        final PipelineMetrics metrics = new PipelineMetrics(true, outputDirs);
+        metrics.reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        metrics.reporter.scheduleAtFixedRate(
+            metrics::report, reportInterval.toMillis(), reportInterval.toMillis(), TimeUnit.MILLISECONDS
+        );
+        return metrics;
+    }
+
+    boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Takes the start timestamp of a measurement.
+     *
+     * @return The current time in nanoseconds. Zero, if the metrics are disabled.
+     */
+    long startTimer() {
+        if (!enabled) {
+            return 0;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Measures the time since a start timestamp.
+     *
+     * @param startNanos A timestamp from {@link #startTimer()}.
+     * @return The elapsed time in nanoseconds. Zero, if the metrics are disabled.
+     */
+    long elapsedSince(final long startNanos) {
+        if (!enabled) {
+            return 0;
+        }
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Records the time spent in a stage for a single input.
+     *
+     * @param format The output format the stage belongs to, or {@link #ALL_FORMATS}.
+     * @param stage  The pipeline stage.
+     * @param nanos  The time spent in the stage.
+     */
+    void recordStage(final String format, final Stage stage, final long nanos) {
+        if (enabled) {
+            stageLatencies.computeIfAbsent(stageKey(format, stage), key -> new LatencyHistogram()).record(nanos);
+        }
+    }
+
+    /**
+     * Records a parsed input.
+     *
+     * @param inputFile  The input file.
+     * @param inputBytes The size of the input file.
+     */
+    void recordInput(final Path inputFile, final long inputBytes) {
+        if (enabled) {
+            inputs.increment();
+            recordTop(largestInputs, new InputMeasurement(inputFile.toString(), inputBytes));
+        }
+    }
+
+    /**
+     * Records the total time an output format spent on an input.
+     *
+     * @param format    The output format.
+     * @param inputFile The input file.
+     * @param nanos     The processing time.
+     */
+    void recordProcessingTime(final String format, final Path inputFile, final long nanos) {
+        if (enabled) {
+            recordTop(slowestInputs, new InputMeasurement(format + ":" + inputFile, nanos));
+        }
+    }
+
+    void recordOutputBytes(final long bytes) {
+        if (enabled) {
+            outputBytes.add(bytes);
+        }
+    }
+
+    void recordFailure(final String reason) {
+        if (enabled) {
+            failures.computeIfAbsent(reason, key -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * Registers the source of the number of inputs that wait for a free worker.
+     *
+     * @param queueDepth Returns the current number of queued inputs.
+     */
+    void setQueueDepth(final IntSupplier queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    private static void recordTop(final PriorityQueue<InputMeasurement> top, final InputMeasurement measurement) {
+        synchronized (top) {
+            if (top.size() < TOP_INPUTS) {
+                top.add(measurement);
+            }
+            else if (top.peek().value() < measurement.value()) {
+                top.poll();
+                top.add(measurement);
+            }
+        }
+    }
+
+    private static String stageKey(final String format, final Stage stage) {
+        return format + "/" + stage.label();
+    }
+
+    /**
+     * Logs a final summary and writes the metrics files.
+     */
+    @Override
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+
+        reporter.shutdownNow();
+        report();
+    }
+
+    private void report() {
+        log.info(summary());
+
+        for (final Path outputDir : outputDirs) {
+            try {
+                writeAtomically(outputDir.resolve(JSON_FILE_NAME), toJson());
+                writeAtomically(outputDir.resolve(PROMETHEUS_FILE_NAME), toPrometheus());
+            }
+            catch (IOException e) {
+                log.warning("Could not write the metrics to '" + outputDir + "'!");
+            }
+        }
+    }
+
+    private static void writeAtomically(final Path file, final String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        final Path partialFile = file.resolveSibling("." + file.getFileName() + ".partial");
+        Files.writeString(partialFile, content, StandardCharsets.UTF_8);
+        MLFilePreprocessor.moveReplacing(partialFile, file);
+    }
+
+    private double elapsedSeconds() {
+        return (System.nanoTime() - startNanos) / NANOS_PER_SECOND;
+    }
+
+    String summary() {
+        final double seconds = elapsedSeconds();
+        final StringBuilder summary = new StringBuilder(
+            String.format(
+                Locale.ROOT, "Processed %d inputs in %.1fs (%.2f/s), wrote %d bytes (%.0f B/s), %d queued inputs",
+                inputs.sum(), seconds, inputs.sum() / seconds, outputBytes.sum(), outputBytes.sum() / seconds,
+                queueDepth.getAsInt()
+            )
+        );
+
+        failures.forEach((reason, count) -> summary.append(", ").append(count.sum()).append(" failed (")
+            .append(reason).append(')'));
+
+        final NormalisationCache cache = StringUtil.getNormalisationCache();
+        if (cache.enabled()) {
+            summary.append(String.format(
+                Locale.ROOT, ", normalisation cache hit rate %.1f%% (%d entries)", cache.hitRate() * 100,
+                cache.size()
+            ));
+        }
+
+        stageLatencies.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(
+            entry -> summary.append(String.format(
+                Locale.ROOT, "%n  %s: n=%d p50<=%.3fms p99<=%.3fms", entry.getKey(), entry.getValue().count(),
+                entry.getValue().quantileNanos(0.5) / 1e6, entry.getValue().quantileNanos(0.99) / 1e6
+            ))
+        );
+
+        return summary.toString();
+    }
+
+    String toJson() {
+        final ObjectNode root = OBJECT_MAPPER.createObjectNode();
+        root.put("elapsedSeconds", elapsedSeconds());
+        root.put("inputs", inputs.sum());
+        root.put("inputsPerSecond", inputs.sum() / elapsedSeconds());
+        root.put("outputBytes", outputBytes.sum());
+        root.put("outputBytesPerSecond", outputBytes.sum() / elapsedSeconds());
+        root.put("queuedInputs", queueDepth.getAsInt());
+
+        final ObjectNode failuresNode = root.putObject("failures");
+        failures.forEach((reason, count) -> failuresNode.put(reason, count.sum()));
+
+        final ObjectNode stagesNode = root.putObject("stages");
+        stageLatencies.forEach((stage, histogram) -> {
+            final ObjectNode stageNode = stagesNode.putObject(stage);
+            stageNode.put("count", histogram.count());
+            stageNode.put("sumSeconds", histogram.sumNanos() / NANOS_PER_SECOND);
+            stageNode.put("p50Seconds", histogram.quantileNanos(0.5) / NANOS_PER_SECOND);
+            stageNode.put("p99Seconds", histogram.quantileNanos(0.99) / NANOS_PER_SECOND);
+        });
+
+        final NormalisationCache cache = StringUtil.getNormalisationCache();
+        if (cache.enabled()) {
+            root.putObject("normalisationCache")
+                .put("capacity", cache.capacity())
+                .put("entries", cache.size())
+                .put("hits", cache.hits())
+                .put("misses", cache.misses())
+                .put("hitRate", cache.hitRate());
+        }
+
+        addTopInputs(root.putArray("largestInputs"), largestInputs, "bytes");
+        addTopInputs(root.putArray("slowestInputs"), slowestInputs, "nanos");
+
+        return root.toPrettyString();
+    }
+
+    private static void addTopInputs(
+        final ArrayNode node, final PriorityQueue<InputMeasurement> top, final String valueName
+    ) {
+        final List<InputMeasurement> measurements;
+        synchronized (top) {
+            measurements = new ArrayList<>(top);
+        }
+        measurements.sort(Comparator.comparingLong(InputMeasurement::value).reversed());
+
+        for (final InputMeasurement measurement : measurements) {
+            node.addObject().put("input", measurement.input()).put(valueName, measurement.value());
+        }
+    }
+
+    String toPrometheus() {
+        final StringBuilder out = new StringBuilder();
+        appendMetric(out, "embedded_kittens_inputs_total", "counter", inputs.sum());
+        appendMetric(out, "embedded_kittens_output_bytes_total", "counter", outputBytes.sum());
+        appendMetric(out, "embedded_kittens_queued_inputs", "gauge", queueDepth.getAsInt());
+
+        out.append("# TYPE embedded_kittens_failures_total counter\n");
+        failures.forEach((reason, count) -> out.append("embedded_kittens_failures_total{reason=\"").append(reason)
+            .append("\"} ").append(count.sum()).append('\n'));
+
+        final NormalisationCache cache = StringUtil.getNormalisationCache();
+        if (cache.enabled()) {
+            appendMetric(out, "embedded_kittens_normalisation_cache_hits_total", "counter", cache.hits());
+            appendMetric(out, "embedded_kittens_normalisation_cache_misses_total", "counter", cache.misses());
+            appendMetric(out, "embedded_kittens_normalisation_cache_entries", "gauge", cache.size());
+        }
+
+        out.append("# TYPE embedded_kittens_stage_seconds histogram\n");
+        stageLatencies.forEach((stage, histogram) -> appendHistogram(out, stage, histogram));
+
+        return out.toString();
+    }
+
+    private static void appendMetric(final StringBuilder out, final String name, final String type, final long value) {
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void appendHistogram(final StringBuilder out, final String stage, final LatencyHistogram histogram) {
+        final int separator = stage.indexOf('/');
+        final String labels = "format=\"" + stage.substring(0, separator) + "\",stage=\""
+            + stage.substring(separator + 1) + "\"";
+
+        for (int i = 0; i < histogram.bucketCount(); i++) {
+            out.append(String.format(
+                Locale.ROOT, "embedded_kittens_stage_seconds_bucket{%s,le=\"%.6f\"} %d%n", labels,
+                LatencyHistogram.upperBoundNanos(i) / NANOS_PER_SECOND, histogram.cumulativeCount(i)
+            ));
+        }
+        out.append("embedded_kittens_stage_seconds_bucket{").append(labels).append(",le=\"+Inf\"} ")
+            .append(histogram.count()).append('\n');
+        out.append("embedded_kittens_stage_seconds_sum{").append(labels).append("} ")
+            .append(histogram.sumNanos() / NANOS_PER_SECOND).append('\n');
+        out.append("embedded_kittens_stage_seconds_count{").append(labels).append("} ")
+            .append(histogram.count()).append('\n');
+    }
+
+    enum Stage {
+        PARSE,
+        TRANSFORM,
+        SERIALIZE,
+        WRITE;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private record InputMeasurement(String input, long value) {
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Enforces the {@link ProcessingLimits} while a single input is processed on the current thread.
+ *
+ * <p>
+ * Long-running parts of the preprocessors check the limits cooperatively via the static methods of this class. When
+ * no guard is active on the current thread, e.g., when a preprocessor is used directly instead of via a
+ * {@link MLFilePreprocessor}, no limits apply.
+ */
+public final class ProcessingGuard {
+
+    private static final ThreadLocal<ProcessingGuard> ACTIVE = new ThreadLocal<>();
+
+    private final ProcessingLimits limits;
+    private final long startNanos;
+    private final List<String> skippedParts = Collections.synchronizedList(new ArrayList<>());
+
+    private ProcessingGuard(final ProcessingLimits limits) {
+        this.limits = limits;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * Starts enforcing the limits on the current thread.
+     *
+     * @param limits The limits for the input that is processed next.
+     * @return The guard that has to be {@link #deactivate() deactivated} once the input has been processed.
+     */
+    static ProcessingGuard activate(final ProcessingLimits limits) {
+        final ProcessingGuard guard = new ProcessingGuard(limits);
+        ACTIVE.set(guard);
+        return guard;
+    }
+
+    void deactivate() {
+        ACTIVE.remove();
+    }
+
+    /**
+     * Makes the limits of the current thread apply to a task that is run on another thread.
+     *
+     * <p>
+     * The guard that is active when this method is called is activated on the thread that runs the returned task
+     * for the duration of the task. Parts skipped by the task are therefore reported for the current input.
+     *
+     * @param task Some part of the processing of the current input.
+     * @param <T>  The result type of the task.
+     * @return The task, enforcing the limits of the current input.
+     */
+    public static <T> Supplier<T> propagate(final Supplier<T> task) {
+        final ProcessingGuard guard = ACTIVE.get();
+        return () -> {
+            final ProcessingGuard previous = ACTIVE.get();
+            ACTIVE.set(guard);
+            try {
+                return task.get();
+            }
+            finally {
+                ACTIVE.set(previous);
+            }
+        };
+    }
+
+    /**
+     * The parts of the input that were skipped since they exceeded some limit.
+     *
+     * @return Descriptions of the skipped parts.
+     */
+    List<String> skippedParts() {
+        return skippedParts;
+    }
+
+    /**
+     * Aborts the processing of the current input if its time budget has been used up.
+     *
+     * @throws ProcessingTimeoutException Thrown if the time budget of the current input has been exceeded.
+     */
+    public static void checkDeadline() throws ProcessingTimeoutException {
+        final ProcessingGuard guard = ACTIVE.get();
+        if (guard == null || guard.limits.timeout().isZero()) {
+            return;
+        }
+
+        final long elapsedNanos = System.nanoTime() - guard.startNanos;
+        if (elapsedNanos > guard.limits.timeout().toNanos()) {
+            throw new ProcessingTimeoutException(
+                "Exceeded the time budget of " + guard.limits.timeout().toSeconds() + "s."
+            );
+        }
+    }
+
+    /**
+     * Checks if a part of the current input is too large to be processed.
+     *
+     * <p>
+     * Parts that exceed the limit are recorded as skipped.
+     *
+     * @param partName  A description of the part, e.g., the name of a sprite.
+     * @param leafCount The number of AST leaves in the part.
+     * @return True, if the part should be skipped.
+     */
+    public static boolean exceedsLeafLimit(final String partName, final int leafCount) {
+        final ProcessingGuard guard = ACTIVE.get();
+        if (guard == null || guard.limits.maxLeaves() == 0 || leafCount <= guard.limits.maxLeaves()) {
+            return false;
+        }
+
+        guard.skippedParts.add(
+            "Skipped '" + partName + "' with " + leafCount + " leaves (limit: " + guard.limits.maxLeaves() + ")."
+        );
+        return true;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * An append-only journal that records which inputs have been processed into an output directory.
+ *
+ * <p>
+ * Each line of the journal consists of the {@link Status}, the key of the input, and the input path relative to the
+ * input base directory, separated by tabs. Later lines override earlier ones for the same input. Every line is flushed
+ * immediately, so that the journal stays usable if the process is killed. A last line without line break is
+ * incomplete. It is ignored and removed when the journal is opened again.
+ */
+final class ProcessingJournal implements Closeable {
+
+    private static final Logger log = Logger.getLogger(ProcessingJournal.class.getName());
+
+    /**
+     * The file name of the journal inside the output directory.
+     */
+    static final String JOURNAL_FILE_NAME = ".embedded-kittens-journal";
+
+    private static final String SEPARATOR = "\t";
+
+    private final Map<String, String> completedInputs;
+    private final BufferedWriter writer;
+
+    private ProcessingJournal(final Map<String, String> completedInputs, final BufferedWriter writer) {
+        this.completedInputs = completedInputs;
+        this.writer = writer;
+    }
+
+    /**
+     * Opens the journal in the output directory.
+     *
+     * <p>
+     * Creates a new journal if none exists yet. Otherwise, new entries are appended to the existing one.
+     *
+     * @param outputDir The output directory.
+     * @return The opened journal.
+     * @throws IOException Thrown if the journal cannot be read or opened for writing.
+     */
+    static ProcessingJournal open(final Path outputDir) throws IOException {
+        Files.createDirectories(outputDir);
+        final Path journalFile = outputDir.resolve(JOURNAL_FILE_NAME);
+
+        final Map<String, String> completedInputs = new ConcurrentHashMap<>();
+        if (Files.exists(journalFile)) {
+            final byte[] content = Files.readAllBytes(journalFile);
+            final int completeLength = completeLength(content);
+            readEntries(
+                new String(content, 0, completeLength, StandardCharsets.UTF_8).lines().toList(), completedInputs
+            );
+            if (completeLength < content.length) {
+                // new entries must not be appended to the incomplete line
+                try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.WRITE)) {
+                    channel.truncate(completeLength);
+                }
+            }
+            log.info("Resuming with " + completedInputs.size() + " completed inputs from " + journalFile);
+        }
+
+        final BufferedWriter writer = Files.newBufferedWriter(
+            journalFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND
+        );
+        return new ProcessingJournal(completedInputs, writer);
+    }
+
+    /**
+     * The length of the journal up to and including the last line break.
+     *
+     * @param content The content of the journal.
+     * @return The number of bytes of the complete lines.
+     */
+    private static int completeLength(final byte[] content) {
+        for (int i = content.length - 1; i >= 0; i--) {
+            if (content[i] == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static void readEntries(final List<String> lines, final Map<String, String> completedInputs) {
+        for (final String line : lines) {
+            final String[] parts = line.split(SEPARATOR, 3);
+            if (parts.length != 3) {
+                continue;
+            }
+
+            if (Status.DONE.name().equals(parts[0])) {
+                completedInputs.put(parts[2], parts[1]);
+            }
+            else {
+                completedInputs.remove(parts[2]);
+            }
+        }
+    }
+
+    /**
+     * Checks if the input has already been processed successfully.
+     *
+     * @param inputFile The input path relative to the input base directory.
+     * @param key       Identifies the content of the input. A changed key means that the input has to be processed
+     *                  again.
+     * @return True, if the journal contains a successful run for the input with the same key.
+     */
+    boolean isCompleted(final Path inputFile, final String key) {
+        return key.equals(completedInputs.get(inputFile.toString()));
+    }
+
+    /**
+     * Appends an entry to the journal.
+     *
+     * @param inputFile The input path relative to the input base directory.
+     * @param key       Identifies the content of the input.
+     * @param status    The processing status of the input.
+     * @throws IOException Thrown if the entry cannot be written.
+     */
+    synchronized void record(final Path inputFile, final String key, final Status status) throws IOException {
+        writer.write(status.name() + SEPARATOR + key + SEPARATOR + inputFile);
+        writer.newLine();
+        writer.flush();
+
+        if (Status.DONE.equals(status)) {
+            completedInputs.put(inputFile.toString(), key);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    enum Status {
+        /**
+         * The processing of the input has started, but not yet finished.
+         */
+        STARTED,
+        /**
+         * The output for the input has been written completely.
+         */
+        DONE,
+        /**
+         * The input could not be processed.
+         */
+        FAILED
+    }
+}
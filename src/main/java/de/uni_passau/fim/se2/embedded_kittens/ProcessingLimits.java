@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.time.Duration;
+
+import de.uni_passau.fim.se2.litterbox.utils.Preconditions;
+
+/**
+ * Protects a batch run against pathological inputs that would take too long or use too much memory.
+ *
+ * @param timeout   The wall-clock time budget for processing a single input. Zero means there is no time limit.
+ * @param maxLeaves The maximum number of AST leaves of a single sprite, script, or program for which AST paths are
+ *                  generated. Zero means there is no limit.
+ */
+public record ProcessingLimits(Duration timeout, int maxLeaves) {
+
+    public ProcessingLimits {
+        Preconditions.checkNotNull(timeout);
+        Preconditions.checkArgument(!timeout.isNegative(), "The timeout cannot be negative.");
+        Preconditions.checkArgument(maxLeaves >= 0, "The leaf limit cannot be negative.");
+    }
+
+    /**
+     * No limits: every input is processed completely, regardless of how long it takes.
+     *
+     * @return Limits that never abort the processing.
+     */
+    public static ProcessingLimits none() {
+        return new ProcessingLimits(Duration.ZERO, 0);
+    }
+}
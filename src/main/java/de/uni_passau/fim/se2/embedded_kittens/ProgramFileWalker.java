@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.FilenameUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.uni_passau.fim.se2.litterbox.ast.ParsingException;
+import de.uni_passau.fim.se2.litterbox.ast.model.Program;
+import de.uni_passau.fim.se2.litterbox.ast.parser.Scratch3Parser;
+
+/**
+ * Reads the Scratch programs from an input file or directory.
+ *
+ * <p>
+ * Each input file is parsed exactly once, the parsed program is then handed to a {@link ProgramConsumer}.
+ */
+final class ProgramFileWalker {
+
+    private static final Logger log = Logger.getLogger(ProgramFileWalker.class.getName());
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String SB3_EXTENSION = "sb3";
+
+    private static final String SB3_PROJECT_ENTRY = "project.json";
+
+    private final MLFileProcessingOptions processingOptions;
+    private final PipelineMetrics metrics;
+
+    ProgramFileWalker(final MLFileProcessingOptions processingOptions) {
+        this(processingOptions, PipelineMetrics.disabled());
+    }
+
+    /**
+     * Creates a new walker.
+     *
+     * @param processingOptions Determines how the inputs are read.
+     * @param metrics           Records the parsing times and input sizes.
+     */
+    ProgramFileWalker(final MLFileProcessingOptions processingOptions, final PipelineMetrics metrics) {
+        this.processingOptions = processingOptions;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Parses either a single file, or all files in the input directory recursively.
+     *
+     * @param input    A file or directory.
+     * @param consumer Receives the parsed programs. Called concurrently from multiple threads when processing a
+     *                 directory.
+     */
+    void walk(final Path input, final ProgramConsumer consumer) {
+        final File inputFile = input.toFile();
+        if (!inputFile.exists()) {
+            log.warning("Input file '" + input + "' does not exist!");
+            return;
+        }
+
+        if (inputFile.isFile()) {
+            processFile(new Scratch3Parser(), input.getParent(), input, consumer);
+        }
+        else if (inputFile.isDirectory()) {
+            processDirectory(input, consumer);
+        }
+    }
+
+    /**
+     * Processes all files in the directory recursively.
+     *
+     * <p>
+     * The directory walk lazily feeds a bounded queue that is consumed by a fixed number of worker threads. Each worker
+     * reuses its own parser for all files it processes.
+     *
+     * @param path     Some directory.
+     * @param consumer Receives the parsed programs.
+     */
+    private void processDirectory(final Path path, final ProgramConsumer consumer) {
+        final BoundedWorkerPool<Scratch3Parser> workers = new BoundedWorkerPool<>(
+            processingOptions.threads(), Scratch3Parser::new
+        );
+        metrics.setQueueDepth(workers::queueDepth);
+
+        try (var files = Files.walk(path)) {
+            workers.processAll(
+                files.filter(Files::isRegularFile),
+                (parser, file) -> processFile(parser, path, file, consumer)
+            );
+        }
+        catch (IOException | UncheckedIOException e) {
+            log.warning("Failed to walk over all files in directory '" + path + "'!");
+            e.printStackTrace();
+        }
+        catch (InterruptedException e) {
+            log.warning("Interrupted while processing directory '" + path + "'!");
+            Thread.currentThread().interrupt();
+        }
+        catch (IllegalStateException e) {
+            // the remaining files are skipped, but the outputs of the run are still closed by the caller
+            log.warning("Stopped processing directory '" + path + "' after a worker failed!");
+            e.printStackTrace();
+        }
+    }
+
+    private void processFile(
+        final Scratch3Parser parser, final Path inputBaseDir, final Path programPath, final ProgramConsumer consumer
+    ) {
+        final InputFile inputFile = new InputFile(inputBaseDir, programPath);
+        if (!consumer.wants(inputFile)) {
+            log.info("Skipping already processed file '" + programPath + "'.");
+            return;
+        }
+
+        final long startNanos = metrics.startTimer();
+        final Optional<Program> program = readProgram(parser, programPath);
+        metrics.recordStage(
+            PipelineMetrics.ALL_FORMATS, PipelineMetrics.Stage.PARSE, metrics.elapsedSince(startNanos)
+        );
+        recordInput(programPath, program.isPresent());
+
+        consumer.accept(inputFile, program);
+    }
+
+    private void recordInput(final Path programPath, final boolean parsed) {
+        if (!metrics.enabled()) {
+            return;
+        }
+
+        if (!parsed) {
+            metrics.recordFailure(PipelineMetrics.PARSE_ERROR);
+        }
+
+        try {
+            metrics.recordInput(programPath, Files.size(programPath));
+        }
+        catch (IOException e) {
+            metrics.recordInput(programPath, 0);
+        }
+    }
+
+    private Optional<Program> readProgram(final Scratch3Parser parser, final Path programPath) {
+        try {
+            if (SB3_EXTENSION.equalsIgnoreCase(FilenameUtils.getExtension(programPath.toString()))) {
+                return Optional.of(readSb3Program(parser, programPath));
+            }
+            else {
+                return Optional.of(parser.parseFile(programPath.toFile()));
+            }
+        }
+        catch (Exception e) {
+            log.warning("Could not parse file '" + programPath + "' as Scratch project!");
+            e.printStackTrace();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Parses the program from a Scratch 3 archive.
+     *
+     * <p>
+     * Only the {@code project.json} entry is inflated and streamed directly into the JSON parser. The costume and
+     * sound assets of the archive are never read and no temporary files are created.
+     *
+     * @param parser      The parser to use.
+     * @param programPath Some {@code .sb3} file.
+     * @return The parsed program.
+     * @throws IOException      Thrown if the archive cannot be read or contains no {@code project.json}.
+     * @throws ParsingException Thrown if the project cannot be parsed into a program.
+     */
+    private Program readSb3Program(final Scratch3Parser parser, final Path programPath)
+        throws IOException, ParsingException {
+        try (ZipFile archive = new ZipFile(programPath.toFile())) {
+            final ZipEntry projectEntry = archive.getEntry(SB3_PROJECT_ENTRY);
+            if (projectEntry == null) {
+                throw new IOException("Archive '" + programPath + "' contains no " + SB3_PROJECT_ENTRY + "!");
+            }
+
+            final JsonNode project;
+            try (InputStream projectJson = archive.getInputStream(projectEntry)) {
+                project = OBJECT_MAPPER.readTree(projectJson);
+            }
+
+            return parser.parseJsonNode(FilenameUtils.getBaseName(programPath.toString()), project);
+        }
+    }
+
+    @FunctionalInterface
+    interface ProgramConsumer {
+
+        /**
+         * Decides if an input file should be parsed and passed to {@link #accept(InputFile, Optional)} at all.
+         *
+         * @param inputFile Some input file.
+         * @return True, if the input file should be processed.
+         */
+        default boolean wants(final InputFile inputFile) {
+            return true;
+        }
+
+        /**
+         * Handles a single input file.
+         *
+         * @param inputFile The input file.
+         * @param program   The parsed program. Empty, if the file could not be parsed.
+         */
+        void accept(InputFile inputFile, Optional<Program> program);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import de.uni_passau.fim.se2.litterbox.utils.Preconditions;
+
+/**
+ * Limits the size of the shard files when the outputs for all inputs are aggregated into a few large files.
+ *
+ * <p>
+ * A shard is closed as soon as one of the limits has been reached, the next output then starts a new shard. The
+ * output for a single input is never split across shards, therefore a shard can exceed the limits by the size of the
+ * last output written to it.
+ *
+ * @param maxBytes The maximum number of bytes per shard. Zero means there is no byte limit.
+ * @param maxLines The maximum number of lines per shard. Zero means there is no line limit.
+ */
+public record ShardLimits(long maxBytes, long maxLines) {
+
+    public ShardLimits {
+        Preconditions.checkArgument(maxBytes >= 0, "The shard size limit cannot be negative.");
+        Preconditions.checkArgument(maxLines >= 0, "The shard line limit cannot be negative.");
+    }
+
+    /**
+     * No sharding: one output file is written per input.
+     *
+     * @return Limits that disable the sharding.
+     */
+    public static ShardLimits disabled() {
+        return new ShardLimits(0, 0);
+    }
+
+    /**
+     * Checks if outputs should be aggregated into shards at all.
+     *
+     * @return True, if at least one limit has been set.
+     */
+    public boolean enabled() {
+        return maxBytes > 0 || maxLines > 0;
+    }
+
+    /**
+     * Checks if a shard of the given size has reached one of the limits.
+     *
+     * @param bytes The number of bytes in the shard.
+     * @param lines The number of lines in the shard.
+     * @return True, if no further outputs should be appended to the shard.
+     */
+    boolean isReached(final long bytes, final long lines) {
+        return maxBytes > 0 && bytes >= maxBytes || maxLines > 0 && lines >= maxLines;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.logging.Logger;
+
+import com.google.common.io.CountingOutputStream;
+
+/**
+ * Aggregates the outputs for many inputs into a few large shard files.
+ *
+ * <p>
+ * Each thread appends to its own shard, so writing requires no locking. Every shard is accompanied by an index file
+ * with the suffix {@code .index}. For each input it contains one line with the byte offset and byte length of the
+ * output in the shard, followed by the input path relative to the input base directory, separated by tabs. For
+ * compressed shards, the offsets refer to the decompressed content.
+ *
+ * <p>
+ * Each instance is meant to be used for a single run only: shards still in use by some thread are only closed by
+ * {@link #close()}.
+ */
+final class ShardedOutputWriter implements Closeable {
+
+    private static final Logger log = Logger.getLogger(ShardedOutputWriter.class.getName());
+
+    static final String INDEX_SUFFIX = ".index";
+
+    private final Path outputDir;
+    private final IntFunction<Path> shardFileName;
+    private final ShardLimits limits;
+    private final OutputCompression compression;
+
+    private final AtomicInteger nextShardIndex = new AtomicInteger();
+    private final Set<Shard> openShards = ConcurrentHashMap.newKeySet();
+    private final ThreadLocal<Shard> currentShard = new ThreadLocal<>();
+
+    /**
+     * Creates a new writer.
+     *
+     * @param outputDir     The directory the shards are written to.
+     * @param shardFileName Determines the file name of a shard from its number.
+     * @param limits        The limits after which a new shard is started.
+     * @param compression   The compression applied to each shard.
+     */
+    ShardedOutputWriter(
+        final Path outputDir,
+        final IntFunction<Path> shardFileName,
+        final ShardLimits limits,
+        final OutputCompression compression
+    ) {
+        this.outputDir = outputDir;
+        this.shardFileName = shardFileName;
+        this.limits = limits;
+        this.compression = compression;
+    }
+
+    /**
+     * Appends the output for a single input to the current shard of the calling thread.
+     *
+     * <p>
+     * The output lines are written to a buffer for the input first, as an aborted input must not leave a partial
+     * output in the shard.
+     *
+     * @param inputFile The path of the input file relative to the input base directory.
+     * @param lines     Writes the output lines.
+     * @return The shard file and the number of uncompressed bytes that were written. Empty, if there were no output
+     *         lines.
+     * @throws IOException Thrown if the output lines or the shard cannot be written.
+     */
+    Optional<WrittenOutput> write(final Path inputFile, final LineOutput lines) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        final long lineCount = lines.writeTo(buffer);
+        if (lineCount == 0) {
+            return Optional.empty();
+        }
+
+        Shard shard = currentShard.get();
+        if (shard == null) {
+            shard = openShard();
+            currentShard.set(shard);
+        }
+
+        final long bytes = shard.append(inputFile, buffer, lineCount);
+
+        if (limits.isReached(shard.bytes(), shard.lines)) {
+            currentShard.remove();
+            openShards.remove(shard);
+            shard.close();
+        }
+
+        return Optional.of(new WrittenOutput(shard.file, bytes));
+    }
+
+    private Shard openShard() throws IOException {
+        final Path file = outputDir.resolve(shardFileName.apply(nextShardIndex.getAndIncrement()));
+        Files.createDirectories(outputDir);
+
+        final Shard shard = new Shard(file, compression);
+        openShards.add(shard);
+        return shard;
+    }
+
+    /**
+     * Closes all shards that are still open.
+     *
+     * @throws IOException Thrown if one of the shards cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (final Shard shard : openShards) {
+            try {
+                shard.close();
+            }
+            catch (IOException e) {
+                log.warning("Could not close shard '" + shard.file + "'!");
+                failure = e;
+            }
+        }
+        openShards.clear();
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static final class Shard implements Closeable {
+
+        private final Path file;
+        private final CountingOutputStream out;
+        private final BufferedWriter index;
+
+        private long lines;
+
+        Shard(final Path file, final OutputCompression compression) throws IOException {
+            this.file = file;
+            this.out = new CountingOutputStream(
+                compression.compress(new BufferedOutputStream(Files.newOutputStream(file)))
+            );
+            this.index = Files.newBufferedWriter(
+                file.resolveSibling(file.getFileName() + INDEX_SUFFIX), StandardCharsets.UTF_8
+            );
+        }
+
+        long append(final Path inputFile, final ByteArrayOutputStream output, final long lineCount)
+            throws IOException {
+            final long offset = out.getCount();
+
+            output.writeTo(out);
+            lines += lineCount;
+
+            final long length = out.getCount() - offset;
+            index.write(offset + "\t" + length + "\t" + inputFile);
+            index.newLine();
+            return length;
+        }
+
+        long bytes() {
+            return out.getCount();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (index; out) {
+                log.info("Closed shard " + file + " with " + lines + " lines.");
+            }
+        }
+    }
+
+    /**
+     * Writes the output lines of a single input.
+     */
+    @FunctionalInterface
+    interface LineOutput {
+
+        /**
+         * Writes the output lines encoded as UTF-8.
+         *
+         * @param out The output the lines are written to, each followed by the line separator.
+         * @return The number of written lines.
+         * @throws IOException Thrown if the output cannot be written.
+         */
+        long writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * The output of a single input in a shard.
+     *
+     * @param shard The shard file.
+     * @param bytes The number of uncompressed bytes of the output.
+     */
+    record WrittenOutput(Path shard, long bytes) {
+    }
+}
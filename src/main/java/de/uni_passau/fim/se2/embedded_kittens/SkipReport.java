@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+
+/**
+ * Lists the inputs that were skipped completely or in parts since they exceeded the {@link ProcessingLimits}.
+ *
+ * <p>
+ * The report is a file in the output directory that contains one line per skipped input or part of an input. Each
+ * line consists of the input path relative to the input base directory and the reason, separated by a tab. The file
+ * is only created once the first entry is recorded.
+ */
+final class SkipReport implements Closeable {
+
+    private static final Logger log = Logger.getLogger(SkipReport.class.getName());
+
+    static final String REPORT_FILE_NAME = "skipped.tsv";
+
+    private final Path reportFile;
+
+    private BufferedWriter writer;
+
+    /**
+     * Creates a new report.
+     *
+     * @param outputDir The directory the report should be written to.
+     */
+    SkipReport(final Path outputDir) {
+        this.reportFile = outputDir.resolve(REPORT_FILE_NAME);
+    }
+
+    /**
+     * Records a skipped input.
+     *
+     * @param inputFile The path of the input file relative to the input base directory.
+     * @param reason    Why the input was skipped.
+     */
+    synchronized void record(final Path inputFile, final String reason) {
+        log.warning("Processing " + inputFile + " was limited: " + reason);
+
+        try {
+            if (writer == null) {
+                Files.createDirectories(reportFile.getParent());
+                writer = Files.newBufferedWriter(
+                    reportFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND
+                );
+            }
+
+            writer.write(inputFile + "\t" + reason);
+            writer.newLine();
+            writer.flush();
+        }
+        catch (IOException e) {
+            log.warning("Could not write to the skip report '" + reportFile + "'!");
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
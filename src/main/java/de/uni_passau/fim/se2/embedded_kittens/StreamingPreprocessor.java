@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import java.io.IOException;
+
+import de.uni_passau.fim.se2.litterbox.ast.model.Program;
+
+/**
+ * A preprocessor that writes its results while they are generated, instead of collecting all results of a program
+ * first.
+ */
+public interface StreamingPreprocessor {
+
+    /**
+     * Processes the program and writes each result as a text line in the format of
+     * {@link MLProgramPreprocessor#writeResult(Object, Appendable)}.
+     *
+     * @param program      The program to process.
+     * @param wholeProgram True, if the program should be processed as a whole instead of per sprite.
+     * @param out          The output the lines are appended to, each followed by the line separator.
+     * @return The number of written lines.
+     * @throws IOException Thrown if the output cannot be written.
+     */
+    int writeResults(Program program, boolean wholeProgram, Appendable out) throws IOException;
+}
@@ -44,4 +44,9 @@ public class AstnnPreprocessor extends MLFilePreprocessor<StatementTreeSequence>
     protected Path outputFileName(final Path inputFile) {
         return Path.of(FilenameUtils.removeExtension(inputFile.getFileName().toString()) + ".jsonl");
     }
+
+    @Override
+    protected String formatName() {
+        return "astnn";
+    }
 }
@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import de.uni_passau.fim.se2.litterbox.utils.Preconditions;
+
+/**
+ * The binary code2 output: a sequence of length-prefixed records, one per example.
+ *
+ * <p>
+ * All numbers are little-endian 32-bit integers. Each record consists of
+ * <ol>
+ *     <li>the number of bytes of the record that follow this length field,</li>
+ *     <li>the id of the label,</li>
+ *     <li>the number of contexts,</li>
+ *     <li>and for each context the ids of the source terminal, the path, and the target terminal.</li>
+ * </ol>
+ * The ids refer to the {@link Code2Vocabulary vocabulary} files of the same run. The files have no header, i.e.,
+ * concatenating multiple files results in a valid file again.
+ *
+ * <p>
+ * The records of an uncompressed file can be read via a memory-mapped file without copying or parsing them.
+ */
+public final class BinaryContextFile implements Iterable<BinaryContextFile.Record> {
+
+    /**
+     * The label id and the number of contexts.
+     */
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+
+    private static final int CONTEXT_BYTES = 3 * Integer.BYTES;
+
+    private final ByteBuffer records;
+
+    private BinaryContextFile(final ByteBuffer records) {
+        this.records = records.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Maps the file into memory.
+     *
+     * @param file An uncompressed binary code2 output file of at most 2 GiB.
+     * @return The records of the file.
+     * @throws IOException Thrown if the file cannot be mapped.
+     */
+    public static BinaryContextFile map(final Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Preconditions.checkArgument(
+                channel.size() <= Integer.MAX_VALUE, "Files larger than 2 GiB have to be split before mapping."
+            );
+
+            // the mapping stays valid after the channel has been closed
+            return new BinaryContextFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads the records from the buffer.
+     *
+     * @param records The content of a binary code2 output file between its position and limit.
+     * @return The records in the buffer.
+     */
+    public static BinaryContextFile wrap(final ByteBuffer records) {
+        return new BinaryContextFile(records.slice());
+    }
+
+    /**
+     * Creates a buffer for a new record and fills in its header.
+     *
+     * @param labelId      The id of the label.
+     * @param contextCount The number of contexts that have to be put into the buffer afterwards.
+     * @return A buffer with exactly enough remaining space for the ids of the contexts.
+     */
+    static ByteBuffer newRecord(final int labelId, final int contextCount) {
+        final int length = RECORD_HEADER_BYTES + contextCount * CONTEXT_BYTES;
+        final ByteBuffer record = ByteBuffer.allocate(Integer.BYTES + length).order(ByteOrder.LITTLE_ENDIAN);
+        return record.putInt(length).putInt(labelId).putInt(contextCount);
+    }
+
+    /**
+     * Iterates over the records in the order they were written.
+     *
+     * <p>
+     * The returned records are views on the mapped file.
+     *
+     * @return An iterator over all records.
+     */
+    @Override
+    public Iterator<Record> iterator() {
+        return new Iterator<>() {
+            private int offset = 0;
+
+            @Override
+            public boolean hasNext() {
+                return offset < records.limit();
+            }
+
+            @Override
+            public Record next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+
+                final int start = offset + Integer.BYTES;
+                if (start > records.limit()) {
+                    throw new IllegalStateException("Truncated record length at byte " + offset + ".");
+                }
+
+                final int length = records.getInt(offset);
+                if (length < RECORD_HEADER_BYTES || length > records.limit() - start) {
+                    throw new IllegalStateException("Invalid or truncated record at byte " + offset + ".");
+                }
+
+                final int contextCount = records.getInt(start + Integer.BYTES);
+                if (contextCount < 0 || length != RECORD_HEADER_BYTES + (long) contextCount * CONTEXT_BYTES) {
+                    throw new IllegalStateException(
+                        "The length of the record at byte " + offset + " does not match its " + contextCount
+                            + " contexts."
+                    );
+                }
+
+                offset = start + length;
+                return new Record(records, start);
+            }
+        };
+    }
+
+    /**
+     * A single example. Reads its values directly from the underlying buffer.
+     */
+    public static final class Record {
+
+        private final ByteBuffer records;
+        private final int start;
+
+        private Record(final ByteBuffer records, final int start) {
+            this.records = records;
+            this.start = start;
+        }
+
+        public int labelId() {
+            return records.getInt(start);
+        }
+
+        public int contextCount() {
+            return records.getInt(start + Integer.BYTES);
+        }
+
+        public int sourceId(final int context) {
+            return records.getInt(contextStart(context));
+        }
+
+        public int pathId(final int context) {
+            return records.getInt(contextStart(context) + Integer.BYTES);
+        }
+
+        public int targetId(final int context) {
+            return records.getInt(contextStart(context) + 2 * Integer.BYTES);
+        }
+
+        private int contextStart(final int context) {
+            Objects.checkIndex(context, contextCount());
+            return start + RECORD_HEADER_BYTES + context * CONTEXT_BYTES;
+        }
+    }
+}
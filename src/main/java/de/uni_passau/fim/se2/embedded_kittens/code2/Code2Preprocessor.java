@@ -32,6 +32,7 @@ import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.ProgramFeatur
 abstract class Code2Preprocessor extends MLFilePreprocessor<ProgramFeatures> {
 
     private final boolean isPerScript;
+    private final boolean isBinary;
 
     protected Code2Preprocessor(
         final Code2ProgramPreprocessor programAnalyzer, final MLPreprocessorCommonOptions commonOptions
@@ -39,18 +40,25 @@ abstract class Code2Preprocessor extends MLFilePreprocessor<ProgramFeatures> {
         super(programAnalyzer, commonOptions.outputPath());
 
         this.isPerScript = programAnalyzer.isPerScriptOutput();
+        this.isBinary = programAnalyzer.binaryOutput().isPresent();
     }
 
     @Override
     protected Path outputFileName(Path inputFile) {
         final String extension;
-        if (isPerScript) {
-            extension = ".script.txt";
+        if (isBinary) {
+            extension = ".bin";
         }
         else {
             extension = ".txt";
         }
 
-        return Path.of(FilenameUtils.removeExtension(inputFile.getFileName().toString()) + extension);
+        final String baseName = FilenameUtils.removeExtension(inputFile.getFileName().toString());
+        if (isPerScript) {
+            return Path.of(baseName + ".script" + extension);
+        }
+        else {
+            return Path.of(baseName + extension);
+        }
     }
 }
@@ -21,22 +21,71 @@
  */
 package de.uni_passau.fim.se2.embedded_kittens.code2;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+import de.uni_passau.fim.se2.embedded_kittens.BinaryResultWriter;
+import de.uni_passau.fim.se2.embedded_kittens.MLOutputPath;
 import de.uni_passau.fim.se2.embedded_kittens.MLPreprocessorCommonOptions;
 import de.uni_passau.fim.se2.embedded_kittens.MLProgramPreprocessor;
+import de.uni_passau.fim.se2.embedded_kittens.StreamingPreprocessor;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathGenerationOptions;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathGenerator;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathType;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.ProgramFeatures;
+import de.uni_passau.fim.se2.litterbox.ast.model.Program;
+
+public abstract class Code2ProgramPreprocessor extends MLProgramPreprocessor<ProgramFeatures>
+    implements StreamingPreprocessor {
 
-public abstract class Code2ProgramPreprocessor extends MLProgramPreprocessor<ProgramFeatures> {
+    private static final Logger log = Logger.getLogger(Code2ProgramPreprocessor.class.getName());
 
     protected final PathType pathType;
-    protected final int maxPathLength;
+    protected final PathGenerationOptions pathOptions;
+
+    private final Code2Vocabulary vocabulary;
+
+    /**
+     * Generates the paths of the parts of the programs concurrently during a run. Only used with multiple path
+     * threads.
+     */
+    private ExecutorService pathPool;
 
     protected Code2ProgramPreprocessor(
         final MLPreprocessorCommonOptions commonOptions, final int maxPathLength, final boolean isPerScript
+    ) {
+        this(
+            commonOptions, isPerScript,
+            new PathGenerationOptions(
+                maxPathLength, commonOptions.includeStage(), commonOptions.includeDefaultSprites()
+            ),
+            Code2Vocabulary.disabled()
+        );
+    }
+
+    /**
+     * Creates a new preprocessor.
+     *
+     * @param commonOptions The common preprocessor options.
+     * @param isPerScript   Generate the paths per script instead of per sprite.
+     * @param pathOptions   Defines which paths are generated and how many threads generate them.
+     * @param vocabulary    Counts the terminals, paths and labels of all programs, and optionally replaces them by
+     *                      their ids in the output.
+     */
+    protected Code2ProgramPreprocessor(
+        final MLPreprocessorCommonOptions commonOptions, final boolean isPerScript,
+        final PathGenerationOptions pathOptions, final Code2Vocabulary vocabulary
     ) {
         super(commonOptions);
 
-        this.maxPathLength = maxPathLength;
+        this.pathOptions = pathOptions;
+        this.vocabulary = vocabulary;
 
         if (isPerScript) {
             this.pathType = PathType.SCRIPT;
@@ -49,4 +98,127 @@ public abstract class Code2ProgramPreprocessor extends MLProgramPreprocessor<Pro
     boolean isPerScriptOutput() {
         return PathType.SCRIPT.equals(pathType);
     }
+
+    /**
+     * Runs the path generation for the parts of a program.
+     *
+     * @return The pool of the current run if the paths are generated by multiple threads, otherwise the calling
+     *         thread.
+     */
+    protected final Executor pathExecutor() {
+        if (pathPool == null) {
+            return Runnable::run;
+        }
+        return pathPool;
+    }
+
+    /**
+     * Creates the generator for the paths of a program.
+     *
+     * @param program  The program whose paths are generated.
+     * @param pathType Defines the parts of the program whose paths are output separately.
+     * @return The path generator for the program.
+     */
+    protected abstract PathGenerator createPathGenerator(Program program, PathType pathType);
+
+    @Override
+    public void startRun() {
+        if (pathOptions.pathThreads() > 1) {
+            // shared by all programs processed concurrently during the run
+            pathPool = new ForkJoinPool(pathOptions.pathThreads());
+        }
+    }
+
+    /**
+     * Counts the generated examples in the vocabulary.
+     *
+     * @param examples The examples of a program.
+     * @return The examples as results of the preprocessor.
+     */
+    protected final Stream<ProgramFeatures> toResults(final List<ProgramFeatures> examples) {
+        examples.forEach(vocabulary::count);
+        return examples.stream();
+    }
+
+    @Override
+    public String resultToString(final ProgramFeatures result) {
+        if (!vocabulary.hasIdOutput()) {
+            return result.toString();
+        }
+
+        final StringBuilder ids = new StringBuilder();
+        try {
+            vocabulary.writeIds(result, ids);
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Appending to a StringBuilder cannot fail.", e);
+        }
+        return ids.toString();
+    }
+
+    @Override
+    public void writeResult(final ProgramFeatures result, final Appendable out) throws IOException {
+        if (vocabulary.hasIdOutput()) {
+            vocabulary.writeIds(result, out);
+        }
+        else {
+            result.writeTo(out);
+        }
+    }
+
+    @Override
+    public int writeResults(final Program program, final boolean wholeProgram, final Appendable out)
+        throws IOException {
+        final PathGenerator pathGenerator;
+        if (wholeProgram) {
+            pathGenerator = createPathGenerator(program, PathType.PROGRAM);
+        }
+        else {
+            pathGenerator = createPathGenerator(program, pathType);
+        }
+
+        if (!vocabulary.isEnabled() && pathPool == null) {
+            return pathGenerator.writePaths(out);
+        }
+
+        // the vocabulary counts the complete examples, and parts that are generated concurrently have to be collected
+        // until it is their turn
+        final List<ProgramFeatures> examples = pathGenerator.generatePaths(pathExecutor());
+        int lines = 0;
+        for (final ProgramFeatures features : toResults(examples).toList()) {
+            writeResult(features, out);
+            out.append(System.lineSeparator());
+            lines++;
+        }
+        return lines;
+    }
+
+    @Override
+    public Optional<BinaryResultWriter<ProgramFeatures>> binaryOutput() {
+        if (vocabulary.hasBinaryOutput()) {
+            return Optional.of(vocabulary::writeBinary);
+        }
+        else {
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void finishRun(final MLOutputPath outputPath) throws IOException {
+        if (pathPool != null) {
+            pathPool.shutdown();
+            pathPool = null;
+        }
+
+        if (!vocabulary.isEnabled()) {
+            return;
+        }
+
+        if (outputPath.isConsoleOutput()) {
+            log.warning("The vocabulary can only be written to an output directory.");
+        }
+        else {
+            vocabulary.writeTo(outputPath.getPath());
+        }
+    }
 }
@@ -22,6 +22,7 @@
 package de.uni_passau.fim.se2.embedded_kittens.code2;
 
 import de.uni_passau.fim.se2.embedded_kittens.MLPreprocessorCommonOptions;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathGenerationOptions;
 
 public class Code2SeqPreprocessor extends Code2Preprocessor {
 
@@ -30,4 +31,25 @@ public class Code2SeqPreprocessor extends Code2Preprocessor {
     ) {
         super(new Code2SeqProgramPreprocessor(commonOptions, maxPathLength, isPerScript), commonOptions);
     }
+
+    /**
+     * Creates a new code2seq preprocessor.
+     *
+     * @param commonOptions The common preprocessor options.
+     * @param isPerScript   Generate the paths per script instead of per sprite.
+     * @param pathOptions   Defines which paths are generated and how many threads generate them.
+     * @param vocabulary    Counts the terminals, paths and labels of all programs, and optionally replaces them by
+     *                      their ids in the output.
+     */
+    public Code2SeqPreprocessor(
+        final MLPreprocessorCommonOptions commonOptions, final boolean isPerScript,
+        final PathGenerationOptions pathOptions, final Code2Vocabulary vocabulary
+    ) {
+        super(new Code2SeqProgramPreprocessor(commonOptions, isPerScript, pathOptions, vocabulary), commonOptions);
+    }
+
+    @Override
+    protected String formatName() {
+        return "code2seq";
+    }
 }
@@ -26,6 +26,7 @@ import java.util.stream.Stream;
 import de.uni_passau.fim.se2.embedded_kittens.MLPreprocessorCommonOptions;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.GeneratePathTask;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathFormatOptions;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathGenerationOptions;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathGenerator;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathGeneratorFactory;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathType;
@@ -35,10 +36,34 @@ import de.uni_passau.fim.se2.litterbox.ast.model.Program;
 
 public class Code2SeqProgramPreprocessor extends Code2ProgramPreprocessor {
 
+    private static final PathFormatOptions PATH_FORMAT = new PathFormatOptions("|", "|", "|", "", "", true, true);
+
     public Code2SeqProgramPreprocessor(
         final MLPreprocessorCommonOptions commonOptions, final int maxPathLength, final boolean isPerScript
     ) {
-        super(commonOptions, maxPathLength, isPerScript);
+        this(
+            commonOptions, isPerScript,
+            new PathGenerationOptions(
+                maxPathLength, commonOptions.includeStage(), commonOptions.includeDefaultSprites()
+            ),
+            Code2Vocabulary.disabled()
+        );
+    }
+
+    /**
+     * Creates a new code2seq preprocessor.
+     *
+     * @param commonOptions The common preprocessor options.
+     * @param isPerScript   Generate the paths per script instead of per sprite.
+     * @param pathOptions   Defines which paths are generated. The paths are always formatted as code2seq expects.
+     * @param vocabulary    Counts the terminals, paths and labels of all programs, and optionally replaces them by
+     *                      their ids in the output.
+     */
+    public Code2SeqProgramPreprocessor(
+        final MLPreprocessorCommonOptions commonOptions, final boolean isPerScript,
+        final PathGenerationOptions pathOptions, final Code2Vocabulary vocabulary
+    ) {
+        super(commonOptions, isPerScript, pathOptions.withPathFormatOptions(PATH_FORMAT), vocabulary);
     }
 
     @Override
@@ -51,20 +76,18 @@ public class Code2SeqProgramPreprocessor extends Code2ProgramPreprocessor {
         return process(program, PathType.PROGRAM);
     }
 
-    private Stream<ProgramFeatures> process(final Program program, final PathType pathType) {
+    @Override
+    protected PathGenerator createPathGenerator(final Program program, final PathType pathType) {
         final ProgramRelationFactory programRelationFactory = new ProgramRelationFactory();
-        final PathFormatOptions pathFormatOptions = new PathFormatOptions("|", "|", "|", "", "", true, true);
-        PathGenerator pathGenerator = PathGeneratorFactory.createPathGenerator(
-            pathType, maxPathLength, commonOptions.includeStage(), program, commonOptions.includeDefaultSprites(),
-            pathFormatOptions, programRelationFactory, commonOptions.actorNameNormalizer()
+        return PathGeneratorFactory.createPathGenerator(
+            pathType, program, pathOptions, programRelationFactory, commonOptions.actorNameNormalizer()
         );
-        final GeneratePathTask generatePathTask = new GeneratePathTask(pathGenerator);
-
-        return generatePathTask.createContext().stream();
     }
 
-    @Override
-    public String resultToString(ProgramFeatures result) {
-        return result.toString();
+    private Stream<ProgramFeatures> process(final Program program, final PathType pathType) {
+        PathGenerator pathGenerator = createPathGenerator(program, pathType);
+        final GeneratePathTask generatePathTask = new GeneratePathTask(pathGenerator, pathExecutor());
+
+        return toResults(generatePathTask.createContext());
     }
 }
@@ -22,6 +22,8 @@
 package de.uni_passau.fim.se2.embedded_kittens.code2;
 
 import de.uni_passau.fim.se2.embedded_kittens.MLPreprocessorCommonOptions;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathGenerationOptions;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelationFactory;
 
 public class Code2VecPreprocessor extends Code2Preprocessor {
 
@@ -30,4 +32,32 @@ public class Code2VecPreprocessor extends Code2Preprocessor {
     ) {
         super(new Code2VecProgramPreprocessor(commonOptions, maxPathLength, isPerScript), commonOptions);
     }
+
+    /**
+     * Creates a new code2vec preprocessor.
+     *
+     * @param commonOptions          The common preprocessor options.
+     * @param isPerScript            Generate the paths per script instead of per sprite.
+     * @param pathOptions            Defines which paths are generated and how many threads generate them.
+     * @param programRelationFactory Defines how the paths are hashed. Shared by all programs.
+     * @param vocabulary             Counts the terminals, paths and labels of all programs, and optionally replaces
+     *                               them by their ids in the output.
+     */
+    public Code2VecPreprocessor(
+        final MLPreprocessorCommonOptions commonOptions, final boolean isPerScript,
+        final PathGenerationOptions pathOptions, final ProgramRelationFactory programRelationFactory,
+        final Code2Vocabulary vocabulary
+    ) {
+        super(
+            new Code2VecProgramPreprocessor(
+                commonOptions, isPerScript, pathOptions, programRelationFactory, vocabulary
+            ),
+            commonOptions
+        );
+    }
+
+    @Override
+    protected String formatName() {
+        return "code2vec";
+    }
 }
@@ -21,23 +21,39 @@
  */
 package de.uni_passau.fim.se2.embedded_kittens.code2;
 
+import java.io.IOException;
 import java.util.stream.Stream;
 
+import de.uni_passau.fim.se2.embedded_kittens.MLOutputPath;
 import de.uni_passau.fim.se2.embedded_kittens.MLPreprocessorCommonOptions;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.GeneratePathTask;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathGenerationOptions;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathGenerator;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathGeneratorFactory;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.PathType;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.ProgramFeatures;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.PathHashCollisions;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelationFactory;
 import de.uni_passau.fim.se2.litterbox.ast.model.Program;
 
 public class Code2VecProgramPreprocessor extends Code2ProgramPreprocessor {
 
+    private final ProgramRelationFactory programRelationFactory;
+
     public Code2VecProgramPreprocessor(
         final MLPreprocessorCommonOptions commonOptions, final int maxPathLength, final boolean isPerScript
     ) {
         super(commonOptions, maxPathLength, isPerScript);
+        this.programRelationFactory = ProgramRelationFactory.withHashCodeFactory();
+    }
+
+    public Code2VecProgramPreprocessor(
+        final MLPreprocessorCommonOptions commonOptions, final boolean isPerScript,
+        final PathGenerationOptions pathOptions, final ProgramRelationFactory programRelationFactory,
+        final Code2Vocabulary vocabulary
+    ) {
+        super(commonOptions, isPerScript, pathOptions, vocabulary);
+        this.programRelationFactory = programRelationFactory;
     }
 
     @Override
@@ -50,18 +66,22 @@ public class Code2VecProgramPreprocessor extends Code2ProgramPreprocessor {
         return process(program, PathType.PROGRAM);
     }
 
-    private Stream<ProgramFeatures> process(final Program program, final PathType pathType) {
-        final ProgramRelationFactory programRelationFactory = ProgramRelationFactory.withHashCodeFactory();
-        final PathGenerator pathGenerator = PathGeneratorFactory.createPathGenerator(
-            pathType, maxPathLength, commonOptions.includeStage(), program, commonOptions.includeDefaultSprites(),
-            programRelationFactory, commonOptions.actorNameNormalizer()
-        );
-        GeneratePathTask generatePathTask = new GeneratePathTask(pathGenerator);
-        return generatePathTask.createContext().stream();
+    @Override
+    public void finishRun(final MLOutputPath outputPath) throws IOException {
+        programRelationFactory.collisions().ifPresent(PathHashCollisions::logTotals);
+        super.finishRun(outputPath);
     }
 
     @Override
-    public String resultToString(ProgramFeatures result) {
-        return result.toString();
+    protected PathGenerator createPathGenerator(final Program program, final PathType pathType) {
+        return PathGeneratorFactory.createPathGenerator(
+            pathType, program, pathOptions, programRelationFactory, commonOptions.actorNameNormalizer()
+        );
+    }
+
+    private Stream<ProgramFeatures> process(final Program program, final PathType pathType) {
+        final PathGenerator pathGenerator = createPathGenerator(program, pathType);
+        GeneratePathTask generatePathTask = new GeneratePathTask(pathGenerator, pathExecutor());
+        return toResults(generatePathTask.createContext());
     }
 }
@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.ProgramFeatures;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelation;
+import de.uni_passau.fim.se2.litterbox.utils.Preconditions;
+
+/**
+ * Counts the terminals, paths and labels of the code2vec examples generated during a run.
+ *
+ * <p>
+ * Each distinct word gets an integer id when it is counted for the first time. The ids start at one, zero is left
+ * free, e.g., for padding. When multiple programs are processed concurrently, the ids depend on the order in which the
+ * workers reach the words. The vocabulary files written at the end of the run define the ids of each run.
+ *
+ * <p>
+ * Counting is thread-safe. Words that have been seen before are counted without locking.
+ */
+public final class Code2Vocabulary {
+
+    public static final String TERMINALS_FILE_NAME = "terminals.vocab";
+    public static final String PATHS_FILE_NAME = "paths.vocab";
+    public static final String LABELS_FILE_NAME = "labels.vocab";
+
+    private final boolean enabled;
+    private final IdOutput idOutput;
+
+    private final WordCounts terminals = new WordCounts();
+    private final WordCounts paths = new WordCounts();
+    private final WordCounts labels = new WordCounts();
+
+    private Code2Vocabulary(final boolean enabled, final IdOutput idOutput) {
+        this.enabled = enabled;
+        this.idOutput = idOutput;
+    }
+
+    /**
+     * A vocabulary that counts nothing.
+     *
+     * @return A disabled vocabulary.
+     */
+    public static Code2Vocabulary disabled() {
+        return new Code2Vocabulary(false, IdOutput.NONE);
+    }
+
+    /**
+     * A vocabulary that counts the words, but does not change the output of the examples.
+     *
+     * @return A new vocabulary.
+     */
+    public static Code2Vocabulary counting() {
+        return new Code2Vocabulary(true, IdOutput.NONE);
+    }
+
+    /**
+     * A vocabulary that counts the words and replaces them by their ids in the output of the examples.
+     *
+     * @return A new vocabulary.
+     */
+    public static Code2Vocabulary withIdOutput() {
+        return new Code2Vocabulary(true, IdOutput.TEXT);
+    }
+
+    /**
+     * A vocabulary that counts the words and writes the examples as {@link BinaryContextFile binary records} of their
+     * ids.
+     *
+     * @return A new vocabulary.
+     */
+    public static Code2Vocabulary withBinaryOutput() {
+        return new Code2Vocabulary(true, IdOutput.BINARY);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Checks if the examples should be written as integer ids in the text format.
+     *
+     * @return True, if the examples are written via {@link #writeIds(ProgramFeatures, Appendable)}.
+     */
+    public boolean hasIdOutput() {
+        return idOutput == IdOutput.TEXT;
+    }
+
+    /**
+     * Checks if the examples should be written as binary records.
+     *
+     * @return True, if the examples are written via {@link #writeBinary(ProgramFeatures, OutputStream)}.
+     */
+    public boolean hasBinaryOutput() {
+        return idOutput == IdOutput.BINARY;
+    }
+
+    /**
+     * Counts the label and all terminals and paths of the example.
+     *
+     * <p>
+     * A context that stands for several {@link ProgramFeatures#getCount(int) counted duplicates} is counted once per
+     * occurrence, i.e., the vocabulary counts do not depend on the deduplication of the contexts.
+     *
+     * @param example A generated example.
+     */
+    public void count(final ProgramFeatures example) {
+        if (!enabled) {
+            return;
+        }
+
+        labels.count(example.getName(), 1);
+        final List<ProgramRelation> contexts = example.getFeatures();
+        for (int i = 0; i < contexts.size(); i++) {
+            final ProgramRelation context = contexts.get(i);
+            final int occurrences = example.getCount(i);
+            terminals.count(context.getSource(), occurrences);
+            paths.count(context.getPath(), occurrences);
+            terminals.count(context.getTarget(), occurrences);
+        }
+    }
+
+    /**
+     * Writes the example like {@link ProgramFeatures#writeTo(Appendable)}, but with the ids instead of the words.
+     *
+     * <p>
+     * The example must have been {@link #count(ProgramFeatures) counted} before.
+     *
+     * @param example A counted example.
+     * @param out     The output the example is appended to.
+     * @throws IOException Thrown if the output cannot be written.
+     */
+    public void writeIds(final ProgramFeatures example, final Appendable out) throws IOException {
+        Preconditions.checkState(enabled, "A disabled vocabulary has no ids.");
+
+        out.append(Integer.toString(labels.id(example.getName())));
+        final List<ProgramRelation> contexts = example.getFeatures();
+        for (int i = 0; i < contexts.size(); i++) {
+            final ProgramRelation context = contexts.get(i);
+            out.append(' ')
+                .append(Integer.toString(terminals.id(context.getSource())))
+                .append(',')
+                .append(Integer.toString(paths.id(context.getPath())))
+                .append(',')
+                .append(Integer.toString(terminals.id(context.getTarget())));
+            if (example.countsDuplicates()) {
+                out.append(',').append(Integer.toString(example.getCount(i)));
+            }
+        }
+    }
+
+    /**
+     * Writes the example as a single {@link BinaryContextFile binary record} of its ids.
+     *
+     * <p>
+     * The example must have been {@link #count(ProgramFeatures) counted} before.
+     *
+     * @param example A counted example.
+     * @param out     The output the record is written to.
+     * @throws IOException Thrown if the output cannot be written.
+     */
+    public void writeBinary(final ProgramFeatures example, final OutputStream out) throws IOException {
+        Preconditions.checkState(enabled, "A disabled vocabulary has no ids.");
+        Preconditions.checkArgument(
+            !example.countsDuplicates(), "The binary records can’t contain the counts of duplicate contexts."
+        );
+
+        final List<ProgramRelation> contexts = example.getFeatures();
+        final ByteBuffer record = BinaryContextFile.newRecord(labels.id(example.getName()), contexts.size());
+        for (final ProgramRelation context : contexts) {
+            record.putInt(terminals.id(context.getSource()))
+                .putInt(paths.id(context.getPath()))
+                .putInt(terminals.id(context.getTarget()));
+        }
+        out.write(record.array());
+    }
+
+    /**
+     * Writes the vocabulary files to the directory.
+     *
+     * <p>
+     * Each line of a file consists of the word, its id, and its count separated by spaces. The most frequent words
+     * come first.
+     *
+     * @param outputDir An existing directory.
+     * @throws IOException Thrown if one of the files cannot be written.
+     */
+    public void writeTo(final Path outputDir) throws IOException {
+        terminals.writeTo(outputDir.resolve(TERMINALS_FILE_NAME));
+        paths.writeTo(outputDir.resolve(PATHS_FILE_NAME));
+        labels.writeTo(outputDir.resolve(LABELS_FILE_NAME));
+    }
+
+    private static final class WordCounts {
+
+        private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+        private final AtomicInteger nextId = new AtomicInteger(1);
+
+        void count(final String word, final int occurrences) {
+            Entry entry = entries.get(word);
+            if (entry == null) {
+                entry = entries.computeIfAbsent(word, w -> new Entry(nextId.getAndIncrement(), new LongAdder()));
+            }
+            entry.count().add(occurrences);
+        }
+
+        int id(final String word) {
+            final Entry entry = entries.get(word);
+            if (entry == null) {
+                throw new IllegalArgumentException("The word '" + word + "' has not been counted.");
+            }
+            return entry.id();
+        }
+
+        void writeTo(final Path file) throws IOException {
+            final List<Map.Entry<String, Entry>> sorted = entries.entrySet().stream()
+                .sorted(
+                    Comparator.comparingLong((Map.Entry<String, Entry> e) -> e.getValue().count().sum()).reversed()
+                        .thenComparingInt(e -> e.getValue().id())
+                )
+                .toList();
+
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                for (final Map.Entry<String, Entry> entry : sorted) {
+                    writer.write(entry.getKey() + ' ' + entry.getValue().id() + ' ' + entry.getValue().count().sum());
+                    writer.newLine();
+                }
+            }
+        }
+    }
+
+    private record Entry(int id, LongAdder count) {
+    }
+
+    private enum IdOutput {
+        NONE,
+        TEXT,
+        BINARY
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
+
+/**
+ * Defines how contexts that occur multiple times within the same example are represented.
+ *
+ * <p>
+ * Two contexts are the same if they consist of the same source terminal, path, and target terminal. Copy-pasted
+ * scripts result in many such duplicates within a sprite.
+ */
+public enum ContextDeduplication {
+    /**
+     * Keeps every occurrence of a context.
+     */
+    NONE,
+
+    /**
+     * Keeps only the first occurrence of a context.
+     */
+    DROP,
+
+    /**
+     * Keeps only the first occurrence of a context and appends the number of its occurrences as fourth
+     * comma-separated part, e.g., {@code source,path,target,3}.
+     */
+    COUNT
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import com.google.common.hash.Hashing;
+
+import de.uni_passau.fim.se2.embedded_kittens.ProcessingGuard;
+
+/**
+ * Chooses the pairs of leaves whose path contexts are generated when {@link ContextSampling} is enabled.
+ *
+ * <p>
+ * A pair is encoded as a single {@code long} with the source leaf index in the upper and the target leaf index in the
+ * lower half. Sorting the encoded pairs therefore restores the order in which the {@link LeafPairEnumerator} returns
+ * them.
+ */
+final class ContextSampler {
+
+    /**
+     * The number of random leaf pairs that are drawn per context in the {@link ContextSampling.Mode#LEAF_PAIRS} mode
+     * before giving up.
+     */
+    private static final int ATTEMPTS_PER_CONTEXT = 8;
+
+    private static final int DEADLINE_CHECK_INTERVAL = 1024;
+
+    private static final long TARGET_MASK = 0xFFFF_FFFFL;
+
+    private ContextSampler() {
+        throw new IllegalCallerException("utility class");
+    }
+
+    /**
+     * Decides if a pair of leaves forms a path context that would be part of the output.
+     */
+    @FunctionalInterface
+    interface ContextFilter {
+        boolean isContext(int sourceLeaf, int targetLeaf);
+    }
+
+    /**
+     * Chooses at most the maximum number of contexts.
+     *
+     * @param sampling     The sampling options, must be enabled.
+     * @param inputName    The name of the program. Together with the feature label, it varies the random choice
+     *                     between examples independently of the order in which they are processed.
+     * @param featureLabel The label of the sprite, script, or program.
+     * @param leafPairs    The pairs of leaves that may form a context.
+     * @param leafCount    The number of leaves.
+     * @param filter       Identifies the pairs that form a context.
+     * @return The chosen pairs in ascending order.
+     */
+    static long[] sample(
+        final ContextSampling sampling, final String inputName, final String featureLabel,
+        final LeafPairEnumerator leafPairs, final int leafCount, final ContextFilter filter
+    ) {
+        final SplittableRandom random = new SplittableRandom(exampleSeed(sampling.seed(), inputName, featureLabel));
+
+        final long[] pairs;
+        if (sampling.mode() == ContextSampling.Mode.LEAF_PAIRS) {
+            pairs = sampleLeafPairs(sampling.maxContexts(), random, leafPairs, leafCount, filter);
+        }
+        else {
+            pairs = sampleContexts(sampling.maxContexts(), random, leafPairs, leafCount, filter);
+        }
+
+        Arrays.sort(pairs);
+        return pairs;
+    }
+
+    /**
+     * Derives the seed of a single example.
+     *
+     * <p>
+     * Sprites with the same name in different programs, e.g. ‘Stage’, get unrelated seeds, so that their samples are
+     * not correlated.
+     */
+    private static long exampleSeed(final long seed, final String inputName, final String featureLabel) {
+        return Hashing.murmur3_128().newHasher()
+            .putLong(seed)
+            .putInt(inputName.length())
+            .putUnencodedChars(inputName)
+            .putUnencodedChars(featureLabel)
+            .hash()
+            .asLong();
+    }
+
+    static int sourceLeaf(final long pair) {
+        return (int) (pair >>> Integer.SIZE);
+    }
+
+    static int targetLeaf(final long pair) {
+        return (int) (pair & TARGET_MASK);
+    }
+
+    private static long pair(final int sourceLeaf, final int targetLeaf) {
+        return ((long) sourceLeaf << Integer.SIZE) | targetLeaf;
+    }
+
+    /**
+     * Reservoir-samples the contexts in a single pass over all pairs of leaves.
+     */
+    private static long[] sampleContexts(
+        final int maxContexts, final SplittableRandom random, final LeafPairEnumerator leafPairs,
+        final int leafCount, final ContextFilter filter
+    ) {
+        final long[] reservoir = new long[maxContexts];
+        long contextCount = 0;
+
+        for (int source = 0; source < leafCount; source++) {
+            ProcessingGuard.checkDeadline();
+            for (final int target : leafPairs.targets(source)) {
+                if (!filter.isContext(source, target)) {
+                    continue;
+                }
+
+                contextCount++;
+                if (contextCount <= maxContexts) {
+                    reservoir[(int) contextCount - 1] = pair(source, target);
+                }
+                else {
+                    final long slot = random.nextLong(contextCount);
+                    if (slot < maxContexts) {
+                        reservoir[(int) slot] = pair(source, target);
+                    }
+                }
+            }
+        }
+
+        return Arrays.copyOf(reservoir, (int) Math.min(contextCount, maxContexts));
+    }
+
+    /**
+     * Draws distinct random pairs of leaves within the maximum path length until enough contexts have been found or
+     * the attempts are used up.
+     *
+     * <p>
+     * A single draw picks a slot among the {@link LeafPairEnumerator#targetBound(int) bounds of the number of
+     * targets} of all leaves. This chooses a source leaf with a probability proportional to its bound, and a slot
+     * below this bound. The draw is rejected if the slot is not taken by one of the actual targets of the source.
+     * Each pair of leaves within the maximum path length is therefore equally likely, while the leaves that are
+     * farther apart are never drawn.
+     *
+     * <p>
+     * The targets of a source are only looked up once per call, no matter how often the source is drawn. Duplicate
+     * draws are removed whenever the chosen contexts fill up, instead of tracking every draw in a set.
+     */
+    private static long[] sampleLeafPairs(
+        final int maxContexts, final SplittableRandom random, final LeafPairEnumerator leafPairs,
+        final int leafCount, final ContextFilter filter
+    ) {
+        final long[] cumulativeBounds = new long[leafCount + 1];
+        for (int source = 0; source < leafCount; source++) {
+            cumulativeBounds[source + 1] = cumulativeBounds[source] + leafPairs.targetBound(source);
+        }
+
+        final long attempts = (long) ATTEMPTS_PER_CONTEXT * maxContexts;
+        final long slotCount = cumulativeBounds[leafCount];
+        if (slotCount <= attempts) {
+            // enumerating the few pairs is cheaper than drawing them
+            return sampleContexts(maxContexts, random, leafPairs, leafCount, filter);
+        }
+
+        final int[][] targetsOf = new int[leafCount][];
+        final long[] contexts = new long[maxContexts];
+        int contextCount = 0;
+
+        for (long attempt = 0; attempt < attempts && contextCount < maxContexts; attempt++) {
+            if (attempt % DEADLINE_CHECK_INTERVAL == 0) {
+                ProcessingGuard.checkDeadline();
+            }
+
+            final long slot = random.nextLong(slotCount);
+            final int source = sourceOfSlot(cumulativeBounds, slot);
+            final long targetSlot = slot - cumulativeBounds[source];
+            if (targetsOf[source] == null) {
+                targetsOf[source] = leafPairs.targets(source);
+            }
+            if (targetSlot >= targetsOf[source].length) {
+                continue;
+            }
+
+            final int target = targetsOf[source][(int) targetSlot];
+            if (filter.isContext(source, target)) {
+                contexts[contextCount++] = pair(source, target);
+                if (contextCount == maxContexts) {
+                    contextCount = sortDistinct(contexts, contextCount);
+                }
+            }
+        }
+
+        return Arrays.copyOf(contexts, sortDistinct(contexts, contextCount));
+    }
+
+    /**
+     * Sorts the pairs and moves each distinct pair once to the start of the array.
+     *
+     * @param pairs Some encoded pairs of leaves.
+     * @param count The number of pairs at the start of the array.
+     * @return The number of distinct pairs.
+     */
+    private static int sortDistinct(final long[] pairs, final int count) {
+        Arrays.sort(pairs, 0, count);
+
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || pairs[distinct - 1] != pairs[i]) {
+                pairs[distinct++] = pairs[i];
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Finds the source leaf whose range of slots contains the slot.
+     *
+     * @param cumulativeBounds The first slot of each leaf, followed by the total number of slots.
+     * @param slot             A slot below the total number of slots.
+     * @return The index of the leaf.
+     */
+    private static int sourceOfSlot(final long[] cumulativeBounds, final long slot) {
+        int low = 0;
+        int high = cumulativeBounds.length - 2;
+        while (low < high) {
+            final int middle = (low + high + 1) >>> 1;
+            if (cumulativeBounds[middle] <= slot) {
+                low = middle;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
+
+import de.uni_passau.fim.se2.litterbox.utils.Preconditions;
+
+/**
+ * Limits the number of path contexts that are generated per sprite, script, or program.
+ *
+ * <p>
+ * The contexts are chosen uniformly at random. The sampled contexts are generated in the same order as without
+ * sampling. For the same seed, the same contexts are chosen in every run.
+ *
+ * @param maxContexts The maximum number of contexts per sprite, script, or program. Zero means no limit.
+ * @param mode        How the contexts are sampled.
+ * @param seed        Seeds the random choice of the contexts.
+ */
+public record ContextSampling(int maxContexts, Mode mode, long seed) {
+
+    public ContextSampling {
+        Preconditions.checkArgument(maxContexts >= 0, "The maximum number of contexts must not be negative.");
+        Preconditions.checkNotNull(mode);
+    }
+
+    /**
+     * Generates all contexts.
+     *
+     * @return Sampling options that do not limit the number of contexts.
+     */
+    public static ContextSampling none() {
+        return new ContextSampling(0, Mode.CONTEXTS, 0);
+    }
+
+    public boolean enabled() {
+        return maxContexts > 0;
+    }
+
+    public enum Mode {
+        /**
+         * Reservoir-samples the contexts while enumerating all pairs of leaves.
+         *
+         * <p>
+         * Exactly the maximum number of contexts is generated if there are at least that many. The paths of the
+         * contexts that are not chosen are never built, but all pairs of leaves are still looked at.
+         */
+        CONTEXTS,
+
+        /**
+         * Draws random pairs of leaves within the maximum path length and keeps the ones that form a context.
+         *
+         * <p>
+         * The time and memory are bounded by the number of leaves and the maximum number of contexts instead of the
+         * number of pairs of leaves. When many of the drawn pairs do not form a context, e.g. because their leaves
+         * have no token, fewer contexts than the maximum may be found.
+         */
+        LEAF_PAIRS
+    }
+}
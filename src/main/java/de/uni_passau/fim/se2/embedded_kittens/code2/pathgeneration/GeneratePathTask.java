@@ -23,16 +23,29 @@ package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
 public class GeneratePathTask {
 
     private final PathGenerator pathGenerator;
+    private final Executor executor;
 
     public GeneratePathTask(PathGenerator pathGenerator) {
+        this(pathGenerator, Runnable::run);
+    }
+
+    /**
+     * Creates a new task that generates the paths of the individual sprites or scripts concurrently.
+     *
+     * @param pathGenerator Generates the paths.
+     * @param executor      Runs the path generation for the individual sprites or scripts.
+     */
+    public GeneratePathTask(PathGenerator pathGenerator, Executor executor) {
         this.pathGenerator = Objects.requireNonNull(pathGenerator);
+        this.executor = Objects.requireNonNull(executor);
     }
 
     public List<ProgramFeatures> createContext() {
-        return pathGenerator.generatePaths();
+        return pathGenerator.generatePaths(executor);
     }
 }
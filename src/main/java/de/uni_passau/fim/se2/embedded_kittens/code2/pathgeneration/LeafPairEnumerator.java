@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the pairs of leaves that are connected by a path of at most the maximum path length.
+ *
+ * <p>
+ * A path from a source leaf goes up to the lowest common ancestor and then down to the target leaf. Its length is the
+ * number of up-steps plus the number of down-steps. Instead of checking every pair of leaves, each leaf is registered
+ * only with its ancestors within the maximum path length. The targets of a source are then found by walking up from
+ * the source at most the maximum path length and looking at the leaves registered below each ancestor, that are not
+ * already below the previous ancestor. Therefore, the cost is proportional to the number of pairs close enough to
+ * each other instead of the square of the number of leaves.
+ */
+final class LeafPairEnumerator {
+
+    private static final int INITIAL_TARGETS_CAPACITY = 16;
+
+    private final LeafTreeIndex tree;
+    private final int maxPathLength;
+
+    /**
+     * The leaves below each node within the maximum path length, indexed by node id. Stored as pairs of leaf index
+     * and distance from the node, ordered by leaf index.
+     */
+    private final int[][] leavesBelow;
+
+    /**
+     * The leaves exactly the maximum path length below each node, indexed by node id, in ascending order.
+     */
+    private final int[][] leavesAtMaxDistance;
+
+    /**
+     * Indexes the leaves.
+     *
+     * @param tree          The indexed leaves, in the order they should be paired.
+     * @param maxPathLength The maximum length of a path between two leaves. Zero or negative for no limit.
+     */
+    LeafPairEnumerator(final LeafTreeIndex tree, final int maxPathLength) {
+        this.tree = tree;
+        this.maxPathLength = maxPathLength;
+        this.leavesBelow = new int[tree.nodeCount()][];
+        this.leavesAtMaxDistance = new int[tree.nodeCount()][];
+
+        if (maxPathLength > 0) {
+            indexLeaves();
+        }
+    }
+
+    private void indexLeaves() {
+        final int[] registrations = new int[tree.nodeCount()];
+        final int[] maxDistanceRegistrations = new int[tree.nodeCount()];
+        for (int leaf = 0; leaf < tree.leafCount(); leaf++) {
+            final int[] ancestors = tree.ancestors(leaf);
+            for (int up = 0; up < reachableAncestors(ancestors); up++) {
+                registrations[ancestors[up]]++;
+            }
+            if (ancestors.length > maxPathLength) {
+                maxDistanceRegistrations[ancestors[maxPathLength]]++;
+            }
+        }
+
+        for (int node = 0; node < leavesBelow.length; node++) {
+            leavesBelow[node] = new int[2 * registrations[node]];
+            leavesAtMaxDistance[node] = new int[maxDistanceRegistrations[node]];
+            registrations[node] = 0;
+            maxDistanceRegistrations[node] = 0;
+        }
+
+        for (int leaf = 0; leaf < tree.leafCount(); leaf++) {
+            final int[] ancestors = tree.ancestors(leaf);
+            for (int up = 0; up < reachableAncestors(ancestors); up++) {
+                final int node = ancestors[up];
+                leavesBelow[node][registrations[node]++] = leaf;
+                leavesBelow[node][registrations[node]++] = up;
+            }
+            if (ancestors.length > maxPathLength) {
+                final int node = ancestors[maxPathLength];
+                leavesAtMaxDistance[node][maxDistanceRegistrations[node]++] = leaf;
+            }
+        }
+    }
+
+    private int reachableAncestors(final int[] ancestors) {
+        return Math.min(ancestors.length, maxPathLength + 1);
+    }
+
+    /**
+     * Finds all leaves after the source leaf that can be reached within the maximum path length.
+     *
+     * @param source The index of the source leaf.
+     * @return The indices of the target leaves in ascending order.
+     */
+    int[] targets(final int source) {
+        if (maxPathLength <= 0) {
+            return IntStream.range(source + 1, tree.leafCount()).toArray();
+        }
+
+        int[] targets = new int[INITIAL_TARGETS_CAPACITY];
+        int targetCount = 0;
+
+        final int[] sourceAncestors = tree.ancestors(source);
+        for (int up = 0; up < reachableAncestors(sourceAncestors); up++) {
+            final int[] candidates = leavesBelow[sourceAncestors[up]];
+            for (int k = 0; k < candidates.length; k += 2) {
+                final int target = candidates[k];
+                final int down = candidates[k + 1];
+
+                if (target > source && up + down <= maxPathLength && isLowestCommonAncestor(source, up, target, down)) {
+                    if (targetCount == targets.length) {
+                        targets = Arrays.copyOf(targets, targetCount * 2);
+                    }
+                    targets[targetCount++] = target;
+                }
+            }
+        }
+
+        final int[] result = Arrays.copyOf(targets, targetCount);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * Bounds the number of {@link #targets(int) targets} of the source leaf without finding them.
+     *
+     * <p>
+     * Every target is either at most the maximum path length below the highest ancestor of the source that is within
+     * reach, or exactly the maximum path length below one of the lower ancestors. The bound counts each leaf after the
+     * source at most once, but includes the leaves that are too far away from their lowest common ancestor with the
+     * source.
+     *
+     * @param source The index of the source leaf.
+     * @return At least the number of targets, at most the number of leaves after the source.
+     */
+    long targetBound(final int source) {
+        if (maxPathLength <= 0) {
+            return tree.leafCount() - 1L - source;
+        }
+
+        final int[] sourceAncestors = tree.ancestors(source);
+        final int highest = reachableAncestors(sourceAncestors) - 1;
+        long bound = countLeavesAfter(leavesBelow[sourceAncestors[highest]], 2, source);
+        for (int up = 0; up < highest; up++) {
+            bound += countLeavesAfter(leavesAtMaxDistance[sourceAncestors[up]], 1, source);
+        }
+        return bound;
+    }
+
+    /**
+     * Counts the leaves with a higher index than the source in a sorted index of leaves.
+     *
+     * @param leaves The leaf indices in ascending order, at every {@code stride}-th position.
+     * @param stride The distance of consecutive leaf indices in the array.
+     * @param source The index of the source leaf.
+     * @return The number of leaves after the source.
+     */
+    private static int countLeavesAfter(final int[] leaves, final int stride, final int source) {
+        int low = 0;
+        int high = leaves.length / stride;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (leaves[middle * stride] <= source) {
+                low = middle + 1;
+            }
+            else {
+                high = middle;
+            }
+        }
+        return leaves.length / stride - low;
+    }
+
+    /**
+     * Checks that the common ancestor of the two leaves is not just any but their lowest common ancestor.
+     *
+     * @param source The index of the source leaf.
+     * @param up     The distance of the common ancestor from the source leaf.
+     * @param target The index of the target leaf.
+     * @param down   The distance of the common ancestor from the target leaf.
+     * @return True, if the paths from both leaves reach the common ancestor via different children.
+     */
+    private boolean isLowestCommonAncestor(final int source, final int up, final int target, final int down) {
+        return up == 0 || down == 0 || tree.ancestors(source)[up - 1] != tree.ancestors(target)[down - 1];
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
+
+import java.util.Arrays;
+
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor.ExtractedLeaves;
+import de.uni_passau.fim.se2.litterbox.ast.model.ASTNode;
+
+/**
+ * The part of the AST that connects a group of leaves, indexed for generating the paths between the leaves.
+ *
+ * <p>
+ * Every node on the way from a leaf up to the root gets an integer id. For each leaf, the ids of its ancestors are
+ * stored in an array. The lowest common ancestor of two leaves is looked up in constant time in a sparse table of
+ * minimum depths over an Euler tour of the tree. Therefore, the paths between all pairs of leaves can be assembled
+ * without allocating ancestor lists for each pair.
+ */
+final class LeafTreeIndex {
+
+    static final int NO_NODE = -1;
+
+    private final ASTNode[] nodes;
+
+    /**
+     * The depth of each node, the root has depth zero.
+     */
+    private final int[] depths;
+
+    /**
+     * {@code ancestors[i][k]} is the id of the ancestor of leaf {@code i} that is {@code k} steps above it, i.e.,
+     * {@code ancestors[i][0]} is the leaf itself and the last element the root.
+     */
+    private final int[][] ancestors;
+
+    /**
+     * The index of the first occurrence of each node in the Euler tour.
+     */
+    private int[] firstVisit;
+
+    /**
+     * {@code shallowestNodes[k][i]} is the node with the lowest depth in the Euler tour from index {@code i} to
+     * {@code i + 2^k - 1}.
+     */
+    private int[][] shallowestNodes;
+
+    /**
+     * Indexes the tree spanned by the leaves from the ancestors recorded while extracting them.
+     *
+     * @param nodes     The nodes of the tree.
+     * @param ancestors The node ids from each leaf up to the root.
+     */
+    LeafTreeIndex(final ASTNode[] nodes, final int[][] ancestors) {
+        this.nodes = nodes;
+        this.ancestors = ancestors;
+
+        final int[] parents = new int[nodes.length];
+        Arrays.fill(parents, NO_NODE);
+        final boolean[] known = new boolean[nodes.length];
+        for (final int[] chain : ancestors) {
+            for (int k = 0; k < chain.length && !known[chain[k]]; k++) {
+                known[chain[k]] = true;
+                if (k + 1 < chain.length) {
+                    parents[chain[k]] = chain[k + 1];
+                }
+            }
+        }
+
+        this.depths = new int[nodes.length + 1];
+        buildEulerTour(parents);
+    }
+
+    /**
+     * Indexes the tree spanned by the extracted leaves.
+     *
+     * <p>
+     * Reuses the ancestors recorded during the extraction instead of following the parent links of the leaves up to
+     * the root.
+     *
+     * @param leaves The leaves of a sprite, script, or program.
+     * @return The index of the tree spanned by the leaves.
+     */
+    static LeafTreeIndex of(final ExtractedLeaves leaves) {
+        final ASTNode[] nodes = new ASTNode[leaves.nodeCount()];
+        for (int node = 0; node < nodes.length; node++) {
+            nodes[node] = leaves.node(node);
+        }
+
+        final int[][] ancestors = new int[leaves.size()][];
+        for (int leaf = 0; leaf < ancestors.length; leaf++) {
+            ancestors[leaf] = leaves.ancestors(leaf);
+        }
+
+        return new LeafTreeIndex(nodes, ancestors);
+    }
+
+    /**
+     * Walks through the tree and records the depth and the Euler tour of all nodes.
+     *
+     * <p>
+     * All roots are children of an additional virtual root, so that the leaves of separate trees have the virtual
+     * root as lowest common ancestor.
+     *
+     * @param parents The parent of each node, {@link #NO_NODE} for the roots.
+     */
+    private void buildEulerTour(final int[] parents) {
+        final int virtualRoot = parents.length;
+        final int[][] children = childrenOf(parents, virtualRoot);
+
+        final int[] eulerTour = new int[2 * virtualRoot + 1];
+        int tourLength = 0;
+        firstVisit = new int[virtualRoot + 1];
+
+        final int[] stack = new int[virtualRoot + 1];
+        final int[] nextChild = new int[virtualRoot + 1];
+        int stackSize = 0;
+
+        depths[virtualRoot] = -1;
+        stack[stackSize++] = virtualRoot;
+        firstVisit[virtualRoot] = tourLength;
+        eulerTour[tourLength++] = virtualRoot;
+
+        while (stackSize > 0) {
+            final int node = stack[stackSize - 1];
+            if (nextChild[node] < children[node].length) {
+                final int child = children[node][nextChild[node]++];
+                depths[child] = depths[node] + 1;
+                firstVisit[child] = tourLength;
+                eulerTour[tourLength++] = child;
+                stack[stackSize++] = child;
+            }
+            else {
+                stackSize--;
+                if (stackSize > 0) {
+                    eulerTour[tourLength++] = stack[stackSize - 1];
+                }
+            }
+        }
+
+        buildSparseTable(eulerTour, tourLength);
+    }
+
+    private static int[][] childrenOf(final int[] parents, final int virtualRoot) {
+        final int[] childCounts = new int[virtualRoot + 1];
+        final int[] effectiveParents = new int[parents.length];
+        for (int node = 0; node < parents.length; node++) {
+            if (parents[node] == NO_NODE) {
+                effectiveParents[node] = virtualRoot;
+            }
+            else {
+                effectiveParents[node] = parents[node];
+            }
+            childCounts[effectiveParents[node]]++;
+        }
+
+        final int[][] children = new int[virtualRoot + 1][];
+        for (int node = 0; node <= virtualRoot; node++) {
+            children[node] = new int[childCounts[node]];
+            childCounts[node] = 0;
+        }
+        for (int node = 0; node < parents.length; node++) {
+            final int parent = effectiveParents[node];
+            children[parent][childCounts[parent]++] = node;
+        }
+
+        return children;
+    }
+
+    private void buildSparseTable(final int[] eulerTour, final int tourLength) {
+        final int levels = log2(tourLength) + 1;
+        shallowestNodes = new int[levels][];
+        shallowestNodes[0] = Arrays.copyOf(eulerTour, tourLength);
+
+        for (int level = 1; level < levels; level++) {
+            final int[] previous = shallowestNodes[level - 1];
+            final int half = 1 << (level - 1);
+            final int[] current = new int[tourLength - (1 << level) + 1];
+            for (int i = 0; i < current.length; i++) {
+                current[i] = shallower(previous[i], previous[i + half]);
+            }
+            shallowestNodes[level] = current;
+        }
+    }
+
+    private int shallower(final int first, final int second) {
+        if (depths[first] <= depths[second]) {
+            return first;
+        }
+        return second;
+    }
+
+    private static int log2(final int value) {
+        return 31 - Integer.numberOfLeadingZeros(value);
+    }
+
+    int leafCount() {
+        return ancestors.length;
+    }
+
+    int nodeCount() {
+        return nodes.length;
+    }
+
+    ASTNode node(final int nodeId) {
+        return nodes[nodeId];
+    }
+
+    int depth(final int nodeId) {
+        return depths[nodeId];
+    }
+
+    /**
+     * The ancestors of a leaf.
+     *
+     * @param leaf The index of a leaf.
+     * @return The node ids from the leaf itself up to the root. Must not be modified.
+     */
+    int[] ancestors(final int leaf) {
+        return ancestors[leaf];
+    }
+
+    /**
+     * Looks up the lowest common ancestor of two leaves in constant time.
+     *
+     * @param sourceLeaf The index of a leaf.
+     * @param targetLeaf The index of another leaf.
+     * @return The node id of the lowest common ancestor. {@link #NO_NODE}, if the leaves belong to separate trees.
+     */
+    int lowestCommonAncestor(final int sourceLeaf, final int targetLeaf) {
+        final int sourceVisit = firstVisit[ancestors[sourceLeaf][0]];
+        final int targetVisit = firstVisit[ancestors[targetLeaf][0]];
+        final int from = Math.min(sourceVisit, targetVisit);
+        final int to = Math.max(sourceVisit, targetVisit);
+
+        final int level = log2(to - from + 1);
+        final int ancestor = shallower(
+            shallowestNodes[level][from], shallowestNodes[level][to - (1 << level) + 1]
+        );
+
+        if (ancestor == nodes.length) {
+            return NO_NODE;
+        }
+        return ancestor;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
+
+import de.uni_passau.fim.se2.litterbox.ast.model.ASTNode;
+
+/**
+ * Looks up the numeric ids of the node types that represent nodes in paths with
+ * {@link PathFormatOptions#useNodeId()}.
+ *
+ * <p>
+ * The id only depends on the class of a node. The {@link PathRepresentationVisitor} therefore has to be dispatched
+ * only for the first node of each class, afterwards the id is read from a per-class cache. Safe to use from multiple
+ * threads.
+ */
+final class NodeTypeIds {
+
+    private static final int UNKNOWN = -1;
+
+    private static final ClassValue<CachedId> IDS = new ClassValue<>() {
+        @Override
+        protected CachedId computeValue(final Class<?> type) {
+            return new CachedId();
+        }
+    };
+
+    private NodeTypeIds() {
+        throw new IllegalCallerException("utility class");
+    }
+
+    /**
+     * Finds the id of the type of the node.
+     *
+     * @param node Some AST node.
+     * @return The id of the node type.
+     * @throws UnsupportedOperationException Thrown if there is no id for the node type.
+     */
+    static int of(final ASTNode node) {
+        final CachedId cachedId = IDS.get(node.getClass());
+
+        int id = cachedId.id;
+        if (id == UNKNOWN) {
+            // racing threads compute the same id for the same class
+            final PathRepresentationVisitor visitor = new PathRepresentationVisitor();
+            node.accept(visitor);
+            id = visitor.getRepresentation();
+            cachedId.id = id;
+        }
+
+        return id;
+    }
+
+    private static final class CachedId {
+        private volatile int id = UNKNOWN;
+    }
+}
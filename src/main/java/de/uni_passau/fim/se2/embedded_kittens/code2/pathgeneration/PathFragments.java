@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.PathHash;
+import de.uni_passau.fim.se2.litterbox.ast.model.ASTNode;
+
+/**
+ * Renders the paths between the leaves of a {@link LeafTreeIndex} from cached fragments.
+ *
+ * <p>
+ * Each node is rendered only once. For each leaf, the way up to its ancestors and the way down from its ancestors are
+ * each rendered once into a single string. The up- and down-parts of a path are then prefixes and suffixes of these
+ * strings, respectively, that are appended without copying them into new strings first.
+ * <p>
+ * Alternatively, a path can be {@link #hashPath(int, int, int, int) hashed} without rendering it. The hash of each
+ * rendered node is computed once and the node hashes along the path are then combined using the round and avalanche
+ * functions of xxHash64.
+ */
+final class PathFragments {
+
+    private static final HashFunction NODE_VALUE_HASH = Hashing.murmur3_128(0x5bd1e995);
+    private static final HashFunction NODE_CHECK_HASH = Hashing.murmur3_128(0x1b873593);
+
+    private static final long VALUE_SEED = 0x2545F4914F6CDD1DL;
+    private static final long CHECK_SEED = 0x9E3779B97F4A7C15L;
+
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final int ROUND_ROTATION = 31;
+
+    private final LeafTreeIndex tree;
+    private final Function<ASTNode, String> nodeRenderer;
+    private final String upSymbol;
+    private final String downSymbol;
+    private final int maxPathLength;
+
+    private final String[] renderedNodes;
+
+    /**
+     * The rendered way up from each leaf: {@code leaf^parent^grandparent^...}.
+     */
+    private final String[] upChains;
+
+    /**
+     * {@code upChainEnds[i][k]} is the end of the part of the up-chain of leaf {@code i} that covers the first
+     * {@code k} nodes.
+     */
+    private final int[][] upChainEnds;
+
+    /**
+     * The rendered way down to each leaf: {@code ..._grandparent_parent_leaf}.
+     */
+    private final String[] downChains;
+
+    /**
+     * {@code downChainStarts[i][k]} is the start of the part of the down-chain of leaf {@code i} that covers the
+     * {@code k} nodes right above the leaf.
+     */
+    private final int[][] downChainStarts;
+
+    /**
+     * The value and check hashes of each rendered node, interleaved. Only allocated when the first path is hashed.
+     */
+    private long[] nodeHashes;
+    private boolean[] hashedNodes;
+
+    /**
+     * Prepares the rendering of the paths between the leaves.
+     *
+     * @param tree              The indexed leaves.
+     * @param nodeRenderer      Renders a single node of a path.
+     * @param pathFormatOptions Defines the symbols between the nodes.
+     * @param maxPathLength     The maximum path length. Zero or negative for no limit.
+     */
+    PathFragments(
+        final LeafTreeIndex tree,
+        final Function<ASTNode, String> nodeRenderer,
+        final PathFormatOptions pathFormatOptions,
+        final int maxPathLength
+    ) {
+        this.tree = tree;
+        this.nodeRenderer = nodeRenderer;
+        this.upSymbol = pathFormatOptions.upSymbol();
+        this.downSymbol = pathFormatOptions.downSymbol();
+        this.maxPathLength = maxPathLength;
+
+        this.renderedNodes = new String[tree.nodeCount()];
+        this.upChains = new String[tree.leafCount()];
+        this.upChainEnds = new int[tree.leafCount()][];
+        this.downChains = new String[tree.leafCount()];
+        this.downChainStarts = new int[tree.leafCount()][];
+    }
+
+    /**
+     * Appends the path from the source leaf via their common ancestor to the target leaf.
+     *
+     * @param pathBuilder The path is appended to this builder.
+     * @param source      The index of the source leaf.
+     * @param up          The number of steps from the source leaf up to the common ancestor.
+     * @param target      The index of the target leaf.
+     * @param down        The number of steps from the common ancestor down to the target leaf.
+     */
+    void appendPath(
+        final StringBuilder pathBuilder, final int source, final int up, final int target, final int down
+    ) {
+        if (upChains[source] == null) {
+            renderChains(source);
+        }
+        if (upChains[target] == null) {
+            renderChains(target);
+        }
+
+        pathBuilder.append(upChains[source], 0, upChainEnds[source][up]);
+        pathBuilder.append(renderedNode(tree.ancestors(source)[up]));
+        pathBuilder.append(downChains[target], downChainStarts[target][down], downChains[target].length());
+    }
+
+    /**
+     * Hashes the path from the source leaf via their common ancestor to the target leaf.
+     *
+     * <p>
+     * The hash depends only on the rendered nodes along the path and the position of the common ancestor, i.e., two
+     * paths that {@link #appendPath(StringBuilder, int, int, int, int) render} to the same string have the same hash.
+     *
+     * @param source The index of the source leaf.
+     * @param up     The number of steps from the source leaf up to the common ancestor.
+     * @param target The index of the target leaf.
+     * @param down   The number of steps from the common ancestor down to the target leaf.
+     * @return The hash of the path.
+     */
+    PathHash hashPath(final int source, final int up, final int target, final int down) {
+        long value = round(round(VALUE_SEED, up), down);
+        long check = round(round(CHECK_SEED, up), down);
+
+        final int[] sourceAncestors = tree.ancestors(source);
+        for (int k = 0; k <= up; k++) {
+            final int node = nodeHashIndex(sourceAncestors[k]);
+            value = round(value, nodeHashes[node]);
+            check = round(check, nodeHashes[node + 1]);
+        }
+
+        final int[] targetAncestors = tree.ancestors(target);
+        for (int k = down - 1; k >= 0; k--) {
+            final int node = nodeHashIndex(targetAncestors[k]);
+            value = round(value, nodeHashes[node]);
+            check = round(check, nodeHashes[node + 1]);
+        }
+
+        return new PathHash(avalanche(value), avalanche(check));
+    }
+
+    private int nodeHashIndex(final int nodeId) {
+        if (nodeHashes == null) {
+            nodeHashes = new long[2 * tree.nodeCount()];
+            hashedNodes = new boolean[tree.nodeCount()];
+        }
+
+        if (!hashedNodes[nodeId]) {
+            final String node = renderedNode(nodeId);
+            nodeHashes[2 * nodeId] = NODE_VALUE_HASH.hashString(node, StandardCharsets.UTF_8).asLong();
+            nodeHashes[2 * nodeId + 1] = NODE_CHECK_HASH.hashString(node, StandardCharsets.UTF_8).asLong();
+            hashedNodes[nodeId] = true;
+        }
+        return 2 * nodeId;
+    }
+
+    private static long round(final long accumulator, final long input) {
+        return Long.rotateLeft(accumulator + input * PRIME64_2, ROUND_ROTATION) * PRIME64_1;
+    }
+
+    private static long avalanche(final long hash) {
+        long result = hash;
+        result ^= result >>> 33;
+        result *= PRIME64_2;
+        result ^= result >>> 29;
+        result *= PRIME64_3;
+        result ^= result >>> 32;
+        return result;
+    }
+
+    private void renderChains(final int leaf) {
+        final int[] ancestors = tree.ancestors(leaf);
+        int chainLength = ancestors.length - 1;
+        if (maxPathLength > 0) {
+            chainLength = Math.min(chainLength, maxPathLength);
+        }
+
+        final StringBuilder upChain = new StringBuilder();
+        final int[] upEnds = new int[chainLength + 1];
+        for (int k = 0; k < chainLength; k++) {
+            upChain.append(renderedNode(ancestors[k])).append(upSymbol);
+            upEnds[k + 1] = upChain.length();
+        }
+
+        // the part covering the last k nodes starts right after the node k steps above the leaf
+        final StringBuilder downChain = new StringBuilder();
+        final int[] downStarts = new int[chainLength + 1];
+        for (int k = chainLength - 1; k >= 0; k--) {
+            downChain.append(downSymbol).append(renderedNode(ancestors[k]));
+            downStarts[k] = downChain.length();
+        }
+
+        upChains[leaf] = upChain.toString();
+        upChainEnds[leaf] = upEnds;
+        downChains[leaf] = downChain.toString();
+        downChainStarts[leaf] = downStarts;
+    }
+
+    private String renderedNode(final int nodeId) {
+        if (renderedNodes[nodeId] == null) {
+            renderedNodes[nodeId] = nodeRenderer.apply(tree.node(nodeId));
+        }
+        return renderedNodes[nodeId];
+    }
+}
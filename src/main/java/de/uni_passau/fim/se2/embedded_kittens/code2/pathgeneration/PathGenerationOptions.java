@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
+
+import de.uni_passau.fim.se2.litterbox.utils.Preconditions;
+
+/**
+ * Combines the options on how the paths of a program are generated.
+ *
+ * @param maxPathLength         The maximum length for connecting two AST leaves. Zero means no limit.
+ * @param includeStage          True, if the stage sprite should be included when generating paths.
+ * @param includeDefaultSprites True, if sprites that have default names should be included when generating paths.
+ * @param pathFormatOptions     How the paths are formatted when converting them into the output format.
+ * @param contextSampling       Limits the number of paths per sprite, script, or program.
+ * @param contextDeduplication  Defines how duplicate contexts within a sprite, script, or program are handled.
+ * @param pathThreads           The number of threads that generate the paths of the sprites or scripts of a single
+ *                              program concurrently. The output is the same for any number of threads.
+ */
+public record PathGenerationOptions(
+    int maxPathLength,
+    boolean includeStage,
+    boolean includeDefaultSprites,
+    PathFormatOptions pathFormatOptions,
+    ContextSampling contextSampling,
+    ContextDeduplication contextDeduplication,
+    int pathThreads
+) {
+
+    public PathGenerationOptions {
+        Preconditions.checkArgument(maxPathLength >= 0, "The maximum path length must not be negative.");
+        Preconditions.checkNotNull(pathFormatOptions);
+        Preconditions.checkNotNull(contextSampling);
+        Preconditions.checkNotNull(contextDeduplication);
+        Preconditions.checkArgument(pathThreads > 0, "At least one path generation thread is required.");
+    }
+
+    /**
+     * Generates all paths in the default format on the calling thread.
+     *
+     * @param maxPathLength         The maximum length for connecting two AST leaves. Zero means no limit.
+     * @param includeStage          True, if the stage sprite should be included when generating paths.
+     * @param includeDefaultSprites True, if sprites that have default names should be included when generating
+     *                              paths.
+     */
+    public PathGenerationOptions(
+        final int maxPathLength, final boolean includeStage, final boolean includeDefaultSprites
+    ) {
+        this(
+            maxPathLength, includeStage, includeDefaultSprites, new PathFormatOptions(), ContextSampling.none(),
+            ContextDeduplication.NONE, 1
+        );
+    }
+
+    public PathGenerationOptions withPathFormatOptions(final PathFormatOptions formatOptions) {
+        return new PathGenerationOptions(
+            maxPathLength, includeStage, includeDefaultSprites, formatOptions, contextSampling, contextDeduplication,
+            pathThreads
+        );
+    }
+}
@@ -21,11 +21,18 @@
  */
 package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.stream.Stream;
 
+import de.uni_passau.fim.se2.embedded_kittens.ProcessingGuard;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelationFactory;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor.ExtractedLeaves;
 import de.uni_passau.fim.se2.embedded_kittens.shared.TokenVisitorFactory;
 import de.uni_passau.fim.se2.embedded_kittens.util.StringUtil;
 import de.uni_passau.fim.se2.litterbox.ast.model.ASTNode;
@@ -33,8 +40,6 @@ import de.uni_passau.fim.se2.litterbox.ast.model.Program;
 
 public abstract class PathGenerator {
 
-    private static final PathRepresentationVisitor PATH_REPRESENTATION_VISITOR = new PathRepresentationVisitor();
-
     protected final Program program;
 
     protected final int maxPathLength;
@@ -42,47 +47,128 @@ public abstract class PathGenerator {
     protected final boolean includeDefaultSprites;
 
     private final PathFormatOptions pathFormatOptions;
+    private final ContextSampling contextSampling;
+    private final ContextDeduplication contextDeduplication;
     private final ProgramRelationFactory programRelationFactory;
 
     protected PathGenerator(
-        Program program, int maxPathLength, boolean includeStage, boolean includeDefaultSprites,
-        PathFormatOptions pathFormatOptions, ProgramRelationFactory programRelationFactory
+        Program program, PathGenerationOptions options, ProgramRelationFactory programRelationFactory
     ) {
-        this.maxPathLength = maxPathLength;
-        this.includeStage = includeStage;
+        this.maxPathLength = options.maxPathLength();
+        this.includeStage = options.includeStage();
         this.program = program;
-        this.includeDefaultSprites = includeDefaultSprites;
-        this.pathFormatOptions = pathFormatOptions;
+        this.includeDefaultSprites = options.includeDefaultSprites();
+        this.pathFormatOptions = options.pathFormatOptions();
+        this.contextSampling = options.contextSampling();
+        this.contextDeduplication = options.contextDeduplication();
         this.programRelationFactory = programRelationFactory;
     }
 
-    private static List<ASTNode> getTreeStack(ASTNode node) {
-        ArrayList<ASTNode> upStack = new ArrayList<>();
-        ASTNode current = node;
-        while (current != null) {
-            upStack.add(current);
-            current = current.getParentNode();
+    private String renderNode(final ASTNode node) {
+        final StringBuilder nodeBuilder = new StringBuilder(pathFormatOptions.startSymbol());
+        if (pathFormatOptions.useNodeId()) {
+            nodeBuilder.append(NodeTypeIds.of(node));
+        }
+        else {
+            nodeBuilder.append(node.getUniqueName());
         }
-        return upStack;
+        return nodeBuilder.append(pathFormatOptions.endSymbol()).toString();
     }
 
-    private void appendNodeToPath(final StringBuilder pathBuilder, final ASTNode node) {
-        pathBuilder.append(pathFormatOptions.startSymbol());
-        if (pathFormatOptions.useNodeId()) {
-            pathBuilder.append(getNodeTypeId(node));
+    /**
+     * Generates the paths of all sprites, scripts, or the whole program on the current thread.
+     *
+     * @return The features of each part of the program that contains at least one path.
+     */
+    public final List<ProgramFeatures> generatePaths() {
+        return generatePaths(Runnable::run);
+    }
+
+    /**
+     * Generates the paths of all sprites, scripts, or the whole program.
+     *
+     * <p>
+     * The paths of the individual parts are generated concurrently on the given executor. The order of the result
+     * is the same as when generating them sequentially. The {@link ProcessingGuard} of the calling thread also
+     * applies to the parts that are processed on other threads. Once a part failed, the parts that have not been
+     * started yet are cancelled.
+     *
+     * @param executor Runs the path generation for the individual parts.
+     * @return The features of each part of the program that contains at least one path.
+     */
+    public final List<ProgramFeatures> generatePaths(final Executor executor) {
+        final List<Part> parts = parts();
+        final List<CompletableFuture<ProgramFeatures>> pendingFeatures = new ArrayList<>(parts.size());
+        for (final Part part : parts) {
+            pendingFeatures.add(CompletableFuture.supplyAsync(
+                ProcessingGuard.propagate(() -> getProgramFeatures(part.label(), part.leaves())), executor
+            ));
         }
-        else {
-            pathBuilder.append(node.getUniqueName());
+
+        try {
+            final List<ProgramFeatures> features = new ArrayList<>(pendingFeatures.size());
+            for (final CompletableFuture<ProgramFeatures> partFeatures : pendingFeatures) {
+                final ProgramFeatures generated = partFeatures.join();
+                if (!generated.isEmpty()) {
+                    features.add(generated);
+                }
+            }
+            return features;
+        }
+        catch (CompletionException e) {
+            pendingFeatures.forEach(partFeatures -> partFeatures.cancel(false));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
         }
-        pathBuilder.append(pathFormatOptions.endSymbol());
     }
 
-    private int getNodeTypeId(final ASTNode node) {
-        node.accept(PATH_REPRESENTATION_VISITOR);
-        return PATH_REPRESENTATION_VISITOR.getRepresentation();
+    /**
+     * Generates the paths of all sprites, scripts, or the whole program on the current thread and writes them to the
+     * output as they are generated.
+     *
+     * <p>
+     * Each part of the program that contains at least one path becomes one line in the format of
+     * {@link ProgramFeatures#writeTo(Appendable)}. In contrast to {@link #generatePaths(Executor)}, the contexts are
+     * not collected, unless duplicates are counted. Then, only the contexts of the current part are collected.
+     *
+     * @param out The output the lines are appended to.
+     * @return The number of written lines.
+     * @throws IOException Thrown if the output cannot be written.
+     */
+    public final int writePaths(final Appendable out) throws IOException {
+        int lines = 0;
+        for (final Part part : parts()) {
+            if (writePart(part, out)) {
+                out.append(System.lineSeparator());
+                lines++;
+            }
+        }
+        return lines;
     }
 
-    public abstract List<ProgramFeatures> generatePaths();
+    private boolean writePart(final Part part, final Appendable out) throws IOException {
+        if (contextDeduplication == ContextDeduplication.COUNT) {
+            // the counts are only known once all contexts of the part have been generated
+            final ProgramFeatures partFeatures = getProgramFeatures(part.label(), part.leaves());
+            if (!partFeatures.isEmpty()) {
+                partFeatures.writeTo(out);
+            }
+            return !partFeatures.isEmpty();
+        }
+
+        final ProgramFeatures partFeatures = ProgramFeatures.writingTo(
+            part.label(), programRelationFactory, contextDeduplication, out
+        );
+        try {
+            addContexts(partFeatures, part.leaves());
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return !partFeatures.isEmpty();
+    }
 
     public List<String> getAllLeaves() {
         return getLeaves().map(TokenVisitorFactory::getNormalisedToken).toList();
@@ -90,105 +176,158 @@ public abstract class PathGenerator {
 
     protected abstract Stream<ASTNode> getLeaves();
 
-    protected final ProgramFeatures getProgramFeatures(final String featureLabel, final List<ASTNode> astLeaves) {
-        final ProgramFeatures programFeatures = new ProgramFeatures(featureLabel, programRelationFactory);
-
-        for (int i = 0; i < astLeaves.size(); i++) {
-            for (int j = i + 1; j < astLeaves.size(); j++) {
-                final ASTNode source = astLeaves.get(i);
-                final ASTNode target = astLeaves.get(j);
-                final String path = generatePath(source, target);
+    /**
+     * The parts of the program whose paths are generated separately.
+     *
+     * @return The sprites, scripts, or the whole program in the order in which their paths are output. Without the
+     *         parts that should be ignored.
+     */
+    protected abstract List<Part> parts();
+
+    private ProgramFeatures getProgramFeatures(final String featureLabel, final ExtractedLeaves astLeaves) {
+        final ProgramFeatures programFeatures = new ProgramFeatures(
+            featureLabel, programRelationFactory, contextDeduplication
+        );
+        addContexts(programFeatures, astLeaves);
+        return programFeatures;
+    }
 
-                if (path != null) {
-                    addFeature(programFeatures, source, target, path);
-                }
-            }
+    private void addContexts(final ProgramFeatures programFeatures, final ExtractedLeaves astLeaves) {
+        final String featureLabel = programFeatures.getName();
+        if (ProcessingGuard.exceedsLeafLimit(featureLabel, astLeaves.size())) {
+            return;
         }
 
-        return programFeatures;
-    }
+        final LeafTreeIndex tree = LeafTreeIndex.of(astLeaves);
+        final LeafPairEnumerator leafPairs = new LeafPairEnumerator(tree, maxPathLength);
+        final PathFragments pathFragments = new PathFragments(tree, this::renderNode, pathFormatOptions, maxPathLength);
+        ProcessingGuard.checkDeadline();
+        final String[] literals = literals(astLeaves.leaves());
+
+        if (contextSampling.enabled()) {
+            final long[] sampledPairs = ContextSampler.sample(
+                contextSampling, program.getIdent().getName(), featureLabel, leafPairs, astLeaves.size(),
+                (i, j) -> isContext(tree, literals, i, j)
+            );
+            addSampledFeatures(programFeatures, literals, tree, pathFragments, sampledPairs);
+            return;
+        }
 
-    private void addFeature(
-        final ProgramFeatures programFeatures, final ASTNode source, final ASTNode target, final String path
-    ) {
-        String sourceLiteral = TokenVisitorFactory.getNormalisedTokenWithDelimiter(
-            source, pathFormatOptions.delimiter()
-        );
-        String targetLiteral = TokenVisitorFactory.getNormalisedTokenWithDelimiter(
-            target, pathFormatOptions.delimiter()
-        );
+        for (int i = 0; i < literals.length; i++) {
+            ProcessingGuard.checkDeadline();
+            if (literals[i].isEmpty()) {
+                continue;
+            }
 
-        if (pathFormatOptions.normaliseTokens()) {
-            sourceLiteral = StringUtil.normaliseString(sourceLiteral, pathFormatOptions.delimiter());
-            targetLiteral = StringUtil.normaliseString(targetLiteral, pathFormatOptions.delimiter());
+            for (final int j : leafPairs.targets(i)) {
+                addContext(programFeatures, literals, tree, pathFragments, i, j);
+            }
         }
+    }
 
-        if (!sourceLiteral.isEmpty() && !targetLiteral.isEmpty()) {
-            programFeatures.addFeature(sourceLiteral, path, targetLiteral);
+    private void addSampledFeatures(
+        final ProgramFeatures programFeatures, final String[] literals, final LeafTreeIndex tree,
+        final PathFragments pathFragments, final long[] sampledPairs
+    ) {
+        for (final long pair : sampledPairs) {
+            addContext(
+                programFeatures, literals, tree, pathFragments, ContextSampler.sourceLeaf(pair),
+                ContextSampler.targetLeaf(pair)
+            );
         }
     }
 
-    private String generatePath(ASTNode source, ASTNode target) {
-        final List<ASTNode> sourceStack = getTreeStack(source);
-        final List<ASTNode> targetStack = getTreeStack(target);
+    /**
+     * Adds the context of the two leaves if they are connected by a path within the maximum path length and both
+     * have a non-empty literal.
+     *
+     * <p>
+     * The path is only rendered when the {@link ProgramRelationFactory} needs it as string, otherwise it is hashed
+     * directly from its nodes.
+     */
+    private void addContext(
+        final ProgramFeatures programFeatures, final String[] literals, final LeafTreeIndex tree,
+        final PathFragments pathFragments, final int source, final int target
+    ) {
+        final String sourceLiteral = literals[source];
+        final String targetLiteral = literals[target];
+        if (sourceLiteral.isEmpty() || targetLiteral.isEmpty()) {
+            return;
+        }
 
-        int commonPrefix = getCommonPrefix(sourceStack, targetStack);
+        final int commonAncestor = tree.lowestCommonAncestor(source, target);
+        if (commonAncestor == LeafTreeIndex.NO_NODE) {
+            return;
+        }
 
         // manage too long path length
-        int pathLength = sourceStack.size() + targetStack.size() - 2 * commonPrefix;
-        if (maxPathLength > 0 && pathLength > maxPathLength) {
-            return null;
+        final int up = tree.ancestors(source).length - 1 - tree.depth(commonAncestor);
+        final int down = tree.ancestors(target).length - 1 - tree.depth(commonAncestor);
+        if (maxPathLength > 0 && up + down > maxPathLength) {
+            return;
         }
 
-        return buildPath(sourceStack, targetStack, commonPrefix);
+        if (programRelationFactory.hashesPathNodes()) {
+            programFeatures.addFeature(sourceLiteral, pathFragments.hashPath(source, up, target, down), targetLiteral);
+        }
+        else {
+            final StringBuilder pathBuilder = new StringBuilder();
+            pathFragments.appendPath(pathBuilder, source, up, target, down);
+            programFeatures.addFeature(sourceLiteral, pathBuilder.toString(), targetLiteral);
+        }
     }
 
-    private static int getCommonPrefix(final List<ASTNode> sourceStack, final List<ASTNode> targetStack) {
-        int commonPrefix = 0;
-        int currentSourceAncestorIndex = sourceStack.size() - 1;
-        int currentTargetAncestorIndex = targetStack.size() - 1;
-
-        while (
-            currentSourceAncestorIndex >= 0
-                && currentTargetAncestorIndex >= 0
-                && sourceStack.get(currentSourceAncestorIndex) == targetStack.get(currentTargetAncestorIndex)
-        ) {
-            commonPrefix++;
-            currentSourceAncestorIndex--;
-            currentTargetAncestorIndex--;
+    /**
+     * Normalises the token of each leaf once, as each leaf takes part in the contexts with many other leaves.
+     *
+     * @param astLeaves The leaves of a sprite, script, or program.
+     * @return The normalised literal of each leaf at the same index. Empty for leaves that are not part of contexts.
+     */
+    private String[] literals(final List<ASTNode> astLeaves) {
+        final String[] literals = new String[astLeaves.size()];
+        for (int i = 0; i < literals.length; i++) {
+            literals[i] = literal(astLeaves.get(i));
         }
-
-        return commonPrefix;
+        return literals;
     }
 
-    private String buildPath(final List<ASTNode> sourceStack, final List<ASTNode> targetStack, final int commonPrefix) {
-        final StringBuilder pathBuilder = new StringBuilder();
+    private String literal(final ASTNode leaf) {
+        final String literal = TokenVisitorFactory.getNormalisedTokenWithDelimiter(leaf, pathFormatOptions.delimiter());
 
-        addSourceStackToPath(pathBuilder, sourceStack, commonPrefix);
-        final ASTNode commonNode = sourceStack.get(sourceStack.size() - commonPrefix);
-        appendNodeToPath(pathBuilder, commonNode);
-        addTargetStackToPath(pathBuilder, targetStack, commonPrefix);
-
-        return pathBuilder.toString();
+        if (pathFormatOptions.normaliseTokens()) {
+            return StringUtil.normaliseString(literal, pathFormatOptions.delimiter());
+        }
+        else {
+            return literal;
+        }
     }
 
-    private void addSourceStackToPath(
-        final StringBuilder pathBuilder, final List<ASTNode> sourceStack, final int commonPrefix
+    /**
+     * Checks if the pair of leaves would result in a context, without building its path.
+     */
+    private boolean isContext(
+        final LeafTreeIndex tree, final String[] literals, final int source, final int target
     ) {
-        for (int i = 0; i < sourceStack.size() - commonPrefix; i++) {
-            ASTNode currentNode = sourceStack.get(i);
-            appendNodeToPath(pathBuilder, currentNode);
-            pathBuilder.append(pathFormatOptions.upSymbol());
+        if (literals[source].isEmpty() || literals[target].isEmpty()) {
+            return false;
         }
-    }
 
-    private void addTargetStackToPath(
-        final StringBuilder pathBuilder, final List<ASTNode> targetStack, final int commonPrefix
-    ) {
-        for (int i = targetStack.size() - commonPrefix - 1; i >= 0; i--) {
-            ASTNode currentNode = targetStack.get(i);
-            pathBuilder.append(pathFormatOptions.downSymbol());
-            appendNodeToPath(pathBuilder, currentNode);
+        final int commonAncestor = tree.lowestCommonAncestor(source, target);
+        if (commonAncestor == LeafTreeIndex.NO_NODE) {
+            return false;
         }
+
+        final int up = tree.ancestors(source).length - 1 - tree.depth(commonAncestor);
+        final int down = tree.ancestors(target).length - 1 - tree.depth(commonAncestor);
+        return maxPathLength <= 0 || up + down <= maxPathLength;
+    }
+
+    /**
+     * A part of the program whose paths are generated separately.
+     *
+     * @param label  The label of the part in the output.
+     * @param leaves The leaves of the part.
+     */
+    protected record Part(String label, ExtractedLeaves leaves) {
     }
 }
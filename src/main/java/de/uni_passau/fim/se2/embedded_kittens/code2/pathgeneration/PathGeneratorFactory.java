@@ -36,7 +36,7 @@ public class PathGeneratorFactory {
         ProgramRelationFactory programRelationFactory, ActorNameNormalizer actorNameNormalizer
     ) {
         return createPathGenerator(
-            type, maxPathLength, includeStage, program, includeDefaultSprites, new PathFormatOptions(),
+            type, program, new PathGenerationOptions(maxPathLength, includeStage, includeDefaultSprites),
             programRelationFactory, actorNameNormalizer
         );
     }
@@ -45,34 +45,20 @@ public class PathGeneratorFactory {
      * Builds a new path generator.
      *
      * @param type                   The kind of paths that should be generated.
-     * @param maxPathLength          The maximum lengths for AST paths.
-     * @param includeStage           True, if the stage sprite should be included when generating paths.
      * @param program                The program for which paths should be generated.
-     * @param includeDefaultSprites  True, if sprites that have default names should be included when generating paths.
-     * @param pathFormatOptions      Additional options on how the path should be formatted when converting into the
-     *                               output format.
+     * @param options                Defines which paths are generated and how they are formatted.
      * @param programRelationFactory Defines how the paths should be represented.
      * @param actorNameNormalizer    A normalisation step that defines how the actor name should be processed.
      * @return A path generator.
      */
     public static PathGenerator createPathGenerator(
-        PathType type, int maxPathLength, boolean includeStage, Program program, boolean includeDefaultSprites,
-        PathFormatOptions pathFormatOptions, ProgramRelationFactory programRelationFactory,
+        PathType type, Program program, PathGenerationOptions options, ProgramRelationFactory programRelationFactory,
         ActorNameNormalizer actorNameNormalizer
     ) {
         return switch (type) {
-            case SCRIPT -> new ScriptEntityPathGenerator(
-                program, maxPathLength, includeStage, includeDefaultSprites, pathFormatOptions,
-                programRelationFactory
-            );
-            case PROGRAM -> new ProgramPathGenerator(
-                program, maxPathLength, includeStage, includeDefaultSprites, pathFormatOptions,
-                programRelationFactory
-            );
-            default -> new SpritePathGenerator(
-                program, maxPathLength, includeStage, includeDefaultSprites, pathFormatOptions,
-                programRelationFactory, actorNameNormalizer
-            );
+            case SCRIPT -> new ScriptEntityPathGenerator(program, options, programRelationFactory);
+            case PROGRAM -> new ProgramPathGenerator(program, options, programRelationFactory);
+            default -> new SpritePathGenerator(program, options, programRelationFactory, actorNameNormalizer);
         };
     }
 }
@@ -21,41 +21,215 @@
  */
 package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.PathHash;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelation;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelationFactory;
+import de.uni_passau.fim.se2.litterbox.utils.Preconditions;
 
 public class ProgramFeatures {
 
+    private static final int INITIAL_COUNTS_CAPACITY = 16;
+
     private final String name;
     private final ProgramRelationFactory programRelationFactory;
+    private final ContextDeduplication deduplication;
+
+    /**
+     * Receives the contexts as soon as they are added. Null, if the contexts are kept in {@link #features} instead.
+     */
+    private final Appendable out;
 
     private final List<ProgramRelation> features = new ArrayList<>();
 
+    /**
+     * The number of contexts that were kept or written, without the dropped or counted duplicates.
+     */
+    private int contextCount;
+
+    /**
+     * The index of each distinct context among the kept or written ones. Only used if duplicates are dropped or
+     * counted.
+     */
+    private final Map<ContextKey, Integer> contextIndices = new HashMap<>();
+
+    /**
+     * The number of occurrences of each context in {@link #features}. Only used if duplicates are counted.
+     */
+    private int[] counts = new int[0];
+
     public ProgramFeatures(final String name, final ProgramRelationFactory programRelationFactory) {
+        this(name, programRelationFactory, ContextDeduplication.NONE);
+    }
+
+    /**
+     * Creates a new example without any contexts.
+     *
+     * @param name                   The label of the example.
+     * @param programRelationFactory Builds the contexts.
+     * @param deduplication          Defines how contexts are handled that are added more than once.
+     */
+    public ProgramFeatures(
+        final String name, final ProgramRelationFactory programRelationFactory,
+        final ContextDeduplication deduplication
+    ) {
+        this(name, programRelationFactory, deduplication, null);
+    }
+
+    private ProgramFeatures(
+        final String name, final ProgramRelationFactory programRelationFactory,
+        final ContextDeduplication deduplication, final Appendable out
+    ) {
         this.name = name;
         this.programRelationFactory = programRelationFactory;
+        this.deduplication = deduplication;
+        this.out = out;
+    }
+
+    /**
+     * Creates a new example that writes its contexts to the output as they are added instead of keeping them.
+     *
+     * <p>
+     * The output is the same as of {@link #writeTo(Appendable)}. The label is only written together with the first
+     * context, so an example without contexts leaves no trace in the output. Since the counts are only known once
+     * all contexts have been added, counted duplicates cannot be written right away.
+     *
+     * @param name                   The label of the example.
+     * @param programRelationFactory Builds the contexts.
+     * @param deduplication          Defines how contexts are handled that are added more than once.
+     * @param out                    The output the example is written to.
+     * @return An example without any contexts.
+     */
+    public static ProgramFeatures writingTo(
+        final String name, final ProgramRelationFactory programRelationFactory,
+        final ContextDeduplication deduplication, final Appendable out
+    ) {
+        Preconditions.checkArgument(
+            deduplication != ContextDeduplication.COUNT, "Counted contexts cannot be written as they are added."
+        );
+        Preconditions.checkNotNull(out);
+
+        return new ProgramFeatures(name, programRelationFactory, deduplication, out);
     }
 
     @Override
     public String toString() {
-        return name + ' ' + features.stream().map(ProgramRelation::toString).collect(Collectors.joining(" "));
+        return name + ' ' + toStringWithoutNodeName();
     }
 
     public String toStringWithoutNodeName() {
-        return features.stream().map(ProgramRelation::toString).collect(Collectors.joining(" "));
+        return IntStream.range(0, features.size()).mapToObj(this::contextToString).collect(Collectors.joining(" "));
+    }
+
+    private String contextToString(final int index) {
+        if (countsDuplicates()) {
+            return features.get(index).toString() + ',' + counts[index];
+        }
+        else {
+            return features.get(index).toString();
+        }
+    }
+
+    /**
+     * Writes the features in the same format as {@link #toString()}.
+     *
+     * <p>
+     * The relations are appended to the output one after another. In contrast to {@link #toString()}, the
+     * representation of all features is never held in memory as a whole.
+     *
+     * @param out The output the features are appended to.
+     * @throws IOException Thrown if the output cannot be written.
+     */
+    public void writeTo(final Appendable out) throws IOException {
+        out.append(name).append(' ');
+        for (int i = 0; i < features.size(); i++) {
+            if (i > 0) {
+                out.append(' ');
+            }
+            features.get(i).writeTo(out);
+            if (countsDuplicates()) {
+                out.append(',').append(Integer.toString(counts[i]));
+            }
+        }
     }
 
     public void addFeature(String source, String path, String target) {
         final ProgramRelation newRelation = programRelationFactory.build(source, target, path);
-        features.add(newRelation);
+        add(newRelation);
+    }
+
+    public void addFeature(final String source, final PathHash path, final String target) {
+        add(programRelationFactory.build(source, target, path));
+    }
+
+    /**
+     * Adds the context unless it is a duplicate that should be dropped or counted.
+     *
+     * <p>
+     * Only the first occurrence of a context is kept, so the memory is proportional to the number of distinct
+     * contexts. The key of a context refers to the strings of the kept relation instead of copying them.
+     *
+     * @param relation The context to add.
+     * @throws UncheckedIOException Thrown if the context cannot be written to the output.
+     */
+    private void add(final ProgramRelation relation) {
+        if (deduplication != ContextDeduplication.NONE) {
+            final ContextKey key = new ContextKey(relation.getSource(), relation.getPath(), relation.getTarget());
+            final Integer knownIndex = contextIndices.putIfAbsent(key, contextCount);
+            if (knownIndex != null) {
+                if (countsDuplicates()) {
+                    counts[knownIndex]++;
+                }
+                return;
+            }
+        }
+
+        if (out == null) {
+            features.add(relation);
+            if (countsDuplicates()) {
+                addCount();
+            }
+        }
+        else {
+            write(relation);
+        }
+        contextCount++;
+    }
+
+    private void write(final ProgramRelation relation) {
+        try {
+            if (contextCount == 0) {
+                out.append(name).append(' ');
+            }
+            else {
+                out.append(' ');
+            }
+            relation.writeTo(out);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void addCount() {
+        final int index = features.size() - 1;
+        if (index == counts.length) {
+            counts = Arrays.copyOf(counts, Math.max(INITIAL_COUNTS_CAPACITY, 2 * counts.length));
+        }
+        counts[index] = 1;
     }
 
     public boolean isEmpty() {
-        return features.isEmpty();
+        return contextCount == 0;
     }
 
     public String getName() {
@@ -65,4 +239,34 @@ public class ProgramFeatures {
     public List<ProgramRelation> getFeatures() {
         return features;
     }
+
+    /**
+     * Checks if the number of occurrences of each context is part of the output.
+     *
+     * @return True, if duplicates are collapsed into a count.
+     */
+    public boolean countsDuplicates() {
+        return deduplication == ContextDeduplication.COUNT;
+    }
+
+    /**
+     * The number of times a context was added.
+     *
+     * @param index The index of the context in {@link #getFeatures()}.
+     * @return The number of occurrences of the context if duplicates are counted, one otherwise.
+     */
+    public int getCount(final int index) {
+        if (countsDuplicates()) {
+            return counts[index];
+        }
+        else {
+            return 1;
+        }
+    }
+
+    /**
+     * Identifies a context by its parts.
+     */
+    private record ContextKey(String source, String path, String target) {
+    }
 }
@@ -26,43 +26,37 @@ import java.util.stream.Stream;
 
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelationFactory;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor.ExtractSpriteLeavesVisitor;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor.ExtractedLeaves;
 import de.uni_passau.fim.se2.litterbox.ast.model.ASTNode;
 import de.uni_passau.fim.se2.litterbox.ast.model.ActorDefinition;
 import de.uni_passau.fim.se2.litterbox.ast.model.Program;
 
 public final class ProgramPathGenerator extends PathGenerator {
 
-    private final Map<ActorDefinition, List<ASTNode>> leavesMap;
+    private final Map<ActorDefinition, ExtractedLeaves> leavesMap;
 
     public ProgramPathGenerator(
-        Program program, int maxPathLength, boolean includeStage, boolean includeDefaultSprites,
-        PathFormatOptions pathFormatOptions, ProgramRelationFactory programRelationFactory
+        Program program, PathGenerationOptions options, ProgramRelationFactory programRelationFactory
     ) {
-        super(program, maxPathLength, includeStage, includeDefaultSprites, pathFormatOptions, programRelationFactory);
+        super(program, options, programRelationFactory);
         this.leavesMap = Collections.unmodifiableMap(extractASTLeaves());
     }
 
-    private Map<ActorDefinition, List<ASTNode>> extractASTLeaves() {
+    private Map<ActorDefinition, ExtractedLeaves> extractASTLeaves() {
         ExtractSpriteLeavesVisitor spriteVisitor = new ExtractSpriteLeavesVisitor(
             program.getProcedureMapping(), includeStage
         );
         program.accept(spriteVisitor);
-        return spriteVisitor.getLeaves();
+        return spriteVisitor.getExtractedLeaves();
     }
 
     @Override
-    public List<ProgramFeatures> generatePaths() {
-        return generatePathsWholeProgram().stream().toList();
-    }
-
-    private Optional<ProgramFeatures> generatePathsWholeProgram() {
-        List<ASTNode> leaves = leavesMap.values().stream().flatMap(Collection::stream).toList();
-        final ProgramFeatures programFeatures = super.getProgramFeatures("program", leaves);
-        return Optional.of(programFeatures).filter(features -> !features.isEmpty());
+    protected List<Part> parts() {
+        return List.of(new Part("program", ExtractedLeaves.concat(leavesMap.values())));
     }
 
     @Override
     protected Stream<ASTNode> getLeaves() {
-        return leavesMap.values().stream().flatMap(Collection::stream);
+        return leavesMap.values().stream().flatMap(group -> group.leaves().stream());
     }
 }
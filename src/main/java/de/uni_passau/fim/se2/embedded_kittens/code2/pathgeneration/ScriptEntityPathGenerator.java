@@ -26,6 +26,7 @@ import java.util.stream.Stream;
 
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelationFactory;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor.ExtractScriptLeavesVisitor;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor.ExtractedLeaves;
 import de.uni_passau.fim.se2.embedded_kittens.util.NodeNameUtil;
 import de.uni_passau.fim.se2.litterbox.ast.model.*;
 import de.uni_passau.fim.se2.litterbox.ast.model.procedure.ProcedureDefinition;
@@ -33,20 +34,21 @@ import de.uni_passau.fim.se2.litterbox.ast.util.AstNodeUtil;
 
 public final class ScriptEntityPathGenerator extends PathGenerator {
 
-    private final Map<ScriptEntity, List<ASTNode>> leavesMap;
+    private final Map<ScriptEntity, ExtractedLeaves> leavesMap;
 
     public ScriptEntityPathGenerator(
-        Program program, int maxPathLength, boolean includeStage, boolean includeDefaultSprites,
-        PathFormatOptions pathFormatOptions, ProgramRelationFactory programRelationFactory
+        Program program, PathGenerationOptions options, ProgramRelationFactory programRelationFactory
     ) {
-        super(program, maxPathLength, includeStage, includeDefaultSprites, pathFormatOptions, programRelationFactory);
+        super(program, options, programRelationFactory);
 
         Stream<ActorDefinition> sprites = AstNodeUtil.getActors(program, includeStage);
         this.leavesMap = Collections.unmodifiableMap(extractASTLeaves(sprites));
     }
 
-    private Map<ScriptEntity, List<ASTNode>> extractASTLeaves(Stream<ActorDefinition> sprites) {
-        ExtractScriptLeavesVisitor extractionVisitor = new ExtractScriptLeavesVisitor(program.getProcedureMapping());
+    private Map<ScriptEntity, ExtractedLeaves> extractASTLeaves(Stream<ActorDefinition> sprites) {
+        ExtractScriptLeavesVisitor extractionVisitor = new ExtractScriptLeavesVisitor(
+            program.getProcedureMapping()
+        );
 
         sprites.sequential().forEach(sprite -> {
             for (Script script : sprite.getScripts().getScriptList()) {
@@ -58,31 +60,19 @@ public final class ScriptEntityPathGenerator extends PathGenerator {
             }
         });
 
-        return extractionVisitor.getLeaves();
+        return extractionVisitor.getExtractedLeaves();
     }
 
     @Override
-    public List<ProgramFeatures> generatePaths() {
-        final List<ProgramFeatures> scriptFeatures = new ArrayList<>();
-
-        for (final var entry : leavesMap.entrySet()) {
-            final ScriptEntity script = entry.getKey();
-
-            NodeNameUtil.getScriptEntityName(script).ifPresent(scriptName -> {
-                final List<ASTNode> leaves = entry.getValue();
-                final ProgramFeatures singleScriptFeatures = super.getProgramFeatures(scriptName, leaves);
-
-                if (!singleScriptFeatures.isEmpty()) {
-                    scriptFeatures.add(singleScriptFeatures);
-                }
-            });
-        }
-
-        return scriptFeatures;
+    protected List<Part> parts() {
+        final List<Part> parts = new ArrayList<>();
+        leavesMap.forEach((script, leaves) -> NodeNameUtil.getScriptEntityName(script)
+            .ifPresent(scriptName -> parts.add(new Part(scriptName, leaves))));
+        return parts;
     }
 
     @Override
     public Stream<ASTNode> getLeaves() {
-        return leavesMap.values().stream().flatMap(Collection::stream);
+        return leavesMap.values().stream().flatMap(group -> group.leaves().stream());
     }
 }
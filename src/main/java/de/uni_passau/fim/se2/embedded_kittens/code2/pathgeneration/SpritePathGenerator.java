@@ -26,6 +26,7 @@ import java.util.stream.Stream;
 
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelationFactory;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor.ExtractSpriteLeavesVisitor;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor.ExtractedLeaves;
 import de.uni_passau.fim.se2.embedded_kittens.shared.ActorNameNormalizer;
 import de.uni_passau.fim.se2.embedded_kittens.util.NodeNameUtil;
 import de.uni_passau.fim.se2.litterbox.ast.model.ASTNode;
@@ -35,48 +36,40 @@ import de.uni_passau.fim.se2.litterbox.ast.model.Program;
 public final class SpritePathGenerator extends PathGenerator {
 
     private final ActorNameNormalizer actorNameNormalizer;
-    private final Map<ActorDefinition, List<ASTNode>> leavesMap;
+    private final Map<ActorDefinition, ExtractedLeaves> leavesMap;
 
     public SpritePathGenerator(
-        Program program, int maxPathLength, boolean includeStage, boolean includeDefaultSprites,
-        PathFormatOptions pathFormatOptions, ProgramRelationFactory programRelationFactory,
+        Program program, PathGenerationOptions options, ProgramRelationFactory programRelationFactory,
         ActorNameNormalizer actorNameNormalizer
     ) {
-        super(program, maxPathLength, includeStage, includeDefaultSprites, pathFormatOptions, programRelationFactory);
+        super(program, options, programRelationFactory);
 
         this.actorNameNormalizer = actorNameNormalizer;
         this.leavesMap = Collections.unmodifiableMap(extractASTLeaves());
     }
 
-    private Map<ActorDefinition, List<ASTNode>> extractASTLeaves() {
+    private Map<ActorDefinition, ExtractedLeaves> extractASTLeaves() {
         ExtractSpriteLeavesVisitor spriteVisitor = new ExtractSpriteLeavesVisitor(
             program.getProcedureMapping(), includeStage
         );
         program.accept(spriteVisitor);
-        return spriteVisitor.getLeaves();
+        return spriteVisitor.getExtractedLeaves();
     }
 
     @Override
-    public List<ProgramFeatures> generatePaths() {
-        final List<ProgramFeatures> spriteFeatures = new ArrayList<>();
-        for (final Map.Entry<ActorDefinition, List<ASTNode>> entry : leavesMap.entrySet()) {
-            final ActorDefinition actor = entry.getKey();
-            final List<ASTNode> leaves = entry.getValue();
-            final Optional<ProgramFeatures> singleSpriteFeatures = generatePathsForSprite(actor, leaves);
-            singleSpriteFeatures.filter(features -> !features.isEmpty()).ifPresent(spriteFeatures::add);
+    protected List<Part> parts() {
+        final List<Part> parts = new ArrayList<>();
+        for (final Map.Entry<ActorDefinition, ExtractedLeaves> entry : leavesMap.entrySet()) {
+            final ActorDefinition sprite = entry.getKey();
+            actorNameNormalizer.normalizeName(sprite)
+                .filter(name -> includeDefaultSprites || !NodeNameUtil.hasDefaultName(sprite))
+                .ifPresent(name -> parts.add(new Part(name, entry.getValue())));
         }
-        return spriteFeatures;
-    }
-
-    private Optional<ProgramFeatures> generatePathsForSprite(final ActorDefinition sprite, final List<ASTNode> leaves) {
-        final Optional<String> spriteName = actorNameNormalizer.normalizeName(sprite);
-        return spriteName
-            .filter(name -> includeDefaultSprites || !NodeNameUtil.hasDefaultName(sprite))
-            .map(name -> getProgramFeatures(name, leaves));
+        return parts;
     }
 
     @Override
     public Stream<ASTNode> getLeaves() {
-        return leavesMap.values().stream().flatMap(Collection::stream);
+        return leavesMap.values().stream().flatMap(group -> group.leaves().stream());
     }
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Detects collisions of {@link PathHash path hashes} during a run.
+ *
+ * <p>
+ * Remembers the check hash of each distinct path hash. Memory use is therefore proportional to the number of distinct
+ * paths. Can be shared by all worker threads.
+ *
+ * <p>
+ * Collisions are only counted while the paths are recorded, their total is reported once by {@link #logTotals()}.
+ */
+public final class PathHashCollisions {
+
+    private static final Logger log = Logger.getLogger(PathHashCollisions.class.getName());
+
+    private final Map<Long, Long> checksByValue = new ConcurrentHashMap<>();
+    private final LongAdder collisions = new LongAdder();
+
+    void record(final PathHash pathHash) {
+        final Long check = checksByValue.putIfAbsent(pathHash.value(), pathHash.check());
+        if (check != null && check != pathHash.check()) {
+            collisions.increment();
+        }
+    }
+
+    /**
+     * The number of paths whose hash collided with the one of a different path seen before.
+     *
+     * @return The number of collisions so far.
+     */
+    public long collisions() {
+        return collisions.sum();
+    }
+
+    /**
+     * The number of distinct path hashes.
+     *
+     * @return The number of distinct path hashes so far.
+     */
+    public long distinctPaths() {
+        return checksByValue.size();
+    }
+
+    /**
+     * Logs the totals, e.g. at the end of a run.
+     */
+    public void logTotals() {
+        final long total = collisions();
+        final String totals = total + " path hash collisions among " + distinctPaths() + " distinct paths.";
+        if (total > 0) {
+            log.warning(totals);
+        }
+        else {
+            log.info(totals);
+        }
+    }
+}
@@ -21,6 +21,8 @@
  */
 package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation;
 
+import java.io.IOException;
+
 public class ProgramRelation {
 
     private final String source;
@@ -52,8 +54,18 @@ public class ProgramRelation {
         return path;
     }
 
+    /**
+     * Writes the relation in the same format as {@link #toString()} without creating an intermediate string.
+     *
+     * @param out The output the relation is appended to.
+     * @throws IOException Thrown if the output cannot be written.
+     */
+    public void writeTo(final Appendable out) throws IOException {
+        out.append(source).append(',').append(path).append(',').append(target);
+    }
+
     @Override
     public String toString() {
-        return String.format("%s,%s,%s", source, path, target);
+        return source + ',' + path + ',' + target;
     }
 }
@@ -21,25 +21,94 @@
  */
 package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation;
 
+import java.util.Optional;
 import java.util.function.UnaryOperator;
 
 public final class ProgramRelationFactory {
 
     private final UnaryOperator<String> hasher;
+    private final boolean hashesPathNodes;
+    private final PathHashCollisions collisions;
 
     public ProgramRelationFactory() {
         this(UnaryOperator.identity());
     }
 
     public ProgramRelationFactory(final UnaryOperator<String> pathHasher) {
+        this(pathHasher, false, null);
+    }
+
+    private ProgramRelationFactory(
+        final UnaryOperator<String> pathHasher, final boolean hashesPathNodes, final PathHashCollisions collisions
+    ) {
         this.hasher = pathHasher;
+        this.hashesPathNodes = hashesPathNodes;
+        this.collisions = collisions;
     }
 
     public static ProgramRelationFactory withHashCodeFactory() {
         return new ProgramRelationFactory(s -> Integer.toString(s.hashCode()));
     }
 
+    /**
+     * Represents paths by a 64-bit hash that is computed from the path nodes without rendering the path first.
+     *
+     * @return A factory for relations that are built via {@link #build(String, String, PathHash)}.
+     */
+    public static ProgramRelationFactory withPathHash64() {
+        return new ProgramRelationFactory(UnaryOperator.identity(), true, null);
+    }
+
+    /**
+     * Represents paths by a 64-bit hash that is computed from the path nodes without rendering the path first.
+     *
+     * @param collisions Records the hashes of all paths to detect collisions.
+     * @return A factory for relations that are built via {@link #build(String, String, PathHash)}.
+     */
+    public static ProgramRelationFactory withPathHash64(final PathHashCollisions collisions) {
+        return new ProgramRelationFactory(UnaryOperator.identity(), true, collisions);
+    }
+
+    /**
+     * Checks if paths are represented by a {@link PathHash} instead of their string.
+     *
+     * @return True, if relations have to be built via {@link #build(String, String, PathHash)}.
+     */
+    public boolean hashesPathNodes() {
+        return hashesPathNodes;
+    }
+
+    /**
+     * The tracker of path hash collisions, if collisions are tracked.
+     *
+     * @return The tracker shared by all relations built by this factory.
+     */
+    public Optional<PathHashCollisions> collisions() {
+        return Optional.ofNullable(collisions);
+    }
+
     public ProgramRelation build(final String sourceName, final String targetName, final String path) {
+        if (hashesPathNodes) {
+            throw new IllegalStateException("Paths have to be hashed from their nodes.");
+        }
         return new ProgramRelation(sourceName, targetName, hasher.apply(path));
     }
+
+    /**
+     * Builds a relation whose path is represented by its hash.
+     *
+     * @param sourceName The terminal at the start of the path.
+     * @param targetName The terminal at the end of the path.
+     * @param pathHash   The hash of the path connecting the two terminals.
+     * @return The relation between the terminals.
+     */
+    public ProgramRelation build(final String sourceName, final String targetName, final PathHash pathHash) {
+        if (!hashesPathNodes) {
+            throw new IllegalStateException("Paths have to be passed as strings.");
+        }
+        if (collisions != null) {
+            collisions.record(pathHash);
+        }
+        return new ProgramRelation(sourceName, targetName, Long.toString(pathHash.value()));
+    }
 }
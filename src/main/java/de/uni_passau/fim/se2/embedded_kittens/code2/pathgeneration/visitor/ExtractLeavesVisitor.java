@@ -21,8 +21,8 @@
  */
 package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor;
 
-import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -38,8 +38,8 @@ abstract class ExtractLeavesVisitor<T extends ASTNode> implements ScratchVisitor
 
     private final ProcedureDefinitionNameMapping procedures;
 
-    protected Map<T, List<ASTNode>> leavesMap = new HashMap<>();
-    private List<ASTNode> leaves = new ArrayList<>();
+    private final Map<T, ExtractedLeaves> leavesMap = new HashMap<>();
+    private final ExtractedLeavesBuilder leaves = new ExtractedLeavesBuilder();
 
     protected ExtractLeavesVisitor(final ProcedureDefinitionNameMapping procedures) {
         this.procedures = procedures;
@@ -54,7 +54,7 @@ abstract class ExtractLeavesVisitor<T extends ASTNode> implements ScratchVisitor
      * @param leaf Some leaf of the AST.
      */
     protected void addLeaf(final ASTLeaf leaf) {
-        leaves.add(leaf);
+        leaves.addLeaf(leaf);
     }
 
     /**
@@ -63,16 +63,45 @@ abstract class ExtractLeavesVisitor<T extends ASTNode> implements ScratchVisitor
      * @param group Some AST node the leaves belong to.
      */
     protected void saveLeaves(final T group) {
-        leavesMap.put(group, leaves);
-        leaves = new ArrayList<>();
+        leavesMap.put(group, leaves.build());
+    }
+
+    /**
+     * Marks that the traversal descends into the given node without passing through
+     * {@link #visitChildren(ASTNode)}.
+     *
+     * <p>
+     * Has to be followed by a call to {@link #leaveNode()} once all children have been visited.
+     *
+     * @param node Some node whose children are visited next.
+     */
+    protected void enterNode(final ASTNode node) {
+        leaves.enter(node);
+    }
+
+    /**
+     * Marks that the traversal returns from the node entered last.
+     */
+    protected void leaveNode() {
+        leaves.leave();
+    }
+
+    @Override
+    public void visitChildren(final ASTNode node) {
+        enterNode(node);
+        ScratchVisitor.super.visitChildren(node);
+        leaveNode();
     }
 
     @Override
     public void visit(final ProcedureDefinition node) {
-        addLeaf(getProcedureName(node));
+        enterNode(node);
 
+        addLeaf(getProcedureName(node));
         node.getParameterDefinitionList().accept(this);
         node.getStmtList().accept(this);
+
+        leaveNode();
     }
 
     /**
@@ -96,6 +125,17 @@ abstract class ExtractLeavesVisitor<T extends ASTNode> implements ScratchVisitor
     }
 
     public Map<T, List<ASTNode>> getLeaves() {
+        final Map<T, List<ASTNode>> leavesPerGroup = new LinkedHashMap<>();
+        leavesMap.forEach((group, extracted) -> leavesPerGroup.put(group, extracted.leaves()));
+        return leavesPerGroup;
+    }
+
+    /**
+     * The leaves of each group together with their ancestors as recorded during the traversal.
+     *
+     * @return The extracted leaves of each group.
+     */
+    public Map<T, ExtractedLeaves> getExtractedLeaves() {
         return leavesMap;
     }
 }
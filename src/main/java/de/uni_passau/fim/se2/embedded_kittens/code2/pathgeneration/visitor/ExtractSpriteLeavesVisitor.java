@@ -47,8 +47,10 @@ public class ExtractSpriteLeavesVisitor extends ExtractLeavesVisitor<ActorDefini
 
         insideActor = true;
 
+        enterNode(node);
         node.getProcedureDefinitionList().accept(this);
         node.getScripts().accept(this);
+        leaveNode();
         saveLeaves(node);
 
         insideActor = false;
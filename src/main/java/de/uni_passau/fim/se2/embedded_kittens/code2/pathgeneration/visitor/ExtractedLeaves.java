@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.uni_passau.fim.se2.litterbox.ast.model.ASTNode;
+
+/**
+ * The leaves of a sprite, script, or program as collected in a single traversal of the AST.
+ *
+ * <p>
+ * Besides the leaves themselves, the traversal records the ancestors of each leaf as an array of node ids, from the
+ * leaf itself up to the root of the AST. The depth of a leaf is the length of this array minus one. Node ids are only
+ * valid within the same instance.
+ *
+ * <p>
+ * The ancestors are the nodes the traversal descended through to reach a leaf. Above the node the traversal started
+ * with, they are looked up once via {@link ASTNode#getParentNode()}.
+ */
+public final class ExtractedLeaves {
+
+    private final List<ASTNode> leaves;
+
+    private final ASTNode[] nodes;
+    private final int[][] ancestors;
+
+    /**
+     * The number of nodes at the end of each ancestor array that are ancestors of the whole group rather than part of
+     * it, e.g., the program and the list of actors for a sprite.
+     */
+    private final int sharedAncestors;
+
+    ExtractedLeaves(
+        final List<ASTNode> leaves, final ASTNode[] nodes, final int[][] ancestors, final int sharedAncestors
+    ) {
+        this.leaves = List.copyOf(leaves);
+        this.nodes = nodes;
+        this.ancestors = ancestors;
+        this.sharedAncestors = sharedAncestors;
+    }
+
+    /**
+     * Combines the leaves of multiple groups into one, keeping their order.
+     *
+     * <p>
+     * The ancestors the groups have in common are identified by the nodes the groups share, so that the leaves of
+     * different groups are connected via their common ancestors like in the AST.
+     *
+     * @param groups Some groups of leaves from the same AST. Apart from their shared ancestors, the groups must not
+     *               have nodes in common.
+     * @return All leaves of the groups.
+     */
+    public static ExtractedLeaves concat(final Collection<ExtractedLeaves> groups) {
+        if (groups.size() == 1) {
+            return groups.iterator().next();
+        }
+
+        final List<ASTNode> allLeaves = new ArrayList<>();
+        for (final ExtractedLeaves group : groups) {
+            allLeaves.addAll(group.leaves);
+        }
+
+        final List<ASTNode> nodes = new ArrayList<>();
+        final int[][] ancestors = new int[allLeaves.size()][];
+        final Map<ASTNode, Integer> sharedIds = new IdentityHashMap<>();
+
+        int leafOffset = 0;
+        for (final ExtractedLeaves group : groups) {
+            final int[] mergedIds = group.mergeNodes(nodes, sharedIds);
+            for (int leaf = 0; leaf < group.size(); leaf++) {
+                final int[] chain = group.ancestors[leaf].clone();
+                for (int k = 0; k < chain.length; k++) {
+                    chain[k] = mergedIds[chain[k]];
+                }
+                ancestors[leafOffset + leaf] = chain;
+            }
+            leafOffset += group.size();
+        }
+
+        return new ExtractedLeaves(
+            allLeaves, nodes.toArray(ASTNode[]::new), ancestors, commonSharedAncestors(ancestors)
+        );
+    }
+
+    /**
+     * Counts the nodes that all ancestor arrays end with.
+     */
+    private static int commonSharedAncestors(final int[][] ancestors) {
+        if (ancestors.length == 0) {
+            return 0;
+        }
+
+        int common = 0;
+        final int[] first = ancestors[0];
+        while (common < first.length) {
+            final int node = first[first.length - 1 - common];
+            for (final int[] chain : ancestors) {
+                if (chain.length <= common || chain[chain.length - 1 - common] != node) {
+                    return common;
+                }
+            }
+            common++;
+        }
+        return common;
+    }
+
+    /**
+     * Adds the nodes of this group to the combined nodes. Shared ancestors are added only once for all groups.
+     *
+     * @param mergedNodes The combined nodes of all groups so far.
+     * @param sharedIds   The ids of the shared ancestors in the combined nodes.
+     * @return The combined id of each node of this group.
+     */
+    private int[] mergeNodes(final List<ASTNode> mergedNodes, final Map<ASTNode, Integer> sharedIds) {
+        final int[] mergedIds = new int[nodes.length];
+        Arrays.fill(mergedIds, -1);
+
+        if (ancestors.length > 0) {
+            final int[] chain = ancestors[0];
+            for (int k = chain.length - sharedAncestors; k < chain.length; k++) {
+                final ASTNode node = nodes[chain[k]];
+                mergedIds[chain[k]] = sharedIds.computeIfAbsent(node, n -> add(mergedNodes, n));
+            }
+        }
+
+        for (int node = 0; node < nodes.length; node++) {
+            if (mergedIds[node] == -1) {
+                mergedIds[node] = add(mergedNodes, nodes[node]);
+            }
+        }
+
+        return mergedIds;
+    }
+
+    private static int add(final List<ASTNode> nodes, final ASTNode node) {
+        nodes.add(node);
+        return nodes.size() - 1;
+    }
+
+    public List<ASTNode> leaves() {
+        return leaves;
+    }
+
+    public int size() {
+        return leaves.size();
+    }
+
+    /**
+     * The number of nodes that are ancestors of at least one leaf, including the leaves themselves.
+     *
+     * @return The number of node ids.
+     */
+    public int nodeCount() {
+        return nodes.length;
+    }
+
+    public ASTNode node(final int nodeId) {
+        return nodes[nodeId];
+    }
+
+    /**
+     * The ancestors of a leaf.
+     *
+     * @param leaf The index of a leaf.
+     * @return The node ids from the leaf itself up to the root. Must not be modified.
+     */
+    public int[] ancestors(final int leaf) {
+        return ancestors[leaf];
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.uni_passau.fim.se2.litterbox.ast.model.ASTNode;
+
+/**
+ * Records the leaves found while descending through the AST together with the way down to them.
+ *
+ * <p>
+ * The traversal reports each node it descends into via {@link #enter(ASTNode)} and {@link #leave()}. The nodes on
+ * the way down to the current position form the path. A node on the path gets an id once the first leaf below it is
+ * added, so only the ancestors of leaves get ids. The ancestors of a leaf are then the ids of the current path in
+ * reverse order, without looking at the parent links of the nodes again.
+ *
+ * <p>
+ * If the traversal starts below the root, the path is initialised with the ancestors of the first entered node.
+ */
+final class ExtractedLeavesBuilder {
+
+    private static final int NO_ID = -1;
+    private static final int INITIAL_PATH_CAPACITY = 32;
+
+    private ASTNode[] path = new ASTNode[INITIAL_PATH_CAPACITY];
+
+    /**
+     * The id of each node on the path in the current group, {@link #NO_ID} if it has none yet.
+     */
+    private int[] pathIds = new int[INITIAL_PATH_CAPACITY];
+
+    private int depth;
+
+    /**
+     * The number of nodes at the start of the path that were not entered by the traversal, but are ancestors of the
+     * node the traversal started with.
+     */
+    private int seededDepth;
+
+    private List<ASTNode> leaves = new ArrayList<>();
+    private List<ASTNode> nodes = new ArrayList<>();
+    private List<int[]> ancestors = new ArrayList<>();
+
+    /**
+     * Descends into a node.
+     *
+     * @param node Some node whose children are visited next.
+     */
+    void enter(final ASTNode node) {
+        if (depth == seededDepth) {
+            seedPath(node);
+        }
+
+        push(node, NO_ID);
+    }
+
+    /**
+     * Returns from the node entered last.
+     */
+    void leave() {
+        depth--;
+    }
+
+    /**
+     * Adds a leaf to the current group.
+     *
+     * @param leaf Some leaf below the current path.
+     */
+    void addLeaf(final ASTNode leaf) {
+        if (depth == seededDepth) {
+            seedPath(leaf);
+        }
+
+        leaves.add(leaf);
+        ancestors.add(registerPath(leaf));
+    }
+
+    /**
+     * Finishes the current group and starts a new one.
+     *
+     * @return The leaves added since the last group was finished.
+     */
+    ExtractedLeaves build() {
+        final ExtractedLeaves group = new ExtractedLeaves(
+            leaves, nodes.toArray(ASTNode[]::new), ancestors.toArray(int[][]::new), depth
+        );
+
+        Arrays.fill(pathIds, 0, depth, NO_ID);
+        leaves = new ArrayList<>();
+        nodes = new ArrayList<>();
+        ancestors = new ArrayList<>();
+
+        return group;
+    }
+
+    /**
+     * Replaces the path with the ancestors of the node at which a traversal starts.
+     *
+     * <p>
+     * The nodes the new path shares with the previous one keep their ids in the current group.
+     *
+     * @param node The node the traversal starts with.
+     */
+    private void seedPath(final ASTNode node) {
+        final List<ASTNode> seed = new ArrayList<>();
+        for (ASTNode ancestor = node.getParentNode(); ancestor != null; ancestor = ancestor.getParentNode()) {
+            seed.add(ancestor);
+        }
+
+        final int previousDepth = depth;
+        boolean sharedPrefix = true;
+        depth = 0;
+        for (int i = seed.size() - 1; i >= 0; i--) {
+            final ASTNode ancestor = seed.get(i);
+            sharedPrefix = sharedPrefix && depth < previousDepth && path[depth] == ancestor;
+            if (sharedPrefix) {
+                push(ancestor, pathIds[depth]);
+            }
+            else {
+                push(ancestor, NO_ID);
+            }
+        }
+        seededDepth = depth;
+    }
+
+    private void push(final ASTNode node, final int id) {
+        if (depth == path.length) {
+            path = Arrays.copyOf(path, 2 * depth);
+            pathIds = Arrays.copyOf(pathIds, 2 * depth);
+        }
+
+        path[depth] = node;
+        pathIds[depth] = id;
+        depth++;
+    }
+
+    /**
+     * Assigns ids to the leaf and the nodes on the path that do not have one yet.
+     *
+     * @param leaf Some leaf below the path.
+     * @return The ids from the leaf up to the root.
+     */
+    private int[] registerPath(final ASTNode leaf) {
+        final int[] chain = new int[depth + 1];
+        chain[0] = register(leaf);
+
+        for (int k = 1; k <= depth; k++) {
+            final int position = depth - k;
+            if (pathIds[position] == NO_ID) {
+                pathIds[position] = register(path[position]);
+            }
+            chain[k] = pathIds[position];
+        }
+
+        return chain;
+    }
+
+    private int register(final ASTNode node) {
+        nodes.add(node);
+        return nodes.size() - 1;
+    }
+}
@@ -54,4 +54,9 @@ public class GgnnGraphPreprocessor extends MLFilePreprocessor<GgnnAnalyzerOutput
 
         return Path.of("GraphData_" + FilenameUtils.removeExtension(inputFile.getFileName().toString()) + format);
     }
+
+    @Override
+    protected String formatName() {
+        return "ggnn";
+    }
 }
@@ -41,4 +41,9 @@ public class WholeProgramFileProcessor<T> extends MLFilePreprocessor<WholeProgra
     protected Path outputFileName(final Path inputFile) {
         return Path.of(FilenameUtils.removeExtension(inputFile.getFileName().toString()) + ".jsonl");
     }
+
+    @Override
+    protected String formatName() {
+        return "whole-program";
+    }
 }
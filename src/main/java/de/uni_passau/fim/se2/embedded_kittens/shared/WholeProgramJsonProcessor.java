@@ -21,12 +21,14 @@
  */
 package de.uni_passau.fim.se2.embedded_kittens.shared;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.stream.Stream;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import de.uni_passau.fim.se2.embedded_kittens.MLOutputPath;
 import de.uni_passau.fim.se2.embedded_kittens.MLPreprocessorCommonOptions;
 import de.uni_passau.fim.se2.embedded_kittens.MLProgramPreprocessor;
 import de.uni_passau.fim.se2.litterbox.ast.model.Program;
@@ -57,6 +59,16 @@ public class WholeProgramJsonProcessor<T> extends MLProgramPreprocessor<WholePro
         }
     }
 
+    @Override
+    public void startRun() {
+        preprocessor.startRun();
+    }
+
+    @Override
+    public void finishRun(final MLOutputPath outputPath) throws IOException {
+        preprocessor.finishRun(outputPath);
+    }
+
     @Override
     public Stream<WholeProgramOutput<T>> processSprites(final Program program) {
         throw new UnsupportedOperationException("Can only process programs as a whole!");
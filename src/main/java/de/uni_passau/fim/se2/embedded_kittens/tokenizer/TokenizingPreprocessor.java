@@ -49,4 +49,9 @@ public class TokenizingPreprocessor extends MLFilePreprocessor<TokenSequence> {
     protected Path outputFileName(final Path inputFile) {
         return Path.of(FilenameUtils.removeExtension(inputFile.getFileName().toString()) + ".jsonl");
     }
+
+    @Override
+    protected String formatName() {
+        return "tokenizer";
+    }
 }
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+import de.uni_passau.fim.se2.litterbox.utils.Preconditions;
+
+/**
+ * A size-bounded cache for the results of the {@link StringUtil} normalisation methods.
+ *
+ * <p>
+ * The entries are keyed by token and delimiter and distributed over a fixed number of stripes. Each stripe is a
+ * least-recently-used map guarded by its own lock, so that worker threads normalising different tokens rarely wait
+ * for each other. The normalisation itself happens outside the lock. Therefore, two threads that miss the same token
+ * at the same time may both compute it, but only one result is kept.
+ *
+ * <p>
+ * Hits and misses are counted for the hit-rate metrics. When {@link #disabled() disabled}, nothing is stored and
+ * nothing is counted.
+ */
+public final class NormalisationCache {
+
+    private static final int MAX_STRIPES = 64;
+
+    /**
+     * Keep at least this many entries per stripe, so that small caches do not degenerate into one entry per stripe.
+     */
+    private static final int MIN_STRIPE_CAPACITY = 16;
+
+    private final int capacity;
+    private final Stripe[] stripes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private NormalisationCache(final int capacity, final int stripeCount) {
+        this.capacity = capacity;
+        this.stripes = new Stripe[stripeCount];
+
+        // distribute the capacity so that the stripes hold exactly capacity entries together
+        for (int i = 0; i < stripeCount; i++) {
+            int stripeCapacity = capacity / stripeCount;
+            if (i < capacity % stripeCount) {
+                stripeCapacity++;
+            }
+            stripes[i] = new Stripe(stripeCapacity);
+        }
+    }
+
+    /**
+     * A cache that stores nothing.
+     *
+     * @return A disabled cache.
+     */
+    public static NormalisationCache disabled() {
+        return new NormalisationCache(0, 0);
+    }
+
+    /**
+     * A cache that keeps up to the given number of normalised tokens.
+     *
+     * @param capacity The maximum number of cached tokens. Zero disables the cache.
+     * @return A new cache.
+     */
+    public static NormalisationCache withCapacity(final int capacity) {
+        Preconditions.checkArgument(capacity >= 0, "The cache capacity must not be negative.");
+
+        if (capacity == 0) {
+            return disabled();
+        }
+
+        int stripeCount = 1;
+        while (stripeCount < MAX_STRIPES && stripeCount * 2 * MIN_STRIPE_CAPACITY <= capacity) {
+            stripeCount *= 2;
+        }
+        return new NormalisationCache(capacity, stripeCount);
+    }
+
+    public boolean enabled() {
+        return capacity > 0;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * The number of currently cached tokens.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        int size = 0;
+        for (final Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * The share of lookups that were answered from the cache.
+     *
+     * @return The hit rate in {@code [0, 1]}. Zero, if there were no lookups yet.
+     */
+    public double hitRate() {
+        final long hitCount = hits.sum();
+        final long lookups = hitCount + misses.sum();
+        if (lookups == 0) {
+            return 0;
+        }
+        return (double) hitCount / lookups;
+    }
+
+    /**
+     * Returns the cached normalisation of the token, or computes and caches it.
+     *
+     * @param token      Some token.
+     * @param delimiter  The delimiter used for the normalisation.
+     * @param normaliser Computes the normalisation on a cache miss.
+     * @return The normalisation of the token.
+     */
+    Normalisation get(
+        final String token, final String delimiter, final BiFunction<String, String, Normalisation> normaliser
+    ) {
+        if (!enabled()) {
+            return normaliser.apply(token, delimiter);
+        }
+
+        final Key key = new Key(token, delimiter);
+        final Stripe stripe = stripes[stripeIndex(key)];
+
+        Normalisation normalisation;
+        synchronized (stripe) {
+            normalisation = stripe.get(key);
+        }
+        if (normalisation != null) {
+            hits.increment();
+            return normalisation;
+        }
+
+        misses.increment();
+        normalisation = normaliser.apply(token, delimiter);
+        synchronized (stripe) {
+            final Normalisation concurrentNormalisation = stripe.putIfAbsent(key, normalisation);
+            if (concurrentNormalisation != null) {
+                return concurrentNormalisation;
+            }
+        }
+        return normalisation;
+    }
+
+    private int stripeIndex(final Key key) {
+        final int hash = key.hashCode();
+        // spread the higher bits, since only the lowest ones select the stripe
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    /**
+     * The normalised form of a token.
+     *
+     * @param subtokens The normalised subtokens as in {@link StringUtil#splitToNormalisedSubtokens(String, String)}.
+     * @param string    The normalised string as in {@link StringUtil#normaliseString(String, String)}.
+     */
+    record Normalisation(List<String> subtokens, String string) {
+    }
+
+    private record Key(String token, String delimiter) {
+    }
+
+    /**
+     * A least-recently-used map. Not thread-safe, callers synchronise on the stripe.
+     */
+    private static final class Stripe {
+
+        private final int capacity;
+
+        /**
+         * Iterates from the least to the most recently used entry.
+         */
+        private final LinkedHashMap<Key, Normalisation> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        Stripe(final int capacity) {
+            this.capacity = capacity;
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        Normalisation get(final Key key) {
+            return entries.get(key);
+        }
+
+        Normalisation putIfAbsent(final Key key, final Normalisation normalisation) {
+            final Normalisation existing = entries.putIfAbsent(key, normalisation);
+            if (existing == null && entries.size() > capacity) {
+                final Iterator<Key> leastRecentlyUsed = entries.keySet().iterator();
+                leastRecentlyUsed.next();
+                leastRecentlyUsed.remove();
+            }
+            return existing;
+        }
+    }
+}
@@ -21,40 +21,40 @@
  */
 package de.uni_passau.fim.se2.embedded_kittens.util;
 
-import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.Stream;
 
-public class StringUtil {
+import de.uni_passau.fim.se2.litterbox.utils.Preconditions;
 
-    // Helpful documentation: https://en.wikipedia.org/wiki/Unicode_character_property
+/**
+ * Splits tokens into subtokens and normalises them.
+ *
+ * <p>
+ * A token is split between a digit and a non-digit, between a lowercase and an uppercase letter, before an
+ * uppercase letter that starts a capitalised word after other uppercase letters, and at whitespace, control
+ * characters, punctuation, and symbols. Question and exclamation marks start a new subtoken instead.
+ *
+ * <p>
+ * All operations scan the token once code point by code point. The results are identical to the original regular
+ * expression based implementation ({@link RegexStringUtil}) which is still used for delimiters that are not a single
+ * punctuation character or symbol.
+ *
+ * <p>
+ * Optionally, the normalised tokens are kept in a process-wide {@link NormalisationCache}.
+ */
+public class StringUtil {
 
-    /**
-     * Separators and other control characters.
-     */
-    private static final String SPACES = "[\\p{Z}\\p{C}]";
+    private static final int NO_CODE_POINT = -1;
 
-    /**
-     * Punctuations and symbols.
-     */
-    private static final String SPECIAL_WITHOUT_QUESTION_EXCLAMATION_MARK = "[\\p{P}\\p{S}&&[^?!]]";
+    private static final int NO_SPLIT = -1;
 
-    private static final Pattern SPLIT_PATTERN = Pattern.compile(
-        // digit followed by non-digit or other way round
-        "(?<=\\d)(?=\\D)|(?<=\\D)(?=\\d)"
-            // lowercase followed by uppercase
-            + "|(?<=\\p{Ll})(?=\\p{Lu})"
-            + "|" + SPECIAL_WITHOUT_QUESTION_EXCLAMATION_MARK
-            // uppercase, if followed by one uppercase and one lowercase letter
-            // i.e. do not split all-caps words
-            + "|(?<=\\p{Lu})(?=\\p{Lu}\\p{Ll})"
-            + "|" + SPACES
-    );
+    // the lowercase forms of these characters consist of multiple characters or depend on the context
+    private static final char CAPITAL_I_WITH_DOT = '\u0130';
+    private static final char CAPITAL_SIGMA = '\u03A3';
 
-    private static final Pattern PUNCTUATION_SPLIT_PATTERN = Pattern.compile("(?<=[^?!])(?=[?!])");
+    private static volatile NormalisationCache normalisationCache = NormalisationCache.disabled();
 
     private StringUtil() {
         throw new IllegalCallerException("utility class constructor");
@@ -64,18 +64,56 @@ public class StringUtil {
         return splitToSubtokenStream(token).toList();
     }
 
+    /**
+     * Replaces the process-wide cache of normalised tokens.
+     *
+     * <p>
+     * The cache is shared by all threads and used by {@link #normaliseString(String, String)},
+     * {@link #splitToNormalisedSubtokens(String, String)}, and {@link #splitToNormalisedSubtokenStream(String, String)}.
+     * By default, it is {@link NormalisationCache#disabled() disabled}.
+     *
+     * @param cache The cache that should be used from now on.
+     */
+    public static void setNormalisationCache(final NormalisationCache cache) {
+        Preconditions.checkNotNull(cache);
+        normalisationCache = cache;
+    }
+
+    public static NormalisationCache getNormalisationCache() {
+        return normalisationCache;
+    }
+
     public static List<String> splitToNormalisedSubtokens(final String token, final String delimiter) {
-        return splitToNormalisedSubtokenStream(token, delimiter).toList();
+        final NormalisationCache cache = normalisationCache;
+        if (cache.enabled()) {
+            return cache.get(token, delimiter, StringUtil::normalise).subtokens();
+        }
+        return normalisedSubtokenStream(token, delimiter).toList();
     }
 
     public static Stream<String> splitToNormalisedSubtokenStream(final String token, final String delimiter) {
-        return splitToSubtokenStream(token)
-            .map(subtoken -> StringUtil.normaliseSubtoken(subtoken, delimiter))
-            .filter(s -> !s.isEmpty() && !isOnlyDelimiter(s, delimiter));
+        final NormalisationCache cache = normalisationCache;
+        if (cache.enabled()) {
+            return cache.get(token, delimiter, StringUtil::normalise).subtokens().stream();
+        }
+        return normalisedSubtokenStream(token, delimiter);
     }
 
-    private static boolean isOnlyDelimiter(final String token, final String delimiter) {
-        return token.matches(Pattern.quote(delimiter) + "+");
+    private static Stream<String> normalisedSubtokenStream(final String token, final String delimiter) {
+        if (!isSupportedDelimiter(delimiter)) {
+            return RegexStringUtil.splitToNormalisedSubtokenStream(token, delimiter);
+        }
+
+        final char delimiterChar = delimiter.charAt(0);
+        final Stream.Builder<String> subtokens = Stream.builder();
+        final StringBuilder subtoken = new StringBuilder();
+        forEachSubtoken(token, (start, end) -> {
+            subtoken.setLength(0);
+            if (appendNormalised(token, start, end, delimiterChar, false, subtoken)) {
+                subtokens.add(subtoken.toString());
+            }
+        });
+        return subtokens.build();
     }
 
     /**
@@ -85,12 +123,9 @@ public class StringUtil {
      * @return A sequence of subtokens.
      */
     public static Stream<String> splitToSubtokenStream(final String token) {
-        final String[] split = SPLIT_PATTERN.split(token.trim());
-        return Stream.of(split)
-            .map(String::trim)
-            .filter(s -> !s.isEmpty())
-            .flatMap(s -> Arrays.stream(PUNCTUATION_SPLIT_PATTERN.split(s)))
-            .filter(s -> !s.isEmpty());
+        final Stream.Builder<String> subtokens = Stream.builder();
+        forEachSubtoken(token, (start, end) -> subtokens.add(token.substring(start, end)));
+        return subtokens.build();
     }
 
     /**
@@ -119,9 +154,37 @@ public class StringUtil {
      * @return The normalised string.
      */
     public static String normaliseString(final String token, final String delimiter) {
-        return splitToNormalisedSubtokenStream(token, delimiter)
-            .collect(Collectors.joining(delimiter))
-            .replaceAll(Pattern.quote(delimiter) + "+", delimiter);
+        final NormalisationCache cache = normalisationCache;
+        if (cache.enabled()) {
+            return cache.get(token, delimiter, StringUtil::normalise).string();
+        }
+        return normaliseStringUncached(token, delimiter);
+    }
+
+    private static String normaliseStringUncached(final String token, final String delimiter) {
+        if (!isSupportedDelimiter(delimiter)) {
+            return RegexStringUtil.normaliseString(token, delimiter);
+        }
+
+        final char delimiterChar = delimiter.charAt(0);
+        final StringBuilder result = new StringBuilder(token.length());
+        forEachSubtoken(
+            token, (start, end) -> appendNormalised(token, start, end, delimiterChar, !result.isEmpty(), result)
+        );
+        return result.toString();
+    }
+
+    /**
+     * Computes the cached forms of a token: the subtokens once and the joined string from them.
+     */
+    private static NormalisationCache.Normalisation normalise(final String token, final String delimiter) {
+        final List<String> subtokens = normalisedSubtokenStream(token, delimiter).toList();
+        if (isSupportedDelimiter(delimiter)) {
+            return new NormalisationCache.Normalisation(subtokens, String.join(delimiter, subtokens));
+        }
+        else {
+            return new NormalisationCache.Normalisation(subtokens, normaliseStringUncached(token, delimiter));
+        }
     }
 
     /**
@@ -141,16 +204,317 @@ public class StringUtil {
      * @return The input string in its normalised form.
      */
     public static String normaliseSubtoken(final String s, final String delimiter) {
-        final String quotedDelimiter = Pattern.quote(delimiter);
-
-        return s.trim()
-            .toLowerCase(Locale.ROOT)
-            .replaceAll(SPACES + "+", delimiter)
-            .replaceAll(SPECIAL_WITHOUT_QUESTION_EXCLAMATION_MARK + "+", delimiter)
-            // remove repeated delimiter to remove empty subtokens
-            .replaceAll(quotedDelimiter + "+", delimiter)
-            // remove delimiter from start/end to remove empty leading/trailing subtokens
-            .replaceAll("^" + quotedDelimiter, "")
-            .replaceAll(quotedDelimiter + "$", "");
+        if (!isSupportedDelimiter(delimiter)) {
+            return RegexStringUtil.normaliseSubtoken(s, delimiter);
+        }
+
+        final StringBuilder result = new StringBuilder(s.length());
+        appendNormalised(s, 0, s.length(), delimiter.charAt(0), false, result);
+        return result.toString();
+    }
+
+    /**
+     * Only a single punctuation character or symbol cannot be part of a normalised subtoken, which allows replacing
+     * whitespace, punctuation and the delimiter itself in one step.
+     *
+     * @param delimiter Some delimiter.
+     * @return If the regular expression free implementation produces the same results for this delimiter.
+     */
+    private static boolean isSupportedDelimiter(final String delimiter) {
+        return delimiter.length() == 1 && isSpecial(delimiter.charAt(0));
+    }
+
+    @FunctionalInterface
+    private interface SubtokenConsumer {
+        void accept(int start, int end);
+    }
+
+    /**
+     * Finds the subtokens of the trimmed token.
+     *
+     * <p>
+     * Like a regular expression matcher, the split positions are searched code point by code point, but after an
+     * empty split the search continues at the next char.
+     *
+     * @param token    Some token.
+     * @param consumer Receives the non-empty subtokens as ranges in the token.
+     */
+    private static void forEachSubtoken(final String token, final SubtokenConsumer consumer) {
+        final int from = trimStart(token, 0, token.length());
+        final int to = trimEnd(token, from, token.length());
+
+        int partStart = from;
+        int position = from;
+        while (position < to) {
+            final int splitLength = splitLength(token, from, to, position);
+            if (splitLength == NO_SPLIT) {
+                position += Character.charCount(codePointAt(token, position, to));
+            }
+            else {
+                forEachPunctuationSubtoken(token, partStart, position, consumer);
+                partStart = position + splitLength;
+                position = partStart;
+                if (splitLength == 0) {
+                    position++;
+                }
+            }
+        }
+        forEachPunctuationSubtoken(token, partStart, to, consumer);
+    }
+
+    /**
+     * Splits a part of the token before each run of question or exclamation marks.
+     *
+     * @param token    Some token.
+     * @param start    The inclusive start of the part.
+     * @param end      The exclusive end of the part.
+     * @param consumer Receives the non-empty subtokens as ranges in the token.
+     */
+    private static void forEachPunctuationSubtoken(
+        final String token, final int start, final int end, final SubtokenConsumer consumer
+    ) {
+        final int from = trimStart(token, start, end);
+        final int to = trimEnd(token, from, end);
+        if (from == to) {
+            return;
+        }
+
+        int subtokenStart = from;
+        for (int i = from + 1; i < to; ++i) {
+            if (isQuestionOrExclamationMark(token.charAt(i)) && !isQuestionOrExclamationMark(token.charAt(i - 1))) {
+                consumer.accept(subtokenStart, i);
+                subtokenStart = i;
+            }
+        }
+        consumer.accept(subtokenStart, to);
+    }
+
+    /**
+     * Checks if the token should be split at the given position.
+     *
+     * <p>
+     * The checks happen in the same order as the alternatives of the original split pattern
+     * {@code (?<=\d)(?=\D)|(?<=\D)(?=\d)|(?<=\p{Ll})(?=\p{Lu})|SPECIAL|(?<=\p{Lu})(?=\p{Lu}\p{Ll})|SPACES}.
+     *
+     * @param token    Some token.
+     * @param from     The start of the searched region.
+     * @param to       The end of the searched region.
+     * @param position Some position in {@code [from, to)}.
+     * @return The number of chars that are removed at the split position, or {@link #NO_SPLIT}.
+     */
+    private static int splitLength(final String token, final int from, final int to, final int position) {
+        final int previous = charBefore(token, from, to, position);
+        final int next = codePointAt(token, position, to);
+        final int nextLength = Character.charCount(next);
+        final int afterNext = position + nextLength;
+
+        if (previous != NO_CODE_POINT && isCaseOrDigitBoundary(previous, next)) {
+            return 0;
+        }
+        else if (isSpecial(next)) {
+            return nextLength;
+        }
+        else if (previous != NO_CODE_POINT && isCapitalisedWordStart(token, to, previous, next, afterNext)) {
+            return 0;
+        }
+        else if (isSpace(next)) {
+            return nextLength;
+        }
+        else {
+            return NO_SPLIT;
+        }
+    }
+
+    private static boolean isCaseOrDigitBoundary(final int previous, final int next) {
+        return isDigit(previous) != isDigit(next) || isLowerCase(previous) && isUpperCase(next);
+    }
+
+    private static boolean isCapitalisedWordStart(
+        final String token, final int to, final int previous, final int next, final int afterNext
+    ) {
+        return isUpperCase(previous) && isUpperCase(next)
+            && afterNext < to && isLowerCase(codePointAt(token, afterNext, to));
+    }
+
+    /**
+     * The character a single character lookbehind sees at the given position.
+     *
+     * <p>
+     * The low surrogate of a pair is seen on its own, and there is no character before a position in the middle of a
+     * surrogate pair.
+     *
+     * @param s        Some string.
+     * @param from     The start of the searched region.
+     * @param to       The end of the searched region.
+     * @param position Some position in {@code [from, to)}.
+     * @return The character before the position, or {@link #NO_CODE_POINT}.
+     */
+    private static int charBefore(final String s, final int from, final int to, final int position) {
+        if (position == from) {
+            return NO_CODE_POINT;
+        }
+
+        final char previous = s.charAt(position - 1);
+        if (Character.isHighSurrogate(previous) && position < to && Character.isLowSurrogate(s.charAt(position))) {
+            return NO_CODE_POINT;
+        }
+        return previous;
+    }
+
+    /**
+     * Appends the normalised form of the range in the string to the builder.
+     *
+     * @param s         Some string.
+     * @param start     The inclusive start of the range.
+     * @param end       The exclusive end of the range.
+     * @param delimiter The delimiter.
+     * @param separate  Appends a delimiter before the normalised form if it is not empty.
+     * @param result    The normalised form is appended to this builder.
+     * @return True, if the normalised form is not empty.
+     */
+    private static boolean appendNormalised(
+        final String s, final int start, final int end, final char delimiter, final boolean separate,
+        final StringBuilder result
+    ) {
+        final int from = trimStart(s, start, end);
+        final int to = trimEnd(s, from, end);
+        final int resultLength = result.length();
+
+        if (appendNormalised(s, from, to, delimiter, separate, Character::toLowerCase, result)) {
+            return result.length() > resultLength;
+        }
+
+        // the lowercase form of some characters depends on the context: fall back to the library implementation
+        result.setLength(resultLength);
+        final String lowerCase = s.substring(from, to).toLowerCase(Locale.ROOT);
+        appendNormalised(lowerCase, 0, lowerCase.length(), delimiter, separate, IntUnaryOperator.identity(), result);
+        return result.length() > resultLength;
+    }
+
+    /**
+     * Appends the case-mapped code points of the range and replaces each run of whitespace, punctuation and symbols
+     * with a single delimiter. Runs at the start and end of the range are removed.
+     *
+     * @return False, if the range contains a character that cannot be case-mapped on its own.
+     */
+    private static boolean appendNormalised(
+        final String s, final int from, final int to, final char delimiter, final boolean separate,
+        final IntUnaryOperator caseMapping, final StringBuilder result
+    ) {
+        boolean empty = true;
+        boolean pendingDelimiter = separate;
+
+        int i = from;
+        while (i < to) {
+            final int codePoint = codePointAt(s, i, to);
+            i += Character.charCount(codePoint);
+
+            if (codePoint == CAPITAL_I_WITH_DOT || codePoint == CAPITAL_SIGMA) {
+                return false;
+            }
+
+            final int mapped = caseMapping.applyAsInt(codePoint);
+            if (!isSpace(mapped) && !isSpecial(mapped)) {
+                if (pendingDelimiter) {
+                    result.append(delimiter);
+                    pendingDelimiter = false;
+                }
+                result.appendCodePoint(mapped);
+                empty = false;
+            }
+            else if (!empty) {
+                pendingDelimiter = true;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Like {@link Character#codePointAt(CharSequence, int)}, but a surrogate pair must end before the limit.
+     */
+    private static int codePointAt(final String s, final int index, final int limit) {
+        final char c = s.charAt(index);
+        if (Character.isHighSurrogate(c) && index + 1 < limit) {
+            final char low = s.charAt(index + 1);
+            if (Character.isLowSurrogate(low)) {
+                return Character.toCodePoint(c, low);
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Skips the characters removed by {@link String#trim()}.
+     */
+    private static int trimStart(final String s, final int start, final int end) {
+        int i = start;
+        while (i < end && s.charAt(i) <= ' ') {
+            ++i;
+        }
+        return i;
+    }
+
+    /**
+     * Skips the characters removed by {@link String#trim()}.
+     */
+    private static int trimEnd(final String s, final int start, final int end) {
+        int i = end;
+        while (i > start && s.charAt(i - 1) <= ' ') {
+            --i;
+        }
+        return i;
+    }
+
+    private static boolean isQuestionOrExclamationMark(final int codePoint) {
+        return codePoint == '?' || codePoint == '!';
+    }
+
+    private static boolean isDigit(final int codePoint) {
+        return codePoint >= '0' && codePoint <= '9';
+    }
+
+    private static boolean isLowerCase(final int codePoint) {
+        return Character.getType(codePoint) == Character.LOWERCASE_LETTER;
+    }
+
+    private static boolean isUpperCase(final int codePoint) {
+        return Character.getType(codePoint) == Character.UPPERCASE_LETTER;
+    }
+
+    /**
+     * Separators and other control characters.
+     *
+     * @param codePoint Some code point.
+     * @return If the code point belongs to the Unicode categories {@code Z} or {@code C}.
+     */
+    private static boolean isSpace(final int codePoint) {
+        return switch (Character.getType(codePoint)) {
+            case Character.SPACE_SEPARATOR, Character.LINE_SEPARATOR, Character.PARAGRAPH_SEPARATOR,
+                Character.CONTROL, Character.FORMAT, Character.PRIVATE_USE, Character.SURROGATE,
+                Character.UNASSIGNED -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * Punctuations and symbols.
+     *
+     * @param codePoint Some code point.
+     * @return If the code point belongs to the Unicode categories {@code P} or {@code S}, but is neither a question
+     *         nor an exclamation mark.
+     */
+    private static boolean isSpecial(final int codePoint) {
+        if (isQuestionOrExclamationMark(codePoint)) {
+            return false;
+        }
+
+        return switch (Character.getType(codePoint)) {
+            case Character.CONNECTOR_PUNCTUATION, Character.DASH_PUNCTUATION, Character.START_PUNCTUATION,
+                Character.END_PUNCTUATION, Character.INITIAL_QUOTE_PUNCTUATION, Character.FINAL_QUOTE_PUNCTUATION,
+                Character.OTHER_PUNCTUATION, Character.MATH_SYMBOL, Character.CURRENCY_SYMBOL,
+                Character.MODIFIER_SYMBOL, Character.OTHER_SYMBOL -> true;
+            default -> false;
+        };
     }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MultiIntegrationTest extends CliTest {
+
+    @Test
+    void generateMultipleFormatsFromSingleParse(@TempDir Path tempDir) throws IOException {
+        commandLine.execute(
+            "multi", "-p", "src/test/fixtures/multipleSprites.json", "--include-stage", "-o", tempDir.toString(),
+            "--formats", "code2vec,astnn"
+        );
+
+        final Path code2vecOutput = tempDir.resolve("code2vec").resolve("multipleSprites.txt");
+        final List<String> code2vecLines = Files.readAllLines(code2vecOutput);
+        assertThat(code2vecLines).containsExactly(
+            "cat 39,625791294,hi_! 39,1493538624,Show hi_!,-547448667,Show",
+            "abby GreenFlag,-2069003229,hello_!",
+            "stage GreenFlag,1809747443,10"
+        );
+        assertThat(Files.exists(tempDir.resolve("astnn").resolve("multipleSprites.jsonl"))).isTrue();
+        assertThat(Files.exists(tempDir.resolve("ggnn"))).isFalse();
+    }
+
+    @Test
+    void rejectDuplicateFormats(@TempDir Path tempDir) {
+        final int exitCode = commandLine.execute(
+            "multi", "-p", "src/test/fixtures/multipleSprites.json", "-o", tempDir.toString(),
+            "--formats", "astnn,astnn"
+        );
+
+        assertThat(exitCode).isNotEqualTo(0);
+    }
+
+    @Test
+    void requireOutputDirectory() {
+        final int exitCode = commandLine.execute("multi", "-p", "src/test/fixtures/multipleSprites.json");
+
+        assertThat(exitCode).isNotEqualTo(0);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class OutputCompressionTest {
+
+    @ParameterizedTest
+    @EnumSource(CompressionCodec.class)
+    void compressedDataCanBeRestored(final CompressionCodec codec) throws IOException {
+        final byte[] data = "some 42 redundant 42 text\n".repeat(20_000).getBytes(StandardCharsets.UTF_8);
+        final OutputCompression compression = new OutputCompression(codec, codec.defaultLevel());
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = compression.compress(compressed)) {
+            // mix single bytes and arrays that span several chunks
+            out.write(data[0]);
+            out.write(data, 1, data.length - 1);
+        }
+
+        assertThat(decompress(codec, compressed.toByteArray())).isEqualTo(data);
+        if (codec.enabled()) {
+            assertThat(compressed.size()).isLessThan(data.length / 10);
+        }
+    }
+
+    @Test
+    void rejectInvalidLevel() {
+        assertThrows(IllegalArgumentException.class, () -> new OutputCompression(CompressionCodec.GZIP, 10));
+    }
+
+    @Test
+    void failingCompressorDoesNotBlockTheWriter() {
+        final OutputStream brokenCompressor = new OutputStream() {
+            @Override
+            public void write(final int b) {
+                throw new AssertionError("broken compressor");
+            }
+        };
+        final byte[] data = new byte[1024 * 1024];
+
+        final IOException e = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(
+            IOException.class, () -> {
+                try (OutputStream out = new AsyncCompressionOutputStream(brokenCompressor)) {
+                    out.write(data);
+                }
+            }
+        ));
+        assertThat(e).hasCauseThat().isInstanceOf(AssertionError.class);
+    }
+
+    private static byte[] decompress(final CompressionCodec codec, final byte[] compressed) throws IOException {
+        final InputStream in = new ByteArrayInputStream(compressed);
+        return switch (codec) {
+            case NONE -> in.readAllBytes();
+            case GZIP -> new GZIPInputStream(in).readAllBytes();
+        };
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import de.uni_passau.fim.se2.embedded_kittens.util.NormalisationCache;
+import de.uni_passau.fim.se2.embedded_kittens.util.StringUtil;
+
+class PipelineMetricsTest {
+
+    @Test
+    void histogramBucketsArePowersOfTwo() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1);
+        histogram.record(1024);
+        histogram.record(1025);
+        histogram.record(3000);
+
+        assertThat(histogram.count()).isEqualTo(4);
+        assertThat(histogram.sumNanos()).isEqualTo(1 + 1024 + 1025 + 3000);
+        assertThat(LatencyHistogram.upperBoundNanos(0)).isEqualTo(1024);
+        assertThat(histogram.cumulativeCount(0)).isEqualTo(2);
+        assertThat(histogram.cumulativeCount(1)).isEqualTo(3);
+        assertThat(histogram.cumulativeCount(2)).isEqualTo(4);
+    }
+
+    @Test
+    void histogramQuantiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(1000);
+        }
+        histogram.record(1_000_000);
+
+        assertThat(histogram.quantileNanos(0.5)).isEqualTo(1024);
+        assertThat(histogram.quantileNanos(0.99)).isEqualTo(1024);
+        assertThat(histogram.quantileNanos(1.0)).isAtLeast(1_000_000);
+    }
+
+    @Test
+    void disabledMetricsRecordNothing() {
+        final PipelineMetrics metrics = PipelineMetrics.disabled();
+        assertThat(metrics.startTimer()).isEqualTo(0);
+        assertThat(metrics.elapsedSince(0)).isEqualTo(0);
+
+        metrics.recordStage("code2vec", PipelineMetrics.Stage.WRITE, 100);
+        assertThat(metrics.toPrometheus()).doesNotContain("code2vec");
+    }
+
+    @Test
+    void writeMetricsFilesOnClose(@TempDir Path output) throws IOException {
+        final PipelineMetrics metrics = PipelineMetrics.start(Duration.ofHours(1), List.of(output));
+        metrics.recordInput(Path.of("a.sb3"), 200);
+        metrics.recordInput(Path.of("b.sb3"), 100);
+        metrics.recordStage(PipelineMetrics.ALL_FORMATS, PipelineMetrics.Stage.PARSE, 2000);
+        metrics.recordStage("code2vec", PipelineMetrics.Stage.SERIALIZE, 500);
+        metrics.recordOutputBytes(42);
+        metrics.recordFailure(PipelineMetrics.PARSE_ERROR);
+        metrics.close();
+
+        final JsonNode json = new ObjectMapper().readTree(output.resolve(PipelineMetrics.JSON_FILE_NAME).toFile());
+        assertThat(json.get("inputs").asLong()).isEqualTo(2);
+        assertThat(json.get("outputBytes").asLong()).isEqualTo(42);
+        assertThat(json.get("failures").get(PipelineMetrics.PARSE_ERROR).asLong()).isEqualTo(1);
+        assertThat(json.get("stages").get("all/parse").get("count").asLong()).isEqualTo(1);
+        assertThat(json.get("largestInputs").get(0).get("input").asText()).isEqualTo("a.sb3");
+
+        final String prometheus = Files.readString(output.resolve(PipelineMetrics.PROMETHEUS_FILE_NAME));
+        assertThat(prometheus).contains("embedded_kittens_inputs_total 2\n");
+        assertThat(prometheus).contains(
+            "embedded_kittens_stage_seconds_count{format=\"code2vec\",stage=\"serialize\"} 1"
+        );
+        assertThat(prometheus).contains(
+            "embedded_kittens_stage_seconds_bucket{format=\"all\",stage=\"parse\",le=\"+Inf\"} 1"
+        );
+        assertThat(json.has("normalisationCache")).isFalse();
+    }
+
+    @Test
+    void reportNormalisationCacheHitRate() throws IOException {
+        final NormalisationCache cache = NormalisationCache.withCapacity(10);
+        StringUtil.setNormalisationCache(cache);
+        try {
+            StringUtil.normaliseString("my variable");
+            StringUtil.normaliseString("my variable");
+
+            final PipelineMetrics metrics = PipelineMetrics.start(Duration.ofHours(1), List.of());
+            final JsonNode json = new ObjectMapper().readTree(metrics.toJson()).get("normalisationCache");
+            metrics.close();
+
+            assertThat(json.get("hits").asLong()).isEqualTo(1);
+            assertThat(json.get("misses").asLong()).isEqualTo(1);
+            assertThat(json.get("entries").asLong()).isEqualTo(1);
+            assertThat(json.get("hitRate").asDouble()).isWithin(1e-9).of(0.5);
+            assertThat(metrics.toPrometheus()).contains("embedded_kittens_normalisation_cache_hits_total 1\n");
+            assertThat(metrics.summary()).contains("normalisation cache hit rate 50.0%");
+        }
+        finally {
+            StringUtil.setNormalisationCache(NormalisationCache.disabled());
+        }
+    }
+}
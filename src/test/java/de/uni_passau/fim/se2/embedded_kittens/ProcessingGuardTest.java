@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+
+class ProcessingGuardTest {
+
+    @Test
+    void noLimitsWithoutActiveGuard() {
+        assertThat(ProcessingGuard.exceedsLeafLimit("sprite", Integer.MAX_VALUE)).isFalse();
+        assertDoesNotThrow(ProcessingGuard::checkDeadline);
+    }
+
+    @Test
+    void recordPartsExceedingLeafLimit() {
+        final ProcessingGuard guard = ProcessingGuard.activate(new ProcessingLimits(Duration.ZERO, 2));
+        try {
+            assertThat(ProcessingGuard.exceedsLeafLimit("small", 2)).isFalse();
+            assertThat(ProcessingGuard.exceedsLeafLimit("large", 3)).isTrue();
+            assertThat(guard.skippedParts()).containsExactly("Skipped 'large' with 3 leaves (limit: 2).");
+        }
+        finally {
+            guard.deactivate();
+        }
+
+        assertThat(ProcessingGuard.exceedsLeafLimit("large", 3)).isFalse();
+    }
+
+    @Test
+    void abortAfterDeadline() throws InterruptedException {
+        final ProcessingGuard guard = ProcessingGuard.activate(new ProcessingLimits(Duration.ofNanos(1), 0));
+        try {
+            Thread.sleep(1);
+            assertThrows(ProcessingTimeoutException.class, ProcessingGuard::checkDeadline);
+        }
+        finally {
+            guard.deactivate();
+        }
+    }
+
+    @Test
+    void propagateLimitsToOtherThreads() {
+        final ProcessingGuard guard = ProcessingGuard.activate(new ProcessingLimits(Duration.ZERO, 2));
+        final Supplier<Boolean> task;
+        try {
+            task = ProcessingGuard.propagate(() -> ProcessingGuard.exceedsLeafLimit("large", 3));
+        }
+        finally {
+            guard.deactivate();
+        }
+
+        assertThat(CompletableFuture.supplyAsync(task).join()).isTrue();
+        assertThat(guard.skippedParts()).containsExactly("Skipped 'large' with 3 leaves (limit: 2).");
+        assertThat(CompletableFuture.supplyAsync(() -> ProcessingGuard.exceedsLeafLimit("large", 3)).join())
+            .isFalse();
+    }
+}
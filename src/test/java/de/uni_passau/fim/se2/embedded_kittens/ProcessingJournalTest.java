@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProcessingJournalTest {
+
+    private static final Path INPUT = Path.of("a", "program.json");
+
+    @Test
+    void completedEntriesSurviveReopening(@TempDir Path outputDir) throws IOException {
+        try (ProcessingJournal journal = ProcessingJournal.open(outputDir)) {
+            journal.record(INPUT, "hash", ProcessingJournal.Status.STARTED);
+            assertThat(journal.isCompleted(INPUT, "hash")).isFalse();
+
+            journal.record(INPUT, "hash", ProcessingJournal.Status.DONE);
+            assertThat(journal.isCompleted(INPUT, "hash")).isTrue();
+        }
+
+        try (ProcessingJournal journal = ProcessingJournal.open(outputDir)) {
+            assertThat(journal.isCompleted(INPUT, "hash")).isTrue();
+            assertThat(journal.isCompleted(INPUT, "otherHash")).isFalse();
+            assertThat(journal.isCompleted(Path.of("other.json"), "hash")).isFalse();
+        }
+    }
+
+    @Test
+    void laterEntriesOverrideEarlierOnes(@TempDir Path outputDir) throws IOException {
+        try (ProcessingJournal journal = ProcessingJournal.open(outputDir)) {
+            journal.record(INPUT, "hash", ProcessingJournal.Status.DONE);
+            journal.record(INPUT, "hash", ProcessingJournal.Status.STARTED);
+        }
+
+        try (ProcessingJournal journal = ProcessingJournal.open(outputDir)) {
+            assertThat(journal.isCompleted(INPUT, "hash")).isFalse();
+        }
+    }
+
+    @Test
+    void ignoreIncompleteLastLine(@TempDir Path outputDir) throws IOException {
+        try (ProcessingJournal journal = ProcessingJournal.open(outputDir)) {
+            journal.record(INPUT, "hash", ProcessingJournal.Status.DONE);
+        }
+        Files.writeString(
+            outputDir.resolve(ProcessingJournal.JOURNAL_FILE_NAME), "DONE\tha", StandardCharsets.UTF_8,
+            StandardOpenOption.APPEND
+        );
+
+        try (ProcessingJournal journal = ProcessingJournal.open(outputDir)) {
+            assertThat(journal.isCompleted(INPUT, "hash")).isTrue();
+        }
+    }
+
+    @Test
+    void ignoreLastLineWithoutLineBreak(@TempDir Path outputDir) throws IOException {
+        final Path other = Path.of("other.json");
+        Files.writeString(
+            outputDir.resolve(ProcessingJournal.JOURNAL_FILE_NAME), "DONE\thash\t" + INPUT, StandardCharsets.UTF_8
+        );
+
+        try (ProcessingJournal journal = ProcessingJournal.open(outputDir)) {
+            assertThat(journal.isCompleted(INPUT, "hash")).isFalse();
+            journal.record(other, "hash", ProcessingJournal.Status.DONE);
+        }
+
+        try (ProcessingJournal journal = ProcessingJournal.open(outputDir)) {
+            assertThat(journal.isCompleted(INPUT, "hash")).isFalse();
+            assertThat(journal.isCompleted(other, "hash")).isTrue();
+        }
+    }
+}
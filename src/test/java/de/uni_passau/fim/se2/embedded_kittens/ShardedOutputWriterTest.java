@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ShardedOutputWriterTest {
+
+    @Test
+    void indexPointsToOutputOfEachInput(@TempDir Path outputDir) throws IOException {
+        try (ShardedOutputWriter writer = newWriter(outputDir, ShardLimits.disabled())) {
+            writer.write(Path.of("a.json"), output("first", "äöü"));
+            writer.write(Path.of("b", "c.json"), output("second"));
+        }
+
+        final Path shard = outputDir.resolve("test-00000.txt");
+        final byte[] content = Files.readAllBytes(shard);
+        final List<String> index = Files.readAllLines(outputDir.resolve("test-00000.txt.index"));
+
+        assertThat(index).hasSize(2);
+        assertThat(readIndexed(content, index.get(0))).isEqualTo(lines("first", "äöü"));
+        assertThat(readIndexed(content, index.get(1))).isEqualTo(lines("second"));
+        assertThat(index.get(1)).endsWith("\t" + Path.of("b", "c.json"));
+    }
+
+    @Test
+    void startNewShardWhenLimitIsReached(@TempDir Path outputDir) throws IOException {
+        try (ShardedOutputWriter writer = newWriter(outputDir, new ShardLimits(0, 2))) {
+            writer.write(Path.of("a.json"), output("1"));
+            writer.write(Path.of("b.json"), output("2", "3"));
+            writer.write(Path.of("c.json"), output("4"));
+        }
+
+        assertThat(Files.readAllLines(outputDir.resolve("test-00000.txt"))).containsExactly("1", "2", "3");
+        assertThat(Files.readAllLines(outputDir.resolve("test-00001.txt"))).containsExactly("4");
+        assertThat(Files.readAllLines(outputDir.resolve("test-00001.txt.index"))).hasSize(1);
+    }
+
+    @Test
+    void skipEmptyOutputs(@TempDir Path outputDir) throws IOException {
+        try (ShardedOutputWriter writer = newWriter(outputDir, ShardLimits.disabled())) {
+            assertThat(writer.write(Path.of("a.json"), output())).isEmpty();
+        }
+
+        try (var files = Files.list(outputDir)) {
+            assertThat(files.toList()).isEmpty();
+        }
+    }
+
+    private static ShardedOutputWriter newWriter(final Path outputDir, final ShardLimits limits) {
+        return new ShardedOutputWriter(
+            outputDir, index -> Path.of(String.format("test-%05d.txt", index)), limits, OutputCompression.none()
+        );
+    }
+
+    private static String readIndexed(final byte[] content, final String indexLine) {
+        final String[] entry = indexLine.split("\t");
+        final int offset = Integer.parseInt(entry[0]);
+        final int length = Integer.parseInt(entry[1]);
+        return new String(Arrays.copyOfRange(content, offset, offset + length), StandardCharsets.UTF_8);
+    }
+
+    private static ShardedOutputWriter.LineOutput output(final String... lines) {
+        return out -> {
+            for (final String line : lines) {
+                out.write((line + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+            }
+            return lines.length;
+        };
+    }
+
+    private static String lines(final String... lines) {
+        return String.join(System.lineSeparator(), lines) + System.lineSeparator();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.ProgramFeatures;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelationFactory;
+
+class BinaryContextFileTest {
+
+    private final ProgramRelationFactory programRelationFactory = new ProgramRelationFactory();
+
+    @Test
+    void testReadWrittenRecords(@TempDir Path tempDir) throws IOException {
+        final ProgramFeatures cat = new ProgramFeatures("cat", programRelationFactory);
+        cat.addFeature("39", "625791294", "hi_!");
+        cat.addFeature("hi_!", "-547448667", "Show");
+        final ProgramFeatures empty = new ProgramFeatures("stage", programRelationFactory);
+        final ProgramFeatures abby = new ProgramFeatures("abby", programRelationFactory);
+        abby.addFeature("GreenFlag", "625791294", "hi_!");
+
+        final Code2Vocabulary vocabulary = Code2Vocabulary.withBinaryOutput();
+        final List<ProgramFeatures> examples = List.of(cat, empty, abby);
+        examples.forEach(vocabulary::count);
+
+        final Path file = tempDir.resolve("contexts.bin");
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (final ProgramFeatures example : examples) {
+                vocabulary.writeBinary(example, out);
+            }
+        }
+
+        final List<String> records = new ArrayList<>();
+        for (final BinaryContextFile.Record record : BinaryContextFile.map(file)) {
+            final StringBuilder ids = new StringBuilder(Integer.toString(record.labelId()));
+            for (int i = 0; i < record.contextCount(); i++) {
+                ids.append(' ').append(record.sourceId(i)).append(',').append(record.pathId(i)).append(',')
+                    .append(record.targetId(i));
+            }
+            records.add(ids.toString());
+        }
+
+        final List<String> expected = new ArrayList<>();
+        for (final ProgramFeatures example : examples) {
+            final StringBuilder ids = new StringBuilder();
+            vocabulary.writeIds(example, ids);
+            expected.add(ids.toString());
+        }
+        assertThat(records).containsExactlyElementsIn(expected).inOrder();
+        assertThat(records).containsExactly("1 1,1,2 2,2,3", "2", "3 4,1,2").inOrder();
+    }
+
+    @Test
+    void testTruncatedRecord() {
+        final ByteBuffer record = BinaryContextFile.newRecord(1, 2);
+        record.putInt(1).putInt(2).putInt(3);
+        final byte[] truncated = Arrays.copyOf(record.array(), record.position());
+
+        final BinaryContextFile file = BinaryContextFile.wrap(ByteBuffer.wrap(truncated));
+        assertThrows(IllegalStateException.class, () -> file.iterator().next());
+    }
+
+    @Test
+    void testTruncatedRecordLength() {
+        final ByteBuffer record = BinaryContextFile.newRecord(1, 0);
+        final byte[] truncated = Arrays.copyOf(record.array(), record.capacity() + 3);
+
+        final Iterator<BinaryContextFile.Record> records = BinaryContextFile.wrap(ByteBuffer.wrap(truncated))
+            .iterator();
+        assertThat(records.next().contextCount()).isEqualTo(0);
+        assertThat(records.hasNext()).isTrue();
+        assertThrows(IllegalStateException.class, records::next);
+    }
+
+    @Test
+    void testRecordLengthDoesNotMatchContexts() {
+        final ByteBuffer record = BinaryContextFile.newRecord(1, 1);
+        record.putInt(1).putInt(2).putInt(3);
+        // claims two contexts but only contains one
+        record.putInt(2 * Integer.BYTES, 2);
+
+        final BinaryContextFile file = BinaryContextFile.wrap(ByteBuffer.wrap(record.array()));
+        final IllegalStateException e = assertThrows(IllegalStateException.class, () -> file.iterator().next());
+        assertThat(e).hasMessageThat().contains("2 contexts");
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.ContextDeduplication;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.ProgramFeatures;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelationFactory;
+
+class Code2VocabularyTest {
+
+    private final ProgramRelationFactory programRelationFactory = new ProgramRelationFactory();
+
+    @Test
+    void testCountEveryOccurrenceOfCountedDuplicates(@TempDir Path tempDir) throws IOException {
+        final ProgramFeatures counted = new ProgramFeatures("cat", programRelationFactory, ContextDeduplication.COUNT);
+        final ProgramFeatures kept = new ProgramFeatures("cat", programRelationFactory, ContextDeduplication.NONE);
+        for (final ProgramFeatures example : new ProgramFeatures[] { counted, kept }) {
+            example.addFeature("39", "625791294", "hi_!");
+            example.addFeature("39", "625791294", "hi_!");
+            example.addFeature("hi_!", "-547448667", "Show");
+        }
+        assertThat(counted.getFeatures()).hasSize(2);
+
+        final Path countedDir = Files.createDirectory(tempDir.resolve("counted"));
+        final Path keptDir = Files.createDirectory(tempDir.resolve("kept"));
+        writeVocabulary(counted, countedDir);
+        writeVocabulary(kept, keptDir);
+
+        for (final String fileName : new String[] {
+            Code2Vocabulary.TERMINALS_FILE_NAME, Code2Vocabulary.PATHS_FILE_NAME, Code2Vocabulary.LABELS_FILE_NAME
+        }) {
+            assertThat(Files.readAllLines(countedDir.resolve(fileName)))
+                .containsExactlyElementsIn(Files.readAllLines(keptDir.resolve(fileName)))
+                .inOrder();
+        }
+        assertThat(Files.readAllLines(countedDir.resolve(Code2Vocabulary.TERMINALS_FILE_NAME)))
+            .containsExactly("hi_! 2 3", "39 1 2", "Show 3 1")
+            .inOrder();
+    }
+
+    private static void writeVocabulary(final ProgramFeatures example, final Path outputDir) throws IOException {
+        final Code2Vocabulary vocabulary = Code2Vocabulary.counting();
+        vocabulary.count(example);
+        vocabulary.writeTo(outputDir);
+    }
+}
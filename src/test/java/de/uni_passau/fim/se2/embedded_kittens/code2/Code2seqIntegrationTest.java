@@ -28,6 +28,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
 
@@ -56,6 +57,44 @@ class Code2seqIntegrationTest extends CliTest {
         assertThat(getErrorOutput()).contains("path length");
     }
 
+    @Test
+    void processProgramWithMultipleSpritesToBinary(@TempDir Path tempDir) throws IOException {
+        commandLine.execute(
+            C2S_CMD, INPUT_FLAG, "src/test/fixtures/multipleSprites.json", "--include-stage", "-o", tempDir.toString(),
+            "--binary"
+        );
+
+        final List<String> labels = Files.readAllLines(tempDir.resolve(Code2Vocabulary.LABELS_FILE_NAME));
+        assertThat(labels.stream().map(line -> line.split(" ")[0]).toList()).containsExactly("cat", "abby", "stage");
+        assertThat(Files.readAllLines(tempDir.resolve(Code2Vocabulary.TERMINALS_FILE_NAME)).get(0)).endsWith(" 2");
+
+        final List<Integer> contextCounts = new ArrayList<>();
+        for (final BinaryContextFile.Record record : BinaryContextFile.map(tempDir.resolve("multipleSprites.bin"))) {
+            contextCounts.add(record.contextCount());
+        }
+        assertThat(contextCounts).containsExactly(3, 1, 1);
+    }
+
+    @Test
+    void disallowCompressedBinaryOutput(@TempDir Path tempDir) {
+        int returnCode = commandLine.execute(
+            C2S_CMD, INPUT_FLAG, "src/test/fixtures/multipleSprites.json", "-o", tempDir.toString(), "--binary",
+            "--compress", "gzip"
+        );
+        assertThat(returnCode).isNotEqualTo(0);
+        assertThat(getErrorOutput()).contains("The binary output can’t be compressed, it has to be memory-mapped.");
+    }
+
+    @Test
+    void disallowShardedBinaryOutput(@TempDir Path tempDir) {
+        int returnCode = commandLine.execute(
+            C2S_CMD, INPUT_FLAG, "src/test/fixtures/multipleSprites.json", "-o", tempDir.toString(), "--binary",
+            "--shard-max-lines", "10"
+        );
+        assertThat(returnCode).isNotEqualTo(0);
+        assertThat(getErrorOutput()).contains("The binary output can’t be sharded, the shards consist of text lines.");
+    }
+
     @Test
     void processEmptyProgram() {
         commandLine.execute(C2S_CMD, INPUT_FLAG, "src/test/fixtures/emptyProject.json");
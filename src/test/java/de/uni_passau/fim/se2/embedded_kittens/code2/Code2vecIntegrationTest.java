@@ -24,13 +24,24 @@ package de.uni_passau.fim.se2.embedded_kittens.code2;
 import static com.google.common.truth.Truth.assertThat;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import de.uni_passau.fim.se2.embedded_kittens.util.NormalisationCache;
+import de.uni_passau.fim.se2.embedded_kittens.util.StringUtil;
 import de.uni_passau.fim.se2.embedded_kittens.CliTest;
 
 class Code2vecIntegrationTest extends CliTest {
@@ -50,6 +61,73 @@ class Code2vecIntegrationTest extends CliTest {
         );
     }
 
+    @Test
+    void writeVocabularyWithIdOutput(@TempDir Path tempDir) throws IOException {
+        commandLine.execute(
+            "code2vec", "-p", "src/test/fixtures/multipleSprites.json", "--include-stage", "-o", tempDir.toString(),
+            "--id-output"
+        );
+
+        final Map<String, String> terminals = readVocabulary(tempDir.resolve(Code2Vocabulary.TERMINALS_FILE_NAME));
+        final Map<String, String> paths = readVocabulary(tempDir.resolve(Code2Vocabulary.PATHS_FILE_NAME));
+        final Map<String, String> labels = readVocabulary(tempDir.resolve(Code2Vocabulary.LABELS_FILE_NAME));
+        assertThat(terminals).hasSize(6);
+        assertThat(paths).hasSize(5);
+        assertThat(labels).hasSize(3);
+
+        final List<String> decodedLines = new ArrayList<>();
+        for (final String line : Files.readAllLines(tempDir.resolve("multipleSprites.txt"))) {
+            final String[] ids = line.split(" ");
+            final StringBuilder decoded = new StringBuilder(labels.get(ids[0]));
+            for (int i = 1; i < ids.length; i++) {
+                final String[] context = ids[i].split(",");
+                decoded.append(' ').append(terminals.get(context[0])).append(',').append(paths.get(context[1]))
+                    .append(',').append(terminals.get(context[2]));
+            }
+            decodedLines.add(decoded.toString());
+        }
+        assertThat(decodedLines).containsExactly(
+            "cat 39,625791294,hi_! 39,1493538624,Show hi_!,-547448667,Show",
+            "abby GreenFlag,-2069003229,hello_!",
+            "stage GreenFlag,1809747443,10"
+        );
+
+        assertThat(Files.readAllLines(tempDir.resolve(Code2Vocabulary.TERMINALS_FILE_NAME)).get(0)).endsWith(" 2");
+    }
+
+    private static Map<String, String> readVocabulary(final Path file) throws IOException {
+        final Map<String, String> wordsById = new HashMap<>();
+        for (final String line : Files.readAllLines(file)) {
+            final String[] entry = line.split(" ");
+            wordsById.put(entry[1], entry[0]);
+        }
+        return wordsById;
+    }
+
+    @Test
+    void failWhenTheVocabularyCannotBeWritten(@TempDir Path tempDir) throws IOException {
+        Files.createDirectory(tempDir.resolve(Code2Vocabulary.TERMINALS_FILE_NAME));
+
+        final int exitCode = commandLine.execute(
+            "code2vec", "-p", "src/test/fixtures/multipleSprites.json", "-o", tempDir.toString(), "--vocabulary"
+        );
+
+        assertThat(exitCode).isNotEqualTo(0);
+        assertStdErrContains("Could not write the summary of the run");
+        assertThat(Files.readAllLines(tempDir.resolve("multipleSprites.txt"))).hasSize(2);
+    }
+
+    @Test
+    void rejectVocabularyWhenResuming(@TempDir Path output) {
+        final int exitCode = commandLine.execute(
+            "code2vec", "-p", "src/test/fixtures/multipleSprites.json", "-o", output.toString(), "--vocabulary",
+            "--resume"
+        );
+
+        assertThat(exitCode).isNotEqualTo(0);
+        assertStdErrContains("The vocabulary cannot be built when resuming");
+    }
+
     @Test
     void ensureRecursiveFileProcessingNoOverwrites(@TempDir Path input, @TempDir Path output) throws IOException {
         Files.createDirectories(input.resolve("a").resolve("b"));
@@ -64,4 +142,256 @@ class Code2vecIntegrationTest extends CliTest {
         assertThat(Files.walk(output).filter(p -> p.toFile().isFile())).hasSize(3);
         assertThat(Files.walk(output).filter(p -> p.toFile().isDirectory())).hasSize(3);
     }
+
+    @Test
+    void processDirectoryWithLimitedWorkerThreads(@TempDir Path input, @TempDir Path output) throws IOException {
+        final Path fixture = Path.of("src/test/fixtures/multipleSprites.json");
+        for (int i = 0; i < 5; i++) {
+            Files.copy(fixture, input.resolve("multipleSprites" + i + ".json"));
+        }
+
+        commandLine.execute(
+            "code2vec", "-p", input.toString(), "--include-stage", "-o", output.toString(), "--threads", "2"
+        );
+
+        for (int i = 0; i < 5; i++) {
+            final List<String> outputLines = Files.readAllLines(output.resolve("multipleSprites" + i + ".txt"));
+            assertThat(outputLines).hasSize(3);
+        }
+    }
+
+    @Test
+    void generatePathsWithMultiplePathThreads(@TempDir Path input, @TempDir Path output) throws IOException {
+        final Path fixture = Path.of("src/test/fixtures/multipleSprites.json");
+        for (int i = 0; i < 3; i++) {
+            Files.copy(fixture, input.resolve("multipleSprites" + i + ".json"));
+        }
+
+        final int exitCode = commandLine.execute(
+            "code2vec", "-p", input.toString(), "--include-stage", "-o", output.toString(), "--threads", "2",
+            "--path-threads", "3"
+        );
+
+        assertThat(exitCode).isEqualTo(0);
+        for (int i = 0; i < 3; i++) {
+            assertThat(Files.readAllLines(output.resolve("multipleSprites" + i + ".txt"))).containsExactly(
+                "cat 39,625791294,hi_! 39,1493538624,Show hi_!,-547448667,Show",
+                "abby GreenFlag,-2069003229,hello_!",
+                "stage GreenFlag,1809747443,10"
+            ).inOrder();
+        }
+    }
+
+    @Test
+    void rejectInvalidThreadCount(@TempDir Path output) {
+        final int exitCode = commandLine.execute(
+            "code2vec", "-p", "src/test/fixtures/multipleSprites.json", "-o", output.toString(), "--threads", "0"
+        );
+
+        assertThat(exitCode).isNotEqualTo(0);
+        assertStdErrContains("At least one thread is required.");
+    }
+
+    @Test
+    void processSb3ArchiveDirectly(@TempDir Path input, @TempDir Path output) throws IOException {
+        final Path archive = input.resolve("multipleSprites.sb3");
+        try (OutputStream out = Files.newOutputStream(archive); ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("0123456789abcdef.svg"));
+            zip.write(new byte[1024]);
+            zip.closeEntry();
+
+            zip.putNextEntry(new ZipEntry("project.json"));
+            zip.write(Files.readAllBytes(Path.of("src/test/fixtures/multipleSprites.json")));
+            zip.closeEntry();
+        }
+
+        commandLine.execute("code2vec", "-p", input.toString(), "--include-stage", "-o", output.toString());
+
+        final List<String> outputLines = Files.readAllLines(output.resolve("multipleSprites.txt"));
+        assertThat(outputLines).containsExactly(
+            "cat 39,625791294,hi_! 39,1493538624,Show hi_!,-547448667,Show",
+            "abby GreenFlag,-2069003229,hello_!",
+            "stage GreenFlag,1809747443,10"
+        );
+    }
+
+    @Test
+    void resumeSkipsCompletedInputs(@TempDir Path input, @TempDir Path output) throws IOException {
+        final Path fixture = Path.of("src/test/fixtures/multipleSprites.json");
+        Files.copy(fixture, input.resolve("a.json"));
+        Files.copy(fixture, input.resolve("b.json"));
+
+        final String[] args = { "code2vec", "-p", input.toString(), "-o", output.toString(), "--resume" };
+        commandLine.execute(args);
+        assertThat(Files.readAllLines(output.resolve("a.txt"))).hasSize(2);
+
+        Files.writeString(output.resolve("a.txt"), "marker");
+        Files.writeString(output.resolve("b.txt"), "marker");
+        Files.writeString(input.resolve("b.json"), Files.readString(fixture) + " ");
+
+        commandLine.execute(args);
+
+        assertThat(Files.readString(output.resolve("a.txt"))).isEqualTo("marker");
+        assertThat(Files.readAllLines(output.resolve("b.txt"))).hasSize(2);
+        try (var outputFiles = Files.list(output)) {
+            assertThat(outputFiles.map(p -> p.getFileName().toString()).filter(name -> name.endsWith(".partial")))
+                .isEmpty();
+        }
+    }
+
+    @Test
+    void resumeRequiresOutputFolder() {
+        final int exitCode = commandLine.execute(
+            "code2vec", "-p", "src/test/fixtures/multipleSprites.json", "--resume"
+        );
+
+        assertThat(exitCode).isNotEqualTo(0);
+        assertStdErrContains("An output folder is required to resume a previous run.");
+    }
+
+    @Test
+    void incrementalRunReprocessesAfterOptionChange(@TempDir Path output) throws IOException {
+        final String input = "src/test/fixtures/multipleSprites.json";
+        final Path outputFile = output.resolve("multipleSprites.txt");
+
+        commandLine.execute("code2vec", "-p", input, "-o", output.toString(), "--incremental");
+        Files.writeString(outputFile, "marker");
+
+        commandLine.execute("code2vec", "-p", input, "-o", output.toString(), "--incremental", "--threads", "1");
+        assertThat(Files.readString(outputFile)).isEqualTo("marker");
+
+        commandLine.execute("code2vec", "-p", input, "-o", output.toString(), "--incremental", "--include-stage");
+        assertThat(Files.readAllLines(outputFile)).hasSize(3);
+
+        Files.delete(outputFile);
+        commandLine.execute("code2vec", "-p", input, "-o", output.toString(), "--incremental", "--include-stage");
+        assertThat(Files.readAllLines(outputFile)).hasSize(3);
+    }
+
+    @Test
+    void aggregateOutputsIntoShards(@TempDir Path input, @TempDir Path output) throws IOException {
+        final Path fixture = Path.of("src/test/fixtures/multipleSprites.json");
+        for (int i = 0; i < 5; i++) {
+            Files.copy(fixture, input.resolve("multipleSprites" + i + ".json"));
+        }
+
+        commandLine.execute(
+            "code2vec", "-p", input.toString(), "-o", output.toString(), "--threads", "1", "--shard-max-lines", "4"
+        );
+
+        assertThat(Files.readAllLines(output.resolve("code2vec-00000.txt"))).hasSize(4);
+        assertThat(Files.readAllLines(output.resolve("code2vec-00000.txt.index"))).hasSize(2);
+        assertThat(Files.readAllLines(output.resolve("code2vec-00001.txt"))).hasSize(4);
+        assertThat(Files.readAllLines(output.resolve("code2vec-00002.txt"))).hasSize(2);
+        assertThat(Files.exists(output.resolve("multipleSprites0.txt"))).isFalse();
+    }
+
+    @Test
+    void writeCompressedOutput(@TempDir Path output) throws IOException {
+        commandLine.execute(
+            "code2vec", "-p", "src/test/fixtures/multipleSprites.json", "--include-stage", "-o", output.toString(),
+            "--compress", "gzip", "--compression-level", "9"
+        );
+
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(output.resolve("multipleSprites.txt.gz")))) {
+            final String outputContent = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertThat(outputContent.lines().toList()).containsExactly(
+                "cat 39,625791294,hi_! 39,1493538624,Show hi_!,-547448667,Show",
+                "abby GreenFlag,-2069003229,hello_!",
+                "stage GreenFlag,1809747443,10"
+            );
+        }
+    }
+
+    @Test
+    void writeMetricsToOutputFolder(@TempDir Path output) throws IOException {
+        commandLine.execute(
+            "code2vec", "-p", "src/test/fixtures/multipleSprites.json", "-o", output.toString(),
+            "--metrics-interval", "60"
+        );
+
+        assertThat(Files.readString(output.resolve("metrics.json"))).contains("\"inputs\" : 1");
+        assertThat(Files.readString(output.resolve("metrics.prom"))).contains(
+            "embedded_kittens_stage_seconds_count{format=\"code2vec\",stage=\"transform\"} 1"
+        );
+    }
+
+    @Test
+    void reportNormalisationCacheHitRate(@TempDir Path output) throws IOException {
+        try {
+            commandLine.execute(
+                "code2vec", "-p", "src/test/fixtures/multipleSprites.json", "-o", output.toString(),
+                "--metrics-interval", "60", "--normalisation-cache", "1000"
+            );
+        }
+        finally {
+            StringUtil.setNormalisationCache(NormalisationCache.disabled());
+        }
+
+        assertThat(Files.readAllLines(output.resolve("multipleSprites.txt"))).hasSize(2);
+        assertThat(Files.readString(output.resolve("metrics.json"))).contains("\"normalisationCache\"");
+        assertThat(Files.readString(output.resolve("metrics.prom"))).contains(
+            "embedded_kittens_normalisation_cache_hits_total"
+        );
+    }
+
+    @Test
+    void rejectNegativeNormalisationCacheCapacity(@TempDir Path output) {
+        final int exitCode = commandLine.execute(
+            "code2vec", "-p", "src/test/fixtures/multipleSprites.json", "-o", output.toString(),
+            "--normalisation-cache", "-1"
+        );
+
+        assertThat(exitCode).isNotEqualTo(0);
+        assertStdErrContains("The normalisation cache capacity can");
+    }
+
+    @Test
+    void rejectCompressionLevelOutOfRange(@TempDir Path output) {
+        final int exitCode = commandLine.execute(
+            "code2vec", "-p", "src/test/fixtures/multipleSprites.json", "-o", output.toString(),
+            "--compress", "gzip", "--compression-level", "30"
+        );
+
+        assertThat(exitCode).isNotEqualTo(0);
+        assertStdErrContains("Invalid compression level 30 for GZIP.");
+    }
+
+    @Test
+    void skipSpritesExceedingLeafLimit(@TempDir Path output) throws IOException {
+        commandLine.execute(
+            "code2vec", "-p", "src/test/fixtures/multipleSprites.json", "-o", output.toString(), "--max-leaves", "2"
+        );
+
+        assertThat(Files.readAllLines(output.resolve("multipleSprites.txt"))).containsExactly(
+            "abby GreenFlag,-2069003229,hello_!"
+        );
+        assertThat(Files.readAllLines(output.resolve("skipped.tsv"))).containsExactly(
+            "multipleSprites.json\tSkipped 'cat' with 3 leaves (limit: 2)."
+        );
+    }
+
+    @Test
+    void appendContextCountsWhenDeduplicating(@TempDir Path output) throws IOException {
+        commandLine.execute(
+            "code2vec", "-p", "src/test/fixtures/multipleSprites.json", "-o", output.toString(),
+            "--deduplicate-contexts", "count"
+        );
+
+        assertThat(Files.readAllLines(output.resolve("multipleSprites.txt"))).containsExactly(
+            "cat 39,625791294,hi_!,1 39,1493538624,Show,1 hi_!,-547448667,Show,1",
+            "abby GreenFlag,-2069003229,hello_!,1"
+        );
+    }
+
+    @Test
+    void rejectContextCountsInBinaryOutput(@TempDir Path output) {
+        final int exitCode = commandLine.execute(
+            "code2vec", "-p", "src/test/fixtures/multipleSprites.json", "-o", output.toString(), "--binary",
+            "--deduplicate-contexts", "count"
+        );
+
+        assertThat(exitCode).isNotEqualTo(0);
+        assertStdErrContains("The binary output can");
+    }
 }
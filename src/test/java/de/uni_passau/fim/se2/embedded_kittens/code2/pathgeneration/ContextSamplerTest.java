@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import de.uni_passau.fim.se2.embedded_kittens.JsonTest;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor.ExtractedLeaves;
+import de.uni_passau.fim.se2.litterbox.ast.ParsingException;
+import de.uni_passau.fim.se2.litterbox.ast.model.ASTNode;
+
+class ContextSamplerTest implements JsonTest {
+
+    private static final int MAX_PATH_LENGTH = 8;
+
+    private static final ContextSampler.ContextFilter EVERY_OTHER_TARGET = (source, target) -> target % 2 == 0;
+
+    private int leafCount;
+    private LeafPairEnumerator leafPairs;
+
+    @BeforeEach
+    void setUp() throws IOException, ParsingException {
+        final ExtractedLeaves leaves = LeafTreeIndexTest.programLeaves(getAST("src/test/fixtures/allBlocks.json"));
+
+        leafCount = leaves.size();
+        leafPairs = new LeafPairEnumerator(LeafTreeIndex.of(leaves), MAX_PATH_LENGTH);
+    }
+
+    @Test
+    void keepAllContextsIfThereAreNotTooMany() {
+        final List<Long> contexts = allContexts();
+        final ContextSampling sampling = new ContextSampling(contexts.size(), ContextSampling.Mode.CONTEXTS, 0);
+
+        final long[] sample = sample(sampling, "allBlocks");
+
+        assertThat(sample).asList().containsExactlyElementsIn(contexts).inOrder();
+    }
+
+    @ParameterizedTest
+    @EnumSource(ContextSampling.Mode.class)
+    void sampleAtMostMaxContextsInEnumerationOrder(final ContextSampling.Mode mode) {
+        final ContextSampling sampling = new ContextSampling(10, mode, 42);
+
+        final long[] sample = sample(sampling, "allBlocks");
+
+        assertThat(sample.length).isAtMost(10);
+        assertThat(sample.length).isGreaterThan(0);
+        assertThat(sample).asList().isInStrictOrder();
+        assertThat(allContexts()).containsAtLeastElementsIn(Arrays.stream(sample).boxed().toList());
+        if (mode == ContextSampling.Mode.CONTEXTS) {
+            assertThat(sample).hasLength(10);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(ContextSampling.Mode.class)
+    void sameSampleForSameSeed(final ContextSampling.Mode mode) {
+        final ContextSampling sampling = new ContextSampling(10, mode, 42);
+
+        final long[] first = sample(sampling, "allBlocks");
+        final long[] second = sample(sampling, "allBlocks");
+
+        assertThat(second).isEqualTo(first);
+    }
+
+    @ParameterizedTest
+    @EnumSource(ContextSampling.Mode.class)
+    void differentSampleForDifferentInput(final ContextSampling.Mode mode) {
+        final ContextSampling sampling = new ContextSampling(10, mode, 42);
+
+        final long[] first = sample(sampling, "allBlocks");
+        final long[] second = sample(sampling, "allBlocksCopy");
+
+        assertThat(second).isNotEqualTo(first);
+    }
+
+    @Test
+    void findMaxContextsInDeepAndWideTree() {
+        // the leaves are grouped in fives at the end of long chains, only leaves of the same group are within reach
+        final LeafTreeIndex tree = chainsOfLeafGroups(200, 10, 5);
+        final LeafPairEnumerator deepLeafPairs = new LeafPairEnumerator(tree, MAX_PATH_LENGTH);
+        final ContextSampling sampling = new ContextSampling(100, ContextSampling.Mode.LEAF_PAIRS, 42);
+
+        final long[] sample = ContextSampler.sample(
+            sampling, "deep", "program", deepLeafPairs, tree.leafCount(), (source, target) -> true
+        );
+
+        assertThat(sample).hasLength(100);
+        assertThat(sample).asList().isInStrictOrder();
+        for (final long pair : sample) {
+            final int source = ContextSampler.sourceLeaf(pair);
+            assertThat(deepLeafPairs.targets(source)).asList().contains(ContextSampler.targetLeaf(pair));
+        }
+    }
+
+    private static LeafTreeIndex chainsOfLeafGroups(final int chains, final int chainLength, final int groupSize) {
+        final int[][] ancestors = new int[chains * groupSize][];
+        int nodeCount = 1;
+        for (int chain = 0; chain < chains; chain++) {
+            final int[] chainNodes = new int[chainLength];
+            for (int k = 0; k < chainLength; k++) {
+                chainNodes[k] = nodeCount++;
+            }
+
+            for (int member = 0; member < groupSize; member++) {
+                final int[] leafAncestors = new int[chainLength + 2];
+                leafAncestors[0] = nodeCount++;
+                for (int k = 0; k < chainLength; k++) {
+                    leafAncestors[k + 1] = chainNodes[chainLength - 1 - k];
+                }
+                leafAncestors[chainLength + 1] = 0;
+                ancestors[chain * groupSize + member] = leafAncestors;
+            }
+        }
+        return new LeafTreeIndex(new ASTNode[nodeCount], ancestors);
+    }
+
+    private long[] sample(final ContextSampling sampling, final String inputName) {
+        return ContextSampler.sample(sampling, inputName, "program", leafPairs, leafCount, EVERY_OTHER_TARGET);
+    }
+
+    private List<Long> allContexts() {
+        final List<Long> contexts = new ArrayList<>();
+        for (int source = 0; source < leafCount; source++) {
+            for (final int target : leafPairs.targets(source)) {
+                if (EVERY_OTHER_TARGET.isContext(source, target)) {
+                    contexts.add(((long) source << Integer.SIZE) | target);
+                }
+            }
+        }
+        return contexts;
+    }
+}
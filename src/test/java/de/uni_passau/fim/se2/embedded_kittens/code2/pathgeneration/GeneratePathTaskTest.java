@@ -25,10 +25,13 @@ import static com.google.common.truth.Truth.assertThat;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import de.uni_passau.fim.se2.embedded_kittens.JsonTest;
@@ -166,6 +169,39 @@ class GeneratePathTaskTest implements JsonTest {
         assertThat(pathContexts).hasSize(scriptCountPerProgram + procedureCountPerProgram);
     }
 
+    @ParameterizedTest(name = "{displayName} [{index}] pathType={0}")
+    @EnumSource(value = PathType.class, names = { "SPRITE", "SCRIPT" })
+    void testCreateContextConcurrentlyInSequentialOrder(final PathType pathType)
+        throws IOException, ParsingException {
+        final Program program = getAST("src/test/fixtures/allBlocks.json");
+        final List<String> sequential = new GeneratePathTask(getPathGenerator(program, pathType))
+            .createContext()
+            .stream()
+            .map(ProgramFeatures::toString)
+            .toList();
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<String> concurrent = new GeneratePathTask(getPathGenerator(program, pathType), executor)
+                .createContext()
+                .stream()
+                .map(ProgramFeatures::toString)
+                .toList();
+
+            assertThat(concurrent).isNotEmpty();
+            assertThat(concurrent).containsExactlyElementsIn(sequential).inOrder();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private PathGenerator getPathGenerator(final Program program, final PathType pathType) {
+        return PathGeneratorFactory.createPathGenerator(
+            pathType, 8, true, program, true, programRelationFactory, ActorNameNormalizer.getDefault()
+        );
+    }
+
     private PathGenerator getPathGenerator(final Program program, final boolean includeStage) {
         return PathGeneratorFactory.createPathGenerator(
             PathType.SPRITE, 8, includeStage,
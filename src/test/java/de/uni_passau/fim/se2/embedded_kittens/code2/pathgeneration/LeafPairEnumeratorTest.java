@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import de.uni_passau.fim.se2.embedded_kittens.JsonTest;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor.ExtractedLeaves;
+import de.uni_passau.fim.se2.litterbox.ast.ParsingException;
+import de.uni_passau.fim.se2.litterbox.ast.model.ASTNode;
+
+class LeafPairEnumeratorTest implements JsonTest {
+
+    static Stream<Arguments> programsAndPathLengths() {
+        return Stream.of("src/test/fixtures/allBlocks.json", "src/test/fixtures/multipleSprites.json")
+            .flatMap(file -> IntStream.of(0, 1, 2, 4, 8, 12).mapToObj(length -> Arguments.of(file, length)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("programsAndPathLengths")
+    void findSamePairsAsCheckingAllPairs(final String file, final int maxPathLength)
+        throws IOException, ParsingException {
+        final ExtractedLeaves extracted = LeafTreeIndexTest.programLeaves(getAST(file));
+        final List<ASTNode> leaves = extracted.leaves();
+
+        final LeafPairEnumerator enumerator = new LeafPairEnumerator(LeafTreeIndex.of(extracted), maxPathLength);
+        for (int source = 0; source < leaves.size(); source++) {
+            assertThat(enumerator.targets(source))
+                .asList()
+                .containsExactlyElementsIn(allTargetsWithinLength(leaves, source, maxPathLength))
+                .inOrder();
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("programsAndPathLengths")
+    void boundTheNumberOfTargets(final String file, final int maxPathLength) throws IOException, ParsingException {
+        final ExtractedLeaves extracted = LeafTreeIndexTest.programLeaves(getAST(file));
+        final List<ASTNode> leaves = extracted.leaves();
+
+        final LeafPairEnumerator enumerator = new LeafPairEnumerator(LeafTreeIndex.of(extracted), maxPathLength);
+        for (int source = 0; source < leaves.size(); source++) {
+            assertThat(enumerator.targetBound(source)).isAtLeast((long) enumerator.targets(source).length);
+            assertThat(enumerator.targetBound(source)).isAtMost((long) leaves.size() - 1 - source);
+        }
+    }
+
+    private static List<Integer> allTargetsWithinLength(
+        final List<ASTNode> leaves, final int source, final int maxPathLength
+    ) {
+        final List<Integer> targets = new ArrayList<>();
+        for (int target = source + 1; target < leaves.size(); target++) {
+            final int length = pathLength(leaves.get(source), leaves.get(target));
+            if (maxPathLength <= 0 || length <= maxPathLength) {
+                targets.add(target);
+            }
+        }
+        return targets;
+    }
+
+    private static int pathLength(final ASTNode source, final ASTNode target) {
+        final List<ASTNode> sourceAncestors = ancestors(source);
+        final List<ASTNode> targetAncestors = ancestors(target);
+
+        int common = 0;
+        while (
+            common < Math.min(sourceAncestors.size(), targetAncestors.size())
+                && sourceAncestors.get(sourceAncestors.size() - 1 - common)
+                    == targetAncestors.get(targetAncestors.size() - 1 - common)
+        ) {
+            common++;
+        }
+
+        return sourceAncestors.size() + targetAncestors.size() - 2 * common;
+    }
+
+    static List<ASTNode> ancestors(final ASTNode node) {
+        final List<ASTNode> ancestors = new ArrayList<>();
+        for (ASTNode current = node; current != null; current = current.getParentNode()) {
+            ancestors.add(current);
+        }
+        return ancestors;
+    }
+}
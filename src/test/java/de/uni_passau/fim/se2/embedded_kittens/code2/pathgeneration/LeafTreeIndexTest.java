@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import de.uni_passau.fim.se2.embedded_kittens.JsonTest;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor.ExtractScriptLeavesVisitor;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor.ExtractSpriteLeavesVisitor;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.visitor.ExtractedLeaves;
+import de.uni_passau.fim.se2.litterbox.ast.ParsingException;
+import de.uni_passau.fim.se2.litterbox.ast.model.ASTNode;
+import de.uni_passau.fim.se2.litterbox.ast.model.Program;
+import de.uni_passau.fim.se2.litterbox.ast.model.procedure.ProcedureDefinition;
+
+class LeafTreeIndexTest implements JsonTest {
+
+    @ParameterizedTest
+    @ValueSource(strings = { "src/test/fixtures/allBlocks.json", "src/test/fixtures/multipleSprites.json" })
+    void ancestorsAndLowestCommonAncestors(final String file) throws IOException, ParsingException {
+        assertMatchesParentLinks(programLeaves(getAST(file)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "src/test/fixtures/allBlocks.json", "src/test/fixtures/multipleSprites.json" })
+    void recordedAncestorsMatchParentLinks(final String file) throws IOException, ParsingException {
+        final Program program = getAST(file);
+        final ExtractSpriteLeavesVisitor visitor = new ExtractSpriteLeavesVisitor(program.getProcedureMapping(), true);
+        program.accept(visitor);
+
+        for (final ExtractedLeaves sprite : visitor.getExtractedLeaves().values()) {
+            assertMatchesParentLinks(sprite);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "src/test/fixtures/allBlocks.json", "src/test/fixtures/multipleSprites.json" })
+    void recordedScriptAncestorsMatchParentLinks(final String file) throws IOException, ParsingException {
+        final Program program = getAST(file);
+        final ExtractScriptLeavesVisitor visitor = new ExtractScriptLeavesVisitor(program.getProcedureMapping());
+        program.accept(visitor);
+
+        assertThat(visitor.getExtractedLeaves()).isNotEmpty();
+        for (final ExtractedLeaves script : visitor.getExtractedLeaves().values()) {
+            assertMatchesParentLinks(script);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "src/test/fixtures/allBlocks.json", "src/test/fixtures/multipleSprites.json" })
+    void ancestorsFollowTheTraversal(final String file) throws IOException, ParsingException {
+        final Program program = getAST(file);
+
+        // the names of custom blocks are created anew in each traversal, so detach some other leaf from its parent
+        final ASTNode detached = programLeaves(program).leaves().stream()
+            .filter(leaf -> !(leaf.getParentNode() instanceof ProcedureDefinition))
+            .findFirst()
+            .orElseThrow();
+        final ASTNode parent = detached.getParentNode();
+        detached.setParentNode(parent.getParentNode());
+
+        final ExtractedLeaves leaves = programLeaves(program);
+        final int leaf = leaves.leaves().indexOf(detached);
+        final LeafTreeIndex tree = LeafTreeIndex.of(leaves);
+        assertThat(tree.node(tree.ancestors(leaf)[1])).isSameInstanceAs(parent);
+    }
+
+    /**
+     * Extracts the leaves of all sprites and the stage as for the paths of the whole program.
+     *
+     * @param program Some program.
+     * @return The leaves of the program.
+     */
+    static ExtractedLeaves programLeaves(final Program program) {
+        final ExtractSpriteLeavesVisitor visitor = new ExtractSpriteLeavesVisitor(program.getProcedureMapping(), true);
+        program.accept(visitor);
+        return ExtractedLeaves.concat(visitor.getExtractedLeaves().values());
+    }
+
+    private static void assertMatchesParentLinks(final ExtractedLeaves leaves) {
+        final LeafTreeIndex tree = LeafTreeIndex.of(leaves);
+
+        for (int source = 0; source < leaves.size(); source++) {
+            final List<ASTNode> sourceAncestors = LeafPairEnumeratorTest.ancestors(leaves.leaves().get(source));
+            assertThat(tree.ancestors(source)).hasLength(sourceAncestors.size());
+            for (int k = 0; k < sourceAncestors.size(); k++) {
+                assertThat(tree.node(tree.ancestors(source)[k])).isSameInstanceAs(sourceAncestors.get(k));
+            }
+
+            for (int target = source + 1; target < leaves.size(); target++) {
+                final List<ASTNode> targetAncestors = LeafPairEnumeratorTest.ancestors(leaves.leaves().get(target));
+                final ASTNode expected = sourceAncestors.stream()
+                    .filter(ancestor -> targetAncestors.stream().anyMatch(node -> node == ancestor))
+                    .findFirst()
+                    .orElseThrow();
+
+                assertThat(tree.node(tree.lowestCommonAncestor(source, target))).isSameInstanceAs(expected);
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.uni_passau.fim.se2.embedded_kittens.JsonTest;
+import de.uni_passau.fim.se2.litterbox.ast.ParsingException;
+import de.uni_passau.fim.se2.litterbox.ast.model.ASTNode;
+
+class NodeTypeIdsTest implements JsonTest {
+
+    @Test
+    void sameIdsAsVisitorFromAllThreads() throws IOException, ParsingException {
+        final List<ASTNode> nodes = new ArrayList<>();
+        collectNodes(getAST("src/test/fixtures/allBlocks.json"), nodes);
+
+        final List<ASTNode> supportedNodes = nodes.stream().filter(NodeTypeIdsTest::isSupported).toList();
+        assertThat(supportedNodes).isNotEmpty();
+
+        final List<Integer> expectedIds = supportedNodes.stream().map(NodeTypeIdsTest::visitorId).toList();
+        final List<Integer> ids = supportedNodes.parallelStream().map(NodeTypeIds::of).toList();
+        assertThat(ids).containsExactlyElementsIn(expectedIds).inOrder();
+
+        nodes.stream().filter(node -> !isSupported(node)).forEach(
+            node -> assertThrows(UnsupportedOperationException.class, () -> NodeTypeIds.of(node))
+        );
+    }
+
+    private static boolean isSupported(final ASTNode node) {
+        try {
+            visitorId(node);
+            return true;
+        }
+        catch (UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    private static int visitorId(final ASTNode node) {
+        final PathRepresentationVisitor visitor = new PathRepresentationVisitor();
+        node.accept(visitor);
+        return visitor.getRepresentation();
+    }
+
+    private static void collectNodes(final ASTNode node, final List<ASTNode> nodes) {
+        nodes.add(node);
+        for (final ASTNode child : node.getChildren()) {
+            collectNodes(child, nodes);
+        }
+    }
+}
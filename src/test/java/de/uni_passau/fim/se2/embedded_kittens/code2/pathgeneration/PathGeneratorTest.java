@@ -26,16 +26,20 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import de.uni_passau.fim.se2.embedded_kittens.JsonTest;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.PathHashCollisions;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelation;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelationFactory;
 import de.uni_passau.fim.se2.embedded_kittens.shared.ActorNameNormalizer;
@@ -140,6 +144,66 @@ class PathGeneratorTest implements JsonTest {
         assertThat(actualPaths).containsExactlyElementsIn(expectedPaths);
     }
 
+    @ParameterizedTest(name = "{displayName} [{index}] mode={0}")
+    @EnumSource(ContextSampling.Mode.class)
+    void testGeneratePathsSampled(final ContextSampling.Mode mode) throws ParsingException, IOException {
+        final Program program = getAST("src/test/fixtures/allBlocks.json");
+        final List<String> allPaths = generateProgramPaths(program, ContextSampling.none());
+        final List<String> sampledPaths = generateProgramPaths(program, new ContextSampling(20, mode, 0));
+
+        assertThat(allPaths.size()).isGreaterThan(20);
+        assertThat(sampledPaths.size()).isAtMost(20);
+        assertThat(sampledPaths).isNotEmpty();
+        assertThat(allPaths).containsAtLeastElementsIn(sampledPaths).inOrder();
+        if (mode == ContextSampling.Mode.CONTEXTS) {
+            assertThat(sampledPaths).hasSize(20);
+        }
+    }
+
+    @Test
+    void testGeneratePathsHashed() throws ParsingException, IOException {
+        final Program program = getAST("src/test/fixtures/allBlocks.json");
+        final List<ProgramRelation> renderedPaths = generateProgramFeatures(program, new ProgramRelationFactory());
+        final PathHashCollisions collisions = new PathHashCollisions();
+        final List<ProgramRelation> hashedPaths = generateProgramFeatures(
+            program, ProgramRelationFactory.withPathHash64(collisions)
+        );
+
+        assertThat(hashedPaths).hasSize(renderedPaths.size());
+        final Map<String, String> hashesByPath = new HashMap<>();
+        final Map<String, String> pathsByHash = new HashMap<>();
+        for (int i = 0; i < renderedPaths.size(); i++) {
+            final ProgramRelation rendered = renderedPaths.get(i);
+            final ProgramRelation hashed = hashedPaths.get(i);
+            assertEquals(rendered.getSource(), hashed.getSource());
+            assertEquals(rendered.getTarget(), hashed.getTarget());
+            assertEquals(hashesByPath.computeIfAbsent(rendered.getPath(), path -> hashed.getPath()), hashed.getPath());
+            assertEquals(pathsByHash.computeIfAbsent(hashed.getPath(), hash -> rendered.getPath()), rendered.getPath());
+        }
+
+        assertEquals(0, collisions.collisions());
+        assertEquals(hashesByPath.size(), collisions.distinctPaths());
+    }
+
+    private List<ProgramRelation> generateProgramFeatures(
+        final Program program, final ProgramRelationFactory relationFactory
+    ) {
+        final PathGenerator generator = PathGeneratorFactory.createPathGenerator(
+            PathType.PROGRAM, 8, true, program, true, relationFactory, ActorNameNormalizer.getDefault()
+        );
+        return generator.generatePaths().get(0).getFeatures();
+    }
+
+    private List<String> generateProgramPaths(final Program program, final ContextSampling sampling) {
+        final PathGenerationOptions options = new PathGenerationOptions(
+            8, true, true, new PathFormatOptions(), sampling, ContextDeduplication.NONE, 1
+        );
+        final PathGenerator generator = PathGeneratorFactory.createPathGenerator(
+            PathType.PROGRAM, program, options, programRelationFactory, ActorNameNormalizer.getDefault()
+        );
+        return generator.generatePaths().get(0).getFeatures().stream().map(ProgramRelation::toString).toList();
+    }
+
     @ParameterizedTest(name = "{displayName} [{index}] pathType={0}, includeStage={1}")
     @MethodSource("code2vecOptions")
 
@@ -154,6 +218,32 @@ class PathGeneratorTest implements JsonTest {
         assertTrue(features.isEmpty());
     }
 
+    @ParameterizedTest(name = "{displayName} [{index}] deduplication={0}")
+    @EnumSource(ContextDeduplication.class)
+    void testWritePathsAsGenerated(final ContextDeduplication deduplication) throws ParsingException, IOException {
+        final Program program = getAST("src/test/fixtures/multipleSprites.json");
+        final PathGenerationOptions options = new PathGenerationOptions(
+            8, false, true, new PathFormatOptions(), ContextSampling.none(), deduplication, 1
+        );
+
+        for (final PathType pathType : PathType.values()) {
+            final PathGenerator generator = PathGeneratorFactory.createPathGenerator(
+                pathType, program, options, programRelationFactory, ActorNameNormalizer.getDefault()
+            );
+            final StringBuilder expected = new StringBuilder();
+            for (final ProgramFeatures features : generator.generatePaths()) {
+                features.writeTo(expected);
+                expected.append(System.lineSeparator());
+            }
+
+            final StringBuilder written = new StringBuilder();
+            final int lines = generator.writePaths(written);
+
+            assertEquals(expected.toString(), written.toString());
+            assertEquals(generator.generatePaths().size(), lines);
+        }
+    }
+
     private static Stream<Arguments> code2vecOptions() {
         return Stream.of(
             Arguments.arguments(PathType.SPRITE, true),
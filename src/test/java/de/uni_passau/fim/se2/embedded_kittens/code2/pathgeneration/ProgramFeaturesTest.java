@@ -23,6 +23,8 @@ package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -66,6 +68,21 @@ class ProgramFeaturesTest {
         );
     }
 
+    @Test
+    void testWriteTo() throws IOException {
+        final StringWriter out = new StringWriter();
+        cat.writeTo(out);
+        assertEquals(cat.toString(), out.toString());
+    }
+
+    @Test
+    void testWriteToWithoutFeatures() throws IOException {
+        final ProgramFeatures abby = new ProgramFeatures("abby", programRelationFactory);
+        final StringWriter out = new StringWriter();
+        abby.writeTo(out);
+        assertEquals(abby.toString(), out.toString());
+    }
+
     @Test
     void testAddFeature() {
         assertEquals(3, cat.getFeatures().size());
@@ -90,4 +107,92 @@ class ProgramFeaturesTest {
         assertEquals("39.0,1493538624,Show", features.get(1).toString());
         assertEquals("Hi!,-547448667,Show", features.get(2).toString());
     }
+
+    @Test
+    void testKeepDuplicatesByDefault() {
+        cat.addFeature("Hi!", "(StringLiteral)^(Say)^(StmtList)_(Show)", "Show");
+        assertEquals(4, cat.getFeatures().size());
+        assertFalse(cat.countsDuplicates());
+    }
+
+    @Test
+    void testDropDuplicates() {
+        final ProgramFeatures features = withDuplicates(ContextDeduplication.DROP);
+
+        assertEquals(2, features.getFeatures().size());
+        assertEquals("cat 39.0,1493538624,Show Hi!,-547448667,Show", features.toString());
+        assertEquals(1, features.getCount(0));
+    }
+
+    @Test
+    void testCountDuplicates() throws IOException {
+        final ProgramFeatures features = withDuplicates(ContextDeduplication.COUNT);
+
+        assertEquals(2, features.getFeatures().size());
+        assertEquals(2, features.getCount(0));
+        assertEquals(3, features.getCount(1));
+        assertEquals("cat 39.0,1493538624,Show,2 Hi!,-547448667,Show,3", features.toString());
+
+        final StringWriter out = new StringWriter();
+        features.writeTo(out);
+        assertEquals(features.toString(), out.toString());
+    }
+
+    @Test
+    void testDuplicatesRequireSameTerminals() {
+        final ProgramFeatures features = new ProgramFeatures("cat", programRelationFactory, ContextDeduplication.DROP);
+        features.addFeature("39.0", "(NumberLiteral)^(Key)^(KeyPressed)^(Script)_(StmtList)_(Show)", "Show");
+        features.addFeature("40.0", "(NumberLiteral)^(Key)^(KeyPressed)^(Script)_(StmtList)_(Show)", "Show");
+        features.addFeature("39.0", "(NumberLiteral)^(Key)^(KeyPressed)^(Script)_(StmtList)_(Show)", "Hide");
+
+        assertEquals(3, features.getFeatures().size());
+    }
+
+    @Test
+    void testWritingTo() {
+        final StringWriter out = new StringWriter();
+        final ProgramFeatures features = ProgramFeatures.writingTo(
+            "cat", programRelationFactory, ContextDeduplication.DROP, out
+        );
+        assertEquals("", out.toString());
+        assertTrue(features.isEmpty());
+
+        features.addFeature("39.0", "(NumberLiteral)^(Key)^(KeyPressed)^(Script)_(StmtList)_(Show)", "Show");
+        assertEquals("cat 39.0,1493538624,Show", out.toString());
+
+        features.addFeature("Hi!", "(StringLiteral)^(Say)^(StmtList)_(Show)", "Show");
+        features.addFeature("39.0", "(NumberLiteral)^(Key)^(KeyPressed)^(Script)_(StmtList)_(Show)", "Show");
+        assertEquals("cat 39.0,1493538624,Show Hi!,-547448667,Show", out.toString());
+        assertTrue(features.getFeatures().isEmpty());
+        assertFalse(features.isEmpty());
+    }
+
+    @Test
+    void testWritingToWithoutFeatures() {
+        final StringWriter out = new StringWriter();
+        final ProgramFeatures features = ProgramFeatures.writingTo(
+            "abby", programRelationFactory, ContextDeduplication.NONE, out
+        );
+        assertTrue(features.isEmpty());
+        assertEquals("", out.toString());
+    }
+
+    @Test
+    void testWritingToCannotCountDuplicates() {
+        final StringWriter out = new StringWriter();
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> ProgramFeatures.writingTo("cat", programRelationFactory, ContextDeduplication.COUNT, out)
+        );
+    }
+
+    private ProgramFeatures withDuplicates(final ContextDeduplication deduplication) {
+        final ProgramFeatures features = new ProgramFeatures("cat", programRelationFactory, deduplication);
+        features.addFeature("39.0", "(NumberLiteral)^(Key)^(KeyPressed)^(Script)_(StmtList)_(Show)", "Show");
+        features.addFeature("Hi!", "(StringLiteral)^(Say)^(StmtList)_(Show)", "Show");
+        features.addFeature("Hi!", "(StringLiteral)^(Say)^(StmtList)_(Show)", "Show");
+        features.addFeature("39.0", "(NumberLiteral)^(Key)^(KeyPressed)^(Script)_(StmtList)_(Show)", "Show");
+        features.addFeature("Hi!", "(StringLiteral)^(Say)^(StmtList)_(Show)", "Show");
+        return features;
+    }
 }
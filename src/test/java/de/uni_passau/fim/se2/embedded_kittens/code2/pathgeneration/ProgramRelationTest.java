@@ -23,9 +23,13 @@ package de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.util.Optional;
+
 import org.junit.jupiter.api.Test;
 
 import de.uni_passau.fim.se2.embedded_kittens.JsonTest;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.PathHash;
+import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.PathHashCollisions;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelation;
 import de.uni_passau.fim.se2.embedded_kittens.code2.pathgeneration.program_relation.ProgramRelationFactory;
 
@@ -53,4 +57,43 @@ class ProgramRelationTest implements JsonTest {
         );
         assertEquals("GreenFlag,-2069003229,Hello!", programRelation.toString());
     }
+
+    @Test
+    void testPathHash64() {
+        final ProgramRelation programRelation = ProgramRelationFactory.withPathHash64().build(
+            "GreenFlag", "Hello!", new PathHash(-42, 7)
+        );
+        assertEquals("GreenFlag,-42,Hello!", programRelation.toString());
+    }
+
+    @Test
+    void testPathHash64RequiresHash() {
+        final ProgramRelationFactory factory = ProgramRelationFactory.withPathHash64();
+        assertThrows(IllegalStateException.class, () -> factory.build("GreenFlag", "Hello!", "(GreenFlag)"));
+    }
+
+    @Test
+    void testPathHashCollisions() {
+        final PathHashCollisions collisions = new PathHashCollisions();
+        final ProgramRelationFactory factory = ProgramRelationFactory.withPathHash64(collisions);
+
+        factory.build("a", "b", new PathHash(1, 2));
+        factory.build("c", "d", new PathHash(1, 2));
+        factory.build("a", "b", new PathHash(3, 4));
+        assertEquals(0, collisions.collisions());
+        assertEquals(2, collisions.distinctPaths());
+
+        factory.build("a", "b", new PathHash(1, 5));
+        assertEquals(1, collisions.collisions());
+        assertEquals(2, collisions.distinctPaths());
+    }
+
+    @Test
+    void testCollisionsAreOnlyTrackedOnRequest() {
+        final PathHashCollisions collisions = new PathHashCollisions();
+
+        assertEquals(Optional.of(collisions), ProgramRelationFactory.withPathHash64(collisions).collisions());
+        assertEquals(Optional.empty(), ProgramRelationFactory.withPathHash64().collisions());
+        assertEquals(Optional.empty(), programRelationFactory.collisions());
+    }
 }
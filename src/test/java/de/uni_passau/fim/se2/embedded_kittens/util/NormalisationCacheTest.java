@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class NormalisationCacheTest {
+
+    private final AtomicInteger computations = new AtomicInteger();
+
+    @AfterEach
+    void disableCache() {
+        StringUtil.setNormalisationCache(NormalisationCache.disabled());
+    }
+
+    private NormalisationCache.Normalisation normalise(final String token, final String delimiter) {
+        computations.incrementAndGet();
+        return new NormalisationCache.Normalisation(List.of(token), token + delimiter);
+    }
+
+    @Test
+    void disabledCacheStoresNothing() {
+        final NormalisationCache cache = NormalisationCache.withCapacity(0);
+        assertThat(cache.enabled()).isFalse();
+
+        cache.get("a", "_", this::normalise);
+        cache.get("a", "_", this::normalise);
+
+        assertThat(computations.get()).isEqualTo(2);
+        assertThat(cache.size()).isEqualTo(0);
+        assertThat(cache.hits()).isEqualTo(0);
+        assertThat(cache.misses()).isEqualTo(0);
+    }
+
+    @Test
+    void rejectNegativeCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> NormalisationCache.withCapacity(-1));
+    }
+
+    @Test
+    void keyedByTokenAndDelimiter() {
+        final NormalisationCache cache = NormalisationCache.withCapacity(10);
+
+        assertThat(cache.get("a", "_", this::normalise).string()).isEqualTo("a_");
+        assertThat(cache.get("a", "|", this::normalise).string()).isEqualTo("a|");
+        assertThat(cache.get("a", "_", this::normalise).string()).isEqualTo("a_");
+
+        assertThat(computations.get()).isEqualTo(2);
+        assertThat(cache.hits()).isEqualTo(1);
+        assertThat(cache.misses()).isEqualTo(2);
+        assertThat(cache.hitRate()).isWithin(1e-9).of(1.0 / 3);
+    }
+
+    @Test
+    void evictLeastRecentlyUsed() {
+        final NormalisationCache cache = NormalisationCache.withCapacity(2);
+
+        cache.get("a", "_", this::normalise);
+        cache.get("b", "_", this::normalise);
+        // makes b the least recently used token
+        cache.get("a", "_", this::normalise);
+        cache.get("c", "_", this::normalise);
+        assertThat(cache.size()).isEqualTo(2);
+
+        computations.set(0);
+        cache.get("a", "_", this::normalise);
+        cache.get("c", "_", this::normalise);
+        assertThat(computations.get()).isEqualTo(0);
+
+        cache.get("b", "_", this::normalise);
+        assertThat(computations.get()).isEqualTo(1);
+    }
+
+    @Test
+    void boundedWhenSharedByThreads() throws Exception {
+        final int capacity = 1000;
+        final NormalisationCache cache = NormalisationCache.withCapacity(capacity);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> results = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        final String token = "token" + (i % 3000);
+                        assertThat(cache.get(token, "_", this::normalise).string()).isEqualTo(token + "_");
+                    }
+                }));
+            }
+            for (final Future<?> result : results) {
+                result.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        assertThat(cache.size()).isAtMost(capacity);
+        assertThat(cache.hits() + cache.misses()).isEqualTo(80_000);
+        assertThat(cache.misses()).isEqualTo(computations.get());
+    }
+
+    @Test
+    void stringUtilUsesCache() {
+        final String token = "getHTTPResponse2 Code";
+        final String expected = StringUtil.normaliseString(token, "|");
+        final List<String> expectedSubtokens = StringUtil.splitToNormalisedSubtokens(token, "|");
+
+        final NormalisationCache cache = NormalisationCache.withCapacity(10);
+        StringUtil.setNormalisationCache(cache);
+
+        assertThat(StringUtil.normaliseString(token, "|")).isEqualTo(expected);
+        assertThat(StringUtil.splitToNormalisedSubtokens(token, "|")).isEqualTo(expectedSubtokens);
+        assertThat(StringUtil.splitToNormalisedSubtokenStream(token, "|").toList()).isEqualTo(expectedSubtokens);
+
+        assertThat(cache.misses()).isEqualTo(1);
+        assertThat(cache.hits()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2021-2024 EmbeddedKittens contributors
+ *
+ * This file is part of EmbeddedKittens.
+ *
+ * EmbeddedKittens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * EmbeddedKittens is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with EmbeddedKittens. If not, see <http://www.gnu.org/licenses/>.
+ *
+ * SPDX-FileCopyrightText: 2021-2024 EmbeddedKittens contributors
+ * SPDX-License-Identifier: GPL-3.0-or-later
+ */
+package de.uni_passau.fim.se2.embedded_kittens.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks that {@link StringUtil} produces the same results as the regular expression based implementation.
+ */
+class StringUtilEquivalenceTest {
+
+    private static final int RANDOM_TOKENS = 10_000;
+
+    private static final int MAX_TOKEN_PARTS = 24;
+
+    /**
+     * Characters that hit the different split and normalisation rules, including surrogate pairs, lone surrogates,
+     * and characters with a context-dependent or multi-character lowercase form.
+     */
+    private static final String[] TOKEN_PARTS = {
+        "a", "z", "A", "Z", "0", "9", "_", "-", "|", ".", "(", "$", "+", "?", "!", " ", "\t", "\n", "\u0000",
+        "\u00A0", "\u200B", "\u2028", "\u3000", "\uFEFF", "ä", "Ä", "ß", "ǅ", "ʰ",
+        "\u0307", "İ", "Σ", "σ", "Ⅰ", "½", "٠", "𝐚", "𝐀",
+        "😀", "𐐀", "\ud835", "\udc1a", "\uE000",
+    };
+
+    @ParameterizedTest
+    @ValueSource(strings = { "_", "|", "-" })
+    void randomTokens(final String delimiter) {
+        final Random random = new Random(delimiter.hashCode());
+
+        for (int i = 0; i < RANDOM_TOKENS; ++i) {
+            assertEquivalent(randomToken(random), delimiter);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(
+        strings = {
+            "", " ", "_", "__a__", "download (48)", "HTMLParser", "getHTTPResponse2Code", "a1b2C3", "what?!now",
+            "a ?b", "!?x", "1𝐚", "𝐚B", "a😀b", "İstanbul", "ΣΣ Σx",
+            "Äpfel_ÜBER", "x\u0085y\u2029z",
+        }
+    )
+    void edgeCases(final String token) {
+        assertEquivalent(token, "_");
+        assertEquivalent(token, "|");
+    }
+
+    private static String randomToken(final Random random) {
+        final StringBuilder token = new StringBuilder();
+        final int parts = random.nextInt(MAX_TOKEN_PARTS);
+
+        for (int i = 0; i < parts; ++i) {
+            final int kind = random.nextInt(10);
+            if (kind == 0) {
+                token.appendCodePoint(random.nextInt(Character.MAX_CODE_POINT + 1));
+            }
+            else if (kind == 1) {
+                token.append((char) random.nextInt(Character.MAX_VALUE + 1));
+            }
+            else {
+                token.append(TOKEN_PARTS[random.nextInt(TOKEN_PARTS.length)]);
+            }
+        }
+
+        return token.toString();
+    }
+
+    private static void assertEquivalent(final String token, final String delimiter) {
+        final String message = "token: " + token.codePoints().mapToObj(Integer::toHexString).toList();
+
+        assertEquals(
+            RegexStringUtil.splitToSubtokenStream(token).toList(), StringUtil.splitToSubtokens(token), message
+        );
+        assertEquals(
+            RegexStringUtil.splitToNormalisedSubtokenStream(token, delimiter).toList(),
+            StringUtil.splitToNormalisedSubtokens(token, delimiter),
+            message
+        );
+        assertEquals(
+            RegexStringUtil.normaliseString(token, delimiter), StringUtil.normaliseString(token, delimiter), message
+        );
+        assertEquals(
+            RegexStringUtil.normaliseSubtoken(token, delimiter), StringUtil.normaliseSubtoken(token, delimiter),
+            message
+        );
+    }
+}